@@ -0,0 +1,86 @@
+package com.jobarbosa.gestortarefas.bench;
+
+import com.jobarbosa.gestortarefas.Task;
+import com.jobarbosa.gestortarefas.Tasks;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs readers and writers against one Tasks collection at the same time.
+ * Readers look tasks up and query the indexes while writers add, change, and remove tasks.
+ * After every iteration the collection is checked for consistency, so a race that corrupts
+ * the list or the indexes fails the run.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class ConcurrentTasksBenchmark {
+    @Param({"100000"})
+    public int size;
+
+    private Tasks tasks;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        tasks = TaskDataGenerator.populatedTasks(size, 42);
+    }
+
+    @TearDown(Level.Iteration)
+    public void checkConsistency() {
+        List<Task> all = tasks.listAll();
+        if (all.size() != tasks.size()) {
+            throw new IllegalStateException("list has " + all.size() + " tasks, size() reports " + tasks.size());
+        }
+        int indexed = 0;
+        for (Task.Priority priority : Task.Priority.values()) {
+            indexed += tasks.getByPriority(priority).size();
+        }
+        if (indexed != all.size()) {
+            throw new IllegalStateException("priority index has " + indexed + " tasks, list has " + all.size());
+        }
+        for (Task task : all) {
+            if (tasks.findById(task.getId()).orElse(null) != task) {
+                throw new IllegalStateException("task " + task.getId() + " is missing from the id index");
+            }
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public Optional<Task> findById() {
+        return tasks.findById(ThreadLocalRandom.current().nextInt(1, size + 1));
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public List<Task> getToBeDoneBy() {
+        return tasks.getToBeDoneBy(TaskDataGenerator.BASE_DATE.minusDays(170));
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public void addAndRemove() {
+        Task task = new Task(tasks.nextId(), "concurrent", Task.Priority.LOW, TaskDataGenerator.BASE_DATE);
+        tasks.add(task);
+        task.setPriority(Task.Priority.HIGH);
+        tasks.remove(task);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void changePriority() {
+        tasks.findById(ThreadLocalRandom.current().nextInt(1, size + 1))
+                .ifPresent(task -> task.setPriority(Task.Priority.values()[ThreadLocalRandom.current().nextInt(Task.Priority.values().length)]));
+    }
+}
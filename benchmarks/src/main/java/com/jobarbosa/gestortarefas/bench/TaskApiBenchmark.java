@@ -0,0 +1,84 @@
+package com.jobarbosa.gestortarefas.bench;
+
+import com.jobarbosa.gestortarefas.TaskApiServer;
+import com.jobarbosa.gestortarefas.TasksManagementController;
+import com.jobarbosa.gestortarefas.Users;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request throughput of the HTTP API with concurrent clients over one shared collection:
+ * single task lookups, filtered pages, and conditional page requests answered with 304.
+ * Run with {@code -t} to change the number of client threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class TaskApiBenchmark {
+    @Param({"100000"})
+    public int size;
+
+    private TaskApiServer server;
+    private HttpClient client;
+    private String base;
+    private String authorization;
+    private String pageTag;
+
+    @Setup
+    public void setUp() throws IOException, InterruptedException {
+        TaskApiServer.configureTransport();
+        Users users = TaskDataGenerator.users(1);
+        TasksManagementController controller = new TasksManagementController();
+        controller.getTasks().addAll(TaskDataGenerator.tasks(size, 42));
+        server = new TaskApiServer(controller, users, users.findById(1).orElseThrow(), Runnable::run,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        base = "http://localhost:" + server.getPort() + "/api/";
+        authorization = "Basic " + Base64.getEncoder().encodeToString("user1:secret1".getBytes(StandardCharsets.UTF_8));
+        pageTag = get("tasks?priority=HIGH&completed=false&limit=50", null).headers().firstValue("ETag").orElseThrow();
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.close();
+        client.close();
+    }
+
+    @Benchmark
+    public int getTask() throws IOException, InterruptedException {
+        return get("tasks/" + ThreadLocalRandom.current().nextInt(1, size + 1), null).statusCode();
+    }
+
+    @Benchmark
+    public int getFilteredPage() throws IOException, InterruptedException {
+        return get("tasks?priority=HIGH&completed=false&limit=50", null).statusCode();
+    }
+
+    @Benchmark
+    public int getPageNotModified() throws IOException, InterruptedException {
+        return get("tasks?priority=HIGH&completed=false&limit=50", pageTag).statusCode();
+    }
+
+    private HttpResponse<String> get(String path, String ifNoneMatch) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(base + path)).header("Authorization", authorization);
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,92 @@
+package com.jobarbosa.gestortarefas.bench;
+
+import com.jobarbosa.gestortarefas.Task;
+import com.jobarbosa.gestortarefas.Tasks;
+import com.jobarbosa.gestortarefas.User;
+import com.jobarbosa.gestortarefas.Users;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates reproducible synthetic tasks and users for the benchmarks.
+ */
+public final class TaskDataGenerator {
+    /** Reference date the generated due dates are spread around; completed tasks end on this date. */
+    public static final LocalDate BASE_DATE = LocalDate.now();
+
+    private static final String[] WORDS = {
+            "rever", "relatório", "reunião", "cliente", "orçamento", "enviar", "email", "preparar",
+            "apresentação", "corrigir", "erro", "atualizar", "documentação", "ligar", "fornecedor",
+            "planear", "sprint", "testar", "versão", "migração"
+    };
+
+    private TaskDataGenerator() { }
+
+    /**
+     * Generates tasks with ids 1..count. Due dates fall within a year around {@link #BASE_DATE};
+     * about a third of the tasks are completed, with today as end date.
+     *
+     * @param count number of tasks
+     * @param seed random seed
+     * @return the generated tasks
+     */
+    public static List<Task> tasks(int count, long seed) {
+        Random random = new Random(seed);
+        Task.Priority[] priorities = Task.Priority.values();
+        List<Task> result = new ArrayList<>(count);
+        for (int id = 1; id <= count; id++) {
+            Task task = new Task(id, description(random), priorities[random.nextInt(priorities.length)],
+                    BASE_DATE.plusDays(random.nextInt(365) - 182));
+            if (random.nextInt(3) == 0) {
+                task.markCompleted();
+            }
+            result.add(task);
+        }
+        return result;
+    }
+
+    /**
+     * Generates tasks and adds them to a new Tasks collection.
+     *
+     * @param count number of tasks
+     * @param seed random seed
+     * @return the populated collection
+     */
+    public static Tasks populatedTasks(int count, long seed) {
+        Tasks tasks = new Tasks();
+        for (Task task : tasks(count, seed)) {
+            tasks.add(task);
+        }
+        return tasks;
+    }
+
+    /**
+     * Generates users named user1..userN with password "secretN".
+     *
+     * @param count number of users
+     * @return the populated collection
+     */
+    public static Users users(int count) {
+        Users users = new Users();
+        for (int id = 1; id <= count; id++) {
+            users.add(new User(id, "user" + id, "secret" + id, "user" + id + "@example.com",
+                    BASE_DATE, User.Role.USER));
+        }
+        return users;
+    }
+
+    private static String description(Random random) {
+        StringBuilder description = new StringBuilder();
+        int words = 3 + random.nextInt(5);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                description.append(' ');
+            }
+            description.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return description.toString();
+    }
+}
@@ -0,0 +1,68 @@
+package com.jobarbosa.gestortarefas.bench;
+
+import com.jobarbosa.gestortarefas.TaskJournal;
+import com.jobarbosa.gestortarefas.Tasks;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures saving and loading the task file.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TaskPersistenceBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private Path directory;
+    private String file;
+    private TaskJournal emptyJournal;
+    private Tasks tasks;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("tasks-bench");
+        file = directory.resolve("tasks.dat").toString();
+        emptyJournal = new TaskJournal(directory.resolve("tasks.journal").toString());
+        tasks = TaskDataGenerator.populatedTasks(size, 42);
+        tasks.saveToFile(file);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (var files = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public void saveToFile() throws IOException {
+        tasks.saveToFile(file);
+    }
+
+    @Benchmark
+    public Tasks loadFromFile() throws Exception {
+        Tasks loaded = new Tasks();
+        loaded.loadFromFile(file);
+        return loaded;
+    }
+
+    /** Startup path: the snapshot is mapped and nothing is materialized. */
+    @Benchmark
+    public Tasks loadMapped() throws Exception {
+        Tasks loaded = new Tasks();
+        loaded.loadFromFile(file, emptyJournal);
+        return loaded;
+    }
+}
@@ -0,0 +1,65 @@
+package com.jobarbosa.gestortarefas.bench;
+
+import com.jobarbosa.gestortarefas.Task;
+import com.jobarbosa.gestortarefas.Tasks;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the Tasks query methods.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TasksQueryBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private Tasks tasks;
+
+    @Setup
+    public void setUp() {
+        tasks = TaskDataGenerator.populatedTasks(size, 42);
+    }
+
+    @Benchmark
+    public List<Task> getByPriority() {
+        return tasks.getByPriority(Task.Priority.HIGH);
+    }
+
+    @Benchmark
+    public List<Task> getToBeDoneBy() {
+        return tasks.getToBeDoneBy(TaskDataGenerator.BASE_DATE.minusDays(150));
+    }
+
+    @Benchmark
+    public List<Task> getCompletedBetween() {
+        return tasks.getCompletedBetween(TaskDataGenerator.BASE_DATE.minusDays(7), TaskDataGenerator.BASE_DATE);
+    }
+
+    @Benchmark
+    public List<Task> listAll() {
+        return tasks.listAll();
+    }
+
+    /** Walks a snapshot of every task, as saving and exporting do. */
+    @Benchmark
+    public long iterateAll() {
+        long sum = 0;
+        for (Task task : tasks.listAll()) {
+            sum += task.getId();
+        }
+        return sum;
+    }
+
+    /** Copies a page from the middle of the list, as the task table does while scrolling. */
+    @Benchmark
+    public List<Task> slice() {
+        return tasks.slice(size / 2, 1000);
+    }
+}
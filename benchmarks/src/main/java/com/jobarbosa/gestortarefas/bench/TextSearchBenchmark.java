@@ -0,0 +1,43 @@
+package com.jobarbosa.gestortarefas.bench;
+
+import com.jobarbosa.gestortarefas.Task;
+import com.jobarbosa.gestortarefas.TaskTextIndex;
+import com.jobarbosa.gestortarefas.Tasks;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures search-as-you-type queries against the description index.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class TextSearchBenchmark {
+    /** Maximum number of results, as shown by the task table. */
+    private static final int LIMIT = 500;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"r", "orcam", "relat cliente", "Documentação erro"})
+    public String query;
+
+    private TaskTextIndex index;
+
+    @Setup
+    public void setUp() {
+        Tasks tasks = TaskDataGenerator.populatedTasks(size, 42);
+        index = new TaskTextIndex(tasks);
+        index.prepare();
+    }
+
+    @Benchmark
+    public List<Task> search() {
+        return index.search(query, LIMIT);
+    }
+}
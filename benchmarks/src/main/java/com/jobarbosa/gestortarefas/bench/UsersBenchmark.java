@@ -0,0 +1,48 @@
+package com.jobarbosa.gestortarefas.bench;
+
+import com.jobarbosa.gestortarefas.User;
+import com.jobarbosa.gestortarefas.Users;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures user lookup and authentication.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UsersBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private Users users;
+    private String lastUsername;
+    private String lastPassword;
+
+    @Setup
+    public void setUp() {
+        users = TaskDataGenerator.users(size);
+        lastUsername = "user" + size;
+        lastPassword = "secret" + size;
+    }
+
+    @Benchmark
+    public Optional<User> authenticate() {
+        return users.authenticate(lastUsername, lastPassword);
+    }
+
+    @Benchmark
+    public Optional<User> findByUsername() {
+        return users.findByUsername(lastUsername);
+    }
+
+    @Benchmark
+    public Optional<User> findByUsernameMissing() {
+        return users.findByUsername("nobody");
+    }
+}
@@ -0,0 +1,349 @@
+package com.jobarbosa.gestortarefas;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Command-line entry point for running task operations without the user interface, e.g. from
+ * nightly jobs on a server without a display. It never touches JavaFX, so it starts in a fraction
+ * of the time of the app and runs with only the app classes on the class path:
+ * <pre>
+ * java -cp app/target/classes com.jobarbosa.gestortarefas.BatchMain report --user alice
+ * </pre>
+ * Data files are resolved relative to the working directory, as in the app. Commands work on
+ * the tasks of one user and go through the same controllers as the app, so changes are journaled
+ * and snapshotted the same way. Tasks are read from the mapped snapshot in chunks and checked in
+ * a single pass, without building the in-memory indexes; only {@code complete} and {@code purge}
+ * load every task, to apply their changes.
+ */
+public final class BatchMain {
+    /** Exit status for invalid arguments. */
+    private static final int EXIT_USAGE = 2;
+    /** Exit status for failed operations, e.g. an unknown user. */
+    private static final int EXIT_FAILURE = 1;
+    /** Number of tasks read from the collection at a time. */
+    private static final int CHUNK_SIZE = 1024;
+    /** Port of the HTTP API when {@code serve} is not given one. */
+    private static final int DEFAULT_PORT = 8080;
+
+    private static final String USAGE = """
+            usage: BatchMain <command> --user <username> [options]
+            commands:
+              list                 print every task
+              query [criteria]     print the tasks matching the criteria
+              complete <criteria>  mark the matching open tasks as completed
+              purge [criteria]     remove the matching completed tasks (all of them without criteria)
+              report               print task counts
+              serve                serve the tasks over the local HTTP API until stopped (--port, default 8080)
+            criteria:
+              --priority LOW|MEDIUM|HIGH[,...]   --open   --completed
+              --due-from DATE   --due-to DATE   --ended-from DATE   --ended-to DATE
+              --text WORDS   --id ID[,...]
+            options:
+              --sort id|priority|due_date|end_date   --limit N   --format csv|jsonl
+              --explain (query: print the plan instead)   --dry-run (complete, purge: only print the tasks)
+            dates are yyyy-MM-dd""";
+
+    private BatchMain() { }
+
+    /**
+     * Runs one command and exits with status 0 on success, 1 if the command failed,
+     * or 2 if the arguments are invalid.
+     *
+     * @param args the command and its options
+     */
+    public static void main(String[] args) {
+        TaskApiServer.configureTransport();
+        int status = run(args, System.out, System.err);
+        System.exit(status);
+    }
+
+    /**
+     * Runs one command.
+     *
+     * @param args the command and its options
+     * @param out receives the command output
+     * @param err receives error messages
+     * @return the exit status
+     */
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            err.println("error: " + e.getMessage());
+            err.println(USAGE);
+            return EXIT_USAGE;
+        }
+        PersistenceWriter writer = new PersistenceWriter();
+        writer.setOnError(e -> err.println("error: " + e.getMessage()));
+        UserManagementController users = new UserManagementController(writer);
+        TasksManagementController tasks = new TasksManagementController(writer);
+        tasks.setUserController(users);
+        try {
+            users.loadUsers();
+            Optional<User> user = users.getUsers().findByUsername(options.user);
+            if (user.isEmpty()) {
+                err.println("error: unknown user " + options.user);
+                return EXIT_FAILURE;
+            }
+            tasks.loadTasks(user.get());
+            Writer output = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            switch (options.command) {
+                case "list" -> TaskExporter.export(tasks.getTasks(), output, options.format);
+                case "query" -> query(tasks, options, output);
+                case "complete" -> complete(tasks, options, output);
+                case "purge" -> purge(tasks, options, output);
+                case "report" -> report(tasks.getTasks(), output);
+                case "serve" -> serve(tasks, users.getUsers(), user.get(), options.port, writer, err);
+                default -> throw new IllegalStateException(options.command);
+            }
+            output.flush();
+            return 0;
+        } catch (IOException e) {
+            err.println("error: " + e.getMessage());
+            return EXIT_FAILURE;
+        } finally {
+            tasks.unloadTasks();
+            writer.shutdown();
+        }
+    }
+
+    /**
+     * Serves the tasks over the HTTP API on the loopback address until the process is stopped,
+     * then writes pending changes.
+     */
+    private static void serve(TasksManagementController tasks, Users users, User user, int port,
+                              PersistenceWriter writer, PrintStream err) throws IOException {
+        TaskApiServer api = new TaskApiServer(tasks, users, user, Runnable::run,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            api.close();
+            tasks.unloadTasks();
+            writer.shutdown();
+        }, "api-shutdown"));
+        err.println("api: listening on http://localhost:" + api.getPort() + "/api/");
+        try {
+            Thread.currentThread().join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void query(TasksManagementController tasks, Options options, Writer out) throws IOException {
+        if (options.explain) {
+            out.write(tasks.explainQuery(options.query));
+            out.write('\n');
+        } else {
+            print(find(tasks.getTasks(), options.query), options.format, out);
+        }
+    }
+
+    private static void complete(TasksManagementController tasks, Options options, Writer out) throws IOException {
+        List<Task> matches = find(tasks.getTasks(), options.query.open());
+        if (options.dryRun) {
+            print(matches, options.format, out);
+        } else {
+            tasks.completeTasks(matches);
+            out.write("completed " + matches.size() + " tasks\n");
+        }
+    }
+
+    private static void purge(TasksManagementController tasks, Options options, Writer out) throws IOException {
+        List<Task> matches = find(tasks.getTasks(), options.query.completed());
+        if (options.dryRun) {
+            print(matches, options.format, out);
+        } else {
+            out.write("removed " + tasks.removeTasks(matches) + " tasks\n");
+        }
+    }
+
+    /**
+     * Finds the tasks matching a query in one pass over the collection, reading it in chunks.
+     * Without a sort order the pass stops at the query's limit.
+     */
+    private static List<Task> find(Tasks tasks, TaskQuery query) {
+        boolean sorted = query.getSort() != TaskQuery.Sort.NONE;
+        int limit = query.getLimit();
+        List<Task> matches = new ArrayList<>();
+        int read = 0;
+        List<Task> chunk;
+        while ((sorted || matches.size() < limit) && !(chunk = tasks.slice(read, CHUNK_SIZE)).isEmpty()) {
+            for (Task task : chunk) {
+                if (query.matches(task) && (sorted || matches.size() < limit)) {
+                    matches.add(task);
+                }
+            }
+            read += chunk.size();
+        }
+        if (sorted) {
+            matches.sort(query.getSort().comparator());
+            if (matches.size() > limit) {
+                matches = new ArrayList<>(matches.subList(0, limit));
+            }
+        }
+        return matches;
+    }
+
+    private static void print(List<Task> tasks, TaskTextFormat format, Writer out) throws IOException {
+        if (format.header() != null) {
+            out.write(format.header());
+            out.write('\n');
+        }
+        for (Task task : tasks) {
+            out.write(format.encode(task));
+            out.write('\n');
+        }
+    }
+
+    /**
+     * Prints the dashboard counters, computed in one pass over the collection.
+     */
+    private static void report(Tasks tasks, Writer out) throws IOException {
+        LocalDate today = LocalDate.now();
+        LocalDate endOfWeek = today.with(TemporalAdjusters.nextOrSame(DayOfWeek.SUNDAY));
+        LocalDate weekAgo = today.minusDays(6);
+        Task.Priority[] priorities = Task.Priority.values();
+        int[] byPriority = new int[priorities.length];
+        int total = 0;
+        int withoutPriority = 0;
+        int completed = 0;
+        int overdue = 0;
+        int dueToday = 0;
+        int dueThisWeek = 0;
+        int completedLastWeek = 0;
+        List<Task> chunk;
+        while (!(chunk = tasks.slice(total, CHUNK_SIZE)).isEmpty()) {
+            for (Task task : chunk) {
+                if (task.getPriority() == null) {
+                    withoutPriority++;
+                } else {
+                    byPriority[task.getPriority().ordinal()]++;
+                }
+                LocalDate due = task.getDueDate();
+                LocalDate end = task.getEndDate();
+                if (task.isCompleted()) {
+                    completed++;
+                    if (end != null && !end.isBefore(weekAgo) && !end.isAfter(today)) {
+                        completedLastWeek++;
+                    }
+                } else if (due != null) {
+                    if (due.isBefore(today)) {
+                        overdue++;
+                    } else if (!due.isAfter(endOfWeek)) {
+                        dueThisWeek++;
+                        if (due.equals(today)) {
+                            dueToday++;
+                        }
+                    }
+                }
+            }
+            total += chunk.size();
+        }
+        StringBuilder text = new StringBuilder();
+        text.append("tasks: ").append(total).append('\n');
+        text.append("open: ").append(total - completed).append('\n');
+        text.append("completed: ").append(completed).append('\n');
+        for (Task.Priority priority : priorities) {
+            text.append("priority ").append(priority).append(": ").append(byPriority[priority.ordinal()]).append('\n');
+        }
+        text.append("no priority: ").append(withoutPriority).append('\n');
+        text.append("overdue: ").append(overdue).append('\n');
+        text.append("due today: ").append(dueToday).append('\n');
+        text.append("due this week: ").append(dueThisWeek).append('\n');
+        text.append("completed in the last 7 days: ").append(completedLastWeek).append('\n');
+        out.write(text.toString());
+    }
+
+    /**
+     * Parsed command-line arguments.
+     */
+    private static final class Options {
+        String command;
+        String user;
+        final TaskQuery query = new TaskQuery();
+        TaskTextFormat format = TaskTextFormat.CSV;
+        boolean explain;
+        boolean dryRun;
+        int port = DEFAULT_PORT;
+
+        static Options parse(String[] args) {
+            if (args.length == 0) throw new IllegalArgumentException("missing command");
+            Options options = new Options();
+            options.command = args[0];
+            if (!List.of("list", "query", "complete", "purge", "report", "serve").contains(options.command)) {
+                throw new IllegalArgumentException("unknown command " + options.command);
+            }
+            LocalDate dueFrom = null, dueTo = null, endedFrom = null, endedTo = null;
+            boolean due = false, ended = false;
+            for (int i = 1; i < args.length; i++) {
+                String option = args[i];
+                switch (option) {
+                    case "--open" -> options.query.open();
+                    case "--completed" -> options.query.completed();
+                    case "--explain" -> options.explain = true;
+                    case "--dry-run" -> options.dryRun = true;
+                    default -> {
+                        if (i + 1 == args.length) throw new IllegalArgumentException("missing value for " + option);
+                        String value = args[++i];
+                        switch (option) {
+                            case "--user" -> options.user = value;
+                            case "--priority" -> options.query.priority(parsePriorities(value));
+                            case "--due-from" -> { dueFrom = LocalDate.parse(value); due = true; }
+                            case "--due-to" -> { dueTo = LocalDate.parse(value); due = true; }
+                            case "--ended-from" -> { endedFrom = LocalDate.parse(value); ended = true; }
+                            case "--ended-to" -> { endedTo = LocalDate.parse(value); ended = true; }
+                            case "--text" -> options.query.text(value);
+                            case "--id" -> options.query.ids(parseIds(value));
+                            case "--sort" -> options.query.sortBy(TaskQuery.Sort.valueOf(value.toUpperCase(Locale.ROOT)));
+                            case "--limit" -> options.query.limit(Integer.parseInt(value));
+                            case "--format" -> options.format = TaskTextFormat.forFile("." + value);
+                            case "--port" -> options.port = Integer.parseInt(value);
+                            default -> throw new IllegalArgumentException("unknown option " + option);
+                        }
+                    }
+                }
+            }
+            if (due) options.query.dueBetween(dueFrom, dueTo);
+            if (ended) options.query.endBetween(endedFrom, endedTo);
+            if (options.user == null) throw new IllegalArgumentException("missing --user");
+            boolean criteria = options.query.hasCriteria();
+            if (options.command.equals("complete") && !criteria) {
+                throw new IllegalArgumentException("complete needs criteria; refusing to complete every task");
+            }
+            if (List.of("list", "report", "serve").contains(options.command) && criteria) {
+                throw new IllegalArgumentException(options.command + " takes no criteria; use query");
+            }
+            return options;
+        }
+
+        private static Task.Priority[] parsePriorities(String value) {
+            List<Task.Priority> priorities = new ArrayList<>();
+            for (String name : value.split(",")) {
+                priorities.add(Task.Priority.valueOf(name.strip().toUpperCase(Locale.ROOT)));
+            }
+            return priorities.toArray(new Task.Priority[0]);
+        }
+
+        private static List<Integer> parseIds(String value) {
+            List<Integer> ids = new ArrayList<>();
+            for (String id : value.split(",")) {
+                ids.add(Integer.parseInt(id.strip()));
+            }
+            return ids;
+        }
+    }
+}
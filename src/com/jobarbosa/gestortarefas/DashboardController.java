@@ -0,0 +1,74 @@
+package com.jobarbosa.gestortarefas;
+
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+import javafx.util.Duration;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Controller for the dashboard window, which summarizes the tasks of the logged-in user from
+ * {@link TaskStatistics}: tasks per priority, open and completed tasks, what is overdue or due
+ * soon, and completions over the last week. Reading the statistics is cheap, so the window is
+ * refreshed every second.
+ */
+public class DashboardController {
+    /** Number of days shown in the completions history, including today. */
+    private static final int HISTORY_DAYS = 7;
+    private final TaskStatistics statistics;
+    private Stage stage;
+
+    public DashboardController(TaskStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Shows the dashboard window, or brings it to the front if it is already shown.
+     */
+    public void show() {
+        if (stage != null) {
+            stage.toFront();
+            return;
+        }
+        Label priorities = new Label();
+        Label status = new Label();
+        Label due = new Label();
+        Label history = new Label();
+        Runnable update = () -> {
+            StringBuilder perPriority = new StringBuilder("Priority:");
+            for (Task.Priority priority : Task.Priority.values()) {
+                perPriority.append("  ").append(priority).append(' ').append(statistics.getCount(priority));
+            }
+            priorities.setText(perPriority.toString());
+            status.setText("Open: " + statistics.getOpenCount() + "  Completed: " + statistics.getCompletedCount());
+            due.setText("Overdue: " + statistics.getOverdueCount() + "  Due today: " + statistics.getDueTodayCount()
+                    + "  Due this week: " + statistics.getDueThisWeekCount());
+            LocalDate today = LocalDate.now();
+            StringBuilder completions = new StringBuilder("Completed per day:");
+            for (Map.Entry<LocalDate, Integer> day
+                    : statistics.getCompletionsPerDay(today.minusDays(HISTORY_DAYS - 1), today).entrySet()) {
+                completions.append("\n  ").append(day.getKey()).append(": ").append(day.getValue());
+            }
+            history.setText(completions.toString());
+        };
+        update.run();
+
+        Timeline refresh = new Timeline(new KeyFrame(Duration.seconds(1), e -> update.run()));
+        refresh.setCycleCount(Timeline.INDEFINITE);
+
+        stage = new Stage();
+        stage.setScene(new Scene(new VBox(8, priorities, status, due, history), 420, 300));
+        stage.setTitle("Dashboard");
+        stage.setOnHidden(e -> {
+            refresh.stop();
+            stage = null;
+        });
+        refresh.play();
+        stage.show();
+    }
+}
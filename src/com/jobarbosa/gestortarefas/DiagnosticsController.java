@@ -0,0 +1,77 @@
+package com.jobarbosa.gestortarefas;
+
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+import javafx.util.Duration;
+
+import java.util.function.Function;
+
+/**
+ * Controller for the diagnostics window, which shows the latency histograms recorded by
+ * {@link Metrics}: how many times each operation ran, its mean, median, 99th percentile, and
+ * maximum duration, and the total size it handled. The table is refreshed every second.
+ */
+public class DiagnosticsController {
+    private Stage stage;
+
+    /**
+     * Shows the diagnostics window, or brings it to the front if it is already shown.
+     */
+    public void show() {
+        if (stage != null) {
+            stage.toFront();
+            return;
+        }
+        TableView<Metrics.Histogram> tableView = new TableView<>();
+        TableColumn<Metrics.Histogram, String> nameCol = new TableColumn<>("Operation");
+        nameCol.setCellValueFactory(cell -> new ReadOnlyStringWrapper(cell.getValue().getName()));
+        tableView.getColumns().add(nameCol);
+        tableView.getColumns().add(column("Count", Metrics.Histogram::getCount));
+        tableView.getColumns().add(durationColumn("Mean (µs)", Metrics.Histogram::getMeanNanos));
+        tableView.getColumns().add(durationColumn("p50 (µs)", h -> h.getPercentileNanos(50)));
+        tableView.getColumns().add(durationColumn("p99 (µs)", h -> h.getPercentileNanos(99)));
+        tableView.getColumns().add(durationColumn("Max (µs)", Metrics.Histogram::getMaxNanos));
+        tableView.getColumns().add(column("Total size", Metrics.Histogram::getTotalSize));
+        tableView.getItems().setAll(Metrics.histograms());
+
+        Timeline refresh = new Timeline(new KeyFrame(Duration.seconds(1), e -> {
+            tableView.getItems().setAll(Metrics.histograms());
+            tableView.refresh();
+        }));
+        refresh.setCycleCount(Timeline.INDEFINITE);
+
+        Button resetButton = new Button("Reset");
+        resetButton.setOnAction(e -> {
+            Metrics.reset();
+            tableView.refresh();
+        });
+
+        stage = new Stage();
+        stage.setScene(new Scene(new VBox(tableView, resetButton), 700, 400));
+        stage.setTitle("Diagnostics");
+        stage.setOnHidden(e -> {
+            refresh.stop();
+            stage = null;
+        });
+        refresh.play();
+        stage.show();
+    }
+
+    private static TableColumn<Metrics.Histogram, Long> column(String title, Function<Metrics.Histogram, Long> value) {
+        TableColumn<Metrics.Histogram, Long> col = new TableColumn<>(title);
+        col.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(value.apply(cell.getValue())));
+        return col;
+    }
+
+    private static TableColumn<Metrics.Histogram, Long> durationColumn(String title, Function<Metrics.Histogram, Long> nanos) {
+        return column(title, h -> nanos.apply(h) / 1000);
+    }
+}
@@ -0,0 +1,70 @@
+package com.jobarbosa.gestortarefas;
+
+import java.io.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-safe source of unique ids.
+ * The next id is kept in a small file next to the data it numbers, so ids are never handed
+ * out twice, even after the entity holding the highest id was removed.
+ */
+public class IdSequence {
+    /** Next id to hand out. */
+    private final AtomicInteger next = new AtomicInteger(1);
+
+    /**
+     * Returns a new id. Ids are never reused.
+     *
+     * @return the new id
+     */
+    public int next() { return next.getAndIncrement(); }
+
+    /**
+     * Returns the id that the next call to {@link #next()} will return.
+     *
+     * @return the next id
+     */
+    public int peek() { return next.get(); }
+
+    /**
+     * Makes sure the sequence only hands out ids greater than the given one.
+     * Called for every id that is already in use.
+     *
+     * @param id an id in use
+     */
+    public void advancePast(int id) {
+        next.accumulateAndGet(id + 1, Math::max);
+    }
+
+    /**
+     * Restarts the sequence at 1, e.g. before loading ids for another set of data.
+     */
+    public void reset() { next.set(1); }
+
+    /**
+     * Reads the next id from a file. A missing file leaves the sequence unchanged.
+     *
+     * @param filename the file to read
+     * @throws IOException if an I/O error occurs
+     */
+    public void load(String filename) throws IOException {
+        if (!new File(filename).exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(filename))) {
+            advancePast(in.readInt() - 1);
+        }
+    }
+
+    /**
+     * Writes the next id to a file.
+     *
+     * @param filename the file to write
+     * @throws IOException if an I/O error occurs
+     */
+    public void save(String filename) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(filename))) {
+            out.writeInt(next.get());
+        }
+    }
+}
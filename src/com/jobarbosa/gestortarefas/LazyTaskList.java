@@ -0,0 +1,190 @@
+package com.jobarbosa.gestortarefas;
+
+import javafx.collections.ObservableListBase;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Read-only observable view of a Tasks collection, used as the items of the task table.
+ * <p>
+ * Rows are fetched from the collection a page at a time when the table asks for them, so tasks
+ * that are still on disk are materialized as they scroll into view. Only the most recently used
+ * pages are kept, so the memory used by the view does not depend on the number of tasks.
+ * When a row near the edge of a page is requested, the neighbouring page is fetched on a
+ * background thread, so scrolling rarely waits for the collection.
+ * <p>
+ * Changes to the collection are forwarded as single-row list changes, so adding, removing,
+ * or completing a task only updates the affected row. The collection must be changed on the
+ * JavaFX application thread while the view is shown.
+ */
+public class LazyTaskList extends ObservableListBase<Task> implements Tasks.Listener {
+    /** Number of rows fetched together. */
+    private static final int PAGE_SIZE = 64;
+    /** Number of pages kept in memory. */
+    private static final int MAX_PAGES = 16;
+    /** Distance from the edge of a page at which the neighbouring page is prefetched. */
+    private static final int PREFETCH_DISTANCE = 16;
+    /** Fetches pages ahead of the scroll position, shared by all views. */
+    private static final ExecutorService PREFETCHER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "task-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Tasks tasks;
+    /** Size last reported to list listeners, used to describe a reset. */
+    private int reportedSize;
+    /** Recently used pages by page number, least recently used first. Guarded by this. */
+    private final Map<Integer, List<Task>> pages = new LinkedHashMap<>(MAX_PAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<Task>> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+    /** Pages being prefetched. Guarded by this. */
+    private final Set<Integer> prefetching = new HashSet<>();
+    /** Incremented whenever rows move, so pages fetched before the move are not cached. Guarded by this. */
+    private int generation;
+
+    public LazyTaskList(Tasks tasks) {
+        this.tasks = tasks;
+        this.reportedSize = tasks.size();
+        tasks.addListener(this);
+    }
+
+    @Override
+    public Task get(int index) {
+        Objects.checkIndex(index, size());
+        int page = index / PAGE_SIZE;
+        int offset = index % PAGE_SIZE;
+        List<Task> rows = page(page);
+        if (offset >= PAGE_SIZE - PREFETCH_DISTANCE) {
+            prefetch(page + 1);
+        } else if (offset < PREFETCH_DISTANCE && page > 0) {
+            prefetch(page - 1);
+        }
+        // The collection may have shrunk since the page was fetched
+        return offset < rows.size() ? rows.get(offset) : tasks.get(index);
+    }
+
+    @Override
+    public int size() { return tasks.size(); }
+
+    @Override
+    public void taskAdded(int index, Task task) {
+        MetricsEvents.TableRefresh event = MetricsEvents.TableRefresh.start("table.add");
+        invalidatePages();
+        reportedSize++;
+        beginChange();
+        nextAdd(index, index + 1);
+        endChange();
+        event.finish(1);
+    }
+
+    @Override
+    public void tasksAdded(int index, List<Task> added) {
+        MetricsEvents.TableRefresh event = MetricsEvents.TableRefresh.start("table.add");
+        invalidatePages();
+        reportedSize += added.size();
+        beginChange();
+        nextAdd(index, index + added.size());
+        endChange();
+        event.finish(added.size());
+    }
+
+    @Override
+    public void taskRemoved(int index, Task task) {
+        MetricsEvents.TableRefresh event = MetricsEvents.TableRefresh.start("table.remove");
+        invalidatePages();
+        reportedSize--;
+        beginChange();
+        nextRemove(index, task);
+        endChange();
+        event.finish(1);
+    }
+
+    @Override
+    public void taskUpdated(int index, Task task) {
+        MetricsEvents.TableRefresh event = MetricsEvents.TableRefresh.start("table.update");
+        beginChange();
+        nextUpdate(index);
+        endChange();
+        event.finish(1);
+    }
+
+    @Override
+    public void tasksReset() {
+        MetricsEvents.TableRefresh event = MetricsEvents.TableRefresh.start("table.reset");
+        invalidatePages();
+        // The previous rows are gone, so the removed part of the change only carries their count
+        int removed = reportedSize;
+        reportedSize = tasks.size();
+        beginChange();
+        nextReplace(0, reportedSize, Collections.nCopies(removed, null));
+        endChange();
+        event.finish(reportedSize);
+    }
+
+    /**
+     * Returns a page from the cache, fetching it from the collection if needed.
+     */
+    private List<Task> page(int page) {
+        int fetchedGeneration;
+        synchronized (this) {
+            List<Task> rows = pages.get(page);
+            if (rows != null) {
+                return rows;
+            }
+            fetchedGeneration = generation;
+        }
+        MetricsEvents.TableRefresh event = MetricsEvents.TableRefresh.start("table.fetchPage");
+        List<Task> rows = tasks.slice(page * PAGE_SIZE, PAGE_SIZE);
+        event.finish(rows.size());
+        cache(page, rows, fetchedGeneration);
+        return rows;
+    }
+
+    /**
+     * Fetches a page in the background unless it is cached or already being fetched.
+     */
+    private void prefetch(int page) {
+        if (page * PAGE_SIZE >= size()) {
+            return;
+        }
+        int fetchedGeneration;
+        synchronized (this) {
+            if (pages.containsKey(page) || !prefetching.add(page)) {
+                return;
+            }
+            fetchedGeneration = generation;
+        }
+        PREFETCHER.execute(() -> {
+            try {
+                cache(page, tasks.slice(page * PAGE_SIZE, PAGE_SIZE), fetchedGeneration);
+            } finally {
+                synchronized (this) {
+                    prefetching.remove(page);
+                }
+            }
+        });
+    }
+
+    private synchronized void cache(int page, List<Task> rows, int fetchedGeneration) {
+        if (fetchedGeneration == generation) {
+            pages.put(page, rows);
+        }
+    }
+
+    private synchronized void invalidatePages() {
+        generation++;
+        pages.clear();
+    }
+}
@@ -8,6 +8,7 @@ import javafx.scene.control.TextField;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Controller for the login screen.
@@ -15,17 +16,24 @@ import java.util.Optional;
  */
 public class LoginController {
     private UserManagementController userController;
-    private Runnable onLoginSuccess;
+    private Consumer<User> onLoginSuccess;
     private Runnable onRegisterRequest;
+    /** Whether users are loaded, so logging in and registering are possible. */
+    private boolean ready = true;
+    /** Shown while logging in and registering are disabled. */
+    private String waitMessage = "Loading users...";
+    private Button loginButton;
+    private Button registerButton;
+    private Label feedbackLabel;
 
     public LoginController(UserManagementController userController) {
         this.userController = userController;
     }
 
     /**
-     * Sets the action to perform on successful login.
+     * Sets the action to perform on successful login. The action receives the authenticated user.
      */
-    public void setOnLoginSuccess(Runnable action) {
+    public void setOnLoginSuccess(Consumer<User> action) {
         this.onLoginSuccess = action;
     }
 
@@ -36,6 +44,33 @@ public class LoginController {
         this.onRegisterRequest = action;
     }
 
+    /**
+     * Enables or disables logging in and registering, e.g. while users are still being loaded.
+     * Must be called on the JavaFX application thread.
+     *
+     * @param ready true once users are loaded
+     */
+    public void setReady(boolean ready) {
+        setReady(ready, "Loading users...");
+    }
+
+    /**
+     * Enables or disables logging in and registering, telling the user what is awaited, e.g. while
+     * the tasks of the user who logged in are being loaded. Must be called on the JavaFX application thread.
+     *
+     * @param ready true to enable logging in and registering
+     * @param message shown while they are disabled
+     */
+    public void setReady(boolean ready, String message) {
+        this.ready = ready;
+        this.waitMessage = message;
+        if (loginButton != null) {
+            loginButton.setDisable(!ready);
+            registerButton.setDisable(!ready);
+            feedbackLabel.setText(ready ? "" : waitMessage);
+        }
+    }
+
     /**
      * Shows the login UI.
      * @param primaryStage the main stage
@@ -45,9 +80,10 @@ public class LoginController {
         TextField usernameField = new TextField();
         Label passwordLabel = new Label("Password:");
         PasswordField passwordField = new PasswordField();
-        Button loginButton = new Button("Login");
-        Button registerButton = new Button("Register");
-        Label feedbackLabel = new Label();
+        loginButton = new Button("Login");
+        registerButton = new Button("Register");
+        feedbackLabel = new Label();
+        setReady(ready, waitMessage);
 
         loginButton.setOnAction(e -> {
             String username = usernameField.getText();
@@ -59,7 +95,7 @@ public class LoginController {
             Optional<User> user = userController.getUsers().authenticate(username, password);
             if (user.isPresent()) {
                 feedbackLabel.setText("Login successful!");
-                if (onLoginSuccess != null) onLoginSuccess.run();
+                if (onLoginSuccess != null) onLoginSuccess.accept(user.get());
             } else {
                 feedbackLabel.setText("Invalid username or password.");
             }
@@ -1,11 +1,17 @@
 package com.jobarbosa.gestortarefas;
 
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.control.Alert;
 import javafx.scene.control.PasswordField;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
 import java.awt.*;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
 
 /**
  * Main application entry point for GestorTarefasJavaFX.
@@ -14,28 +20,141 @@ import java.awt.*;
 public class MainApp extends Application {
     private UserManagementController userController;
     private TasksManagementController tasksController;
+    private PersistenceWriter writer;
+    private ReminderScheduler reminders;
+    /** HTTP API over the logged-in user's tasks, or null if disabled or nobody is logged in. */
+    private TaskApiServer api;
+    private final StartupTimer startupTimer = new StartupTimer();
+    /** Maximum number of tasks listed in a reminder. */
+    private static final int MAX_REMINDER_LINES = 10;
+    /** System property with the port of the local HTTP API; the API is off unless it is set. */
+    private static final String API_PORT_PROPERTY = "gestortarefas.http.port";
+    private static final System.Logger LOG = System.getLogger(MainApp.class.getName());
 
     @Override
     public void start(Stage primaryStage) {
-        userController = new UserManagementController();
-        tasksController = new TasksManagementController();
-        userController.loadUsers();
-        tasksController.loadTasks();
+        startupTimer.mark("fx-start");
+        writer = new PersistenceWriter();
+        writer.setOnError(e -> Platform.runLater(() -> new Alert(Alert.AlertType.ERROR, e.getMessage()).show()));
+        userController = new UserManagementController(writer);
+        tasksController = new TasksManagementController(writer);
+        // The table shows the tasks, so changes written by other instances are applied on the FX thread
+        tasksController.setRemoteChangeExecutor(Platform::runLater);
+        tasksController.setUserController(userController);
 
+        // Show the login screen first; users are loaded in the background and login is
+        // enabled once they are available. Tasks are only loaded after login.
         LoginController loginController = new LoginController(userController);
+        loginController.setReady(false);
+        loginController.show(primaryStage);
+        primaryStage.getScene().addPostLayoutPulseListener(new Runnable() {
+            @Override
+            public void run() {
+                startupTimer.mark("first-frame");
+                primaryStage.getScene().removePostLayoutPulseListener(this);
+            }
+        });
+        Thread userLoader = new Thread(() -> {
+            userController.loadUsers();
+            startupTimer.mark("users-loaded");
+            Platform.runLater(() -> {
+                loginController.setReady(true);
+                startupTimer.mark("interactive");
+            });
+        }, "user-loader");
+        userLoader.setDaemon(true);
+        userLoader.start();
+
         RegistrationController registrationController = new RegistrationController(userController);
-        TaskManagerController taskManagerController = new TaskManagerController(tasksController);
+        TaskManagerController taskManagerController = new TaskManagerController(tasksController, userController);
+        reminders = new ReminderScheduler(tasksController.getTasks());
+        reminders.setOnDue(this::showReminder);
 
         // Navigation logic
-        loginController.setOnLoginSuccess(() -> taskManagerController.show(primaryStage));
+        loginController.setOnLoginSuccess(user -> {
+            // Only the logged-in user's tasks are loaded, in the background: loading waits for
+            // pending writes and for the shard lock, which another instance may hold
+            loginController.setReady(false, "Loading tasks...");
+            Thread taskLoader = new Thread(() -> {
+                tasksController.loadTasks(user);
+                reminders.setHistoryFile(tasksController.getRemindersFile());
+                Platform.runLater(() -> {
+                    loginController.setReady(true);
+                    startApi(user);
+                    taskManagerController.setUser(user);
+                    taskManagerController.show(primaryStage);
+                });
+            }, "task-loader");
+            taskLoader.setDaemon(true);
+            taskLoader.start();
+        });
         loginController.setOnRegisterRequest(() -> registrationController.show(primaryStage));
         registrationController.setOnRegisterRequest(() -> loginController.show(primaryStage));
+        taskManagerController.setOnExit(() -> {
+            stopApi();
+            // Before unloading, so the empty collection does not clear the user's reminder history
+            reminders.setHistoryFile(null);
+            tasksController.unloadTasks();
+            loginController.show(primaryStage);
+        });
+    }
 
-        // Show login screen first
-        loginController.show(primaryStage);
+    /**
+     * Writes any pending changes before the application exits.
+     */
+    @Override
+    public void stop() {
+        stopApi();
+        reminders.close();
+        writer.shutdown();
+    }
+
+    /**
+     * Serves the tasks of the logged-in user on the loopback address, if a port is configured.
+     * Changes made through the API are applied on the JavaFX thread, like changes made in the table.
+     * The address is logged; if the port cannot be used, the user is told in an alert.
+     */
+    private void startApi(User user) {
+        Integer port = Integer.getInteger(API_PORT_PROPERTY);
+        if (port == null) {
+            return;
+        }
+        try {
+            api = new TaskApiServer(tasksController, userController.getUsers(), user, Platform::runLater,
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            LOG.log(System.Logger.Level.INFO, "api: listening on http://localhost:" + api.getPort() + "/api/");
+        } catch (IOException e) {
+            new Alert(Alert.AlertType.ERROR, "Could not start the HTTP API on port " + port + ": " + e.getMessage()).show();
+        }
+    }
+
+    private void stopApi() {
+        if (api != null) {
+            api.close();
+            api = null;
+        }
+    }
+
+    /**
+     * Tells the user which tasks are due soon.
+     */
+    private void showReminder(List<Task> due) {
+        StringBuilder text = new StringBuilder();
+        int shown = Math.min(due.size(), MAX_REMINDER_LINES);
+        for (int i = 0; i < shown; i++) {
+            Task task = due.get(i);
+            text.append(task.getDueDate()).append("  ").append(task.getDescription()).append('\n');
+        }
+        if (due.size() > shown) {
+            text.append("... and ").append(due.size() - shown).append(" more");
+        }
+        Alert alert = new Alert(Alert.AlertType.INFORMATION, text.toString().strip());
+        alert.setHeaderText(due.size() == 1 ? "1 task is due soon" : due.size() + " tasks are due soon");
+        alert.show();
     }
 
     public static void main(String[] args) {
+        TaskApiServer.configureTransport();
         launch(args);
     }
 
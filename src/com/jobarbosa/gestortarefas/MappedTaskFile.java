@@ -0,0 +1,169 @@
+package com.jobarbosa.gestortarefas;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.function.Consumer;
+
+/**
+ * Read-only, memory-mapped view of a task file in the binary format.
+ * Opening the file only maps it and checks the header; each task is decoded from its
+ * fixed-width record when it is first requested. The mapping is released by {@link #close()},
+ * so the file can be replaced afterwards, which Windows refuses while it is mapped.
+ */
+public class MappedTaskFile implements Closeable {
+    /** Releases a mapping without waiting for the garbage collector, or null if the JDK offers no way to. */
+    private static final Consumer<ByteBuffer> UNMAPPER = unmapper();
+
+    /** The whole mapped file, released on close. */
+    private MappedByteBuffer mapping;
+    /** Mapped fixed-width records. */
+    private final ByteBuffer records;
+    /** Mapped string section. */
+    private final ByteBuffer strings;
+    /** Number of tasks in the file. */
+    private final int count;
+    /** Highest task id, from the header, or -1 if the file predates it being stored. */
+    private final int maxId;
+
+    private MappedTaskFile(MappedByteBuffer mapping, ByteBuffer records, ByteBuffer strings, int count, int maxId) {
+        this.mapping = mapping;
+        this.records = records;
+        this.strings = strings;
+        this.count = count;
+        this.maxId = maxId;
+    }
+
+    /**
+     * Maps a task file into memory.
+     *
+     * @param filename the file to map
+     * @return the mapped file
+     * @throws IOException if an I/O error occurs or the file is not in the binary format
+     */
+    public static MappedTaskFile open(String filename) throws IOException {
+        MetricsEvents.Persistence event = MetricsEvents.Persistence.start("tasks.map", filename);
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try {
+                TaskFile.Header header = TaskFile.readHeader(buffer);
+                long recordBytes = (long) header.count() * TaskFile.RECORD_SIZE;
+                if (buffer.capacity() < header.size() + recordBytes + header.stringBytes()) {
+                    throw new IOException("truncated task file");
+                }
+                ByteBuffer records = buffer.slice(header.size(), (int) recordBytes);
+                ByteBuffer strings = buffer.slice(header.size() + (int) recordBytes, header.stringBytes());
+                event.finish(channel.size());
+                return new MappedTaskFile(buffer, records, strings, header.count(), header.maxId());
+            } catch (IOException e) {
+                unmap(buffer);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of tasks in the file.
+     *
+     * @return the number of tasks
+     */
+    public int size() { return count; }
+
+    /**
+     * Returns the highest task id in the file. It is stored in the header; only files written
+     * before it was are scanned, reading the id field of each record.
+     *
+     * @return the highest id, or 0 if the file has no tasks
+     */
+    public int maxId() {
+        if (maxId >= 0) {
+            return maxId;
+        }
+        int max = 0;
+        for (int position = 0; position < records.limit(); position += TaskFile.RECORD_SIZE) {
+            max = Math.max(max, records.getInt(position));
+        }
+        return max;
+    }
+
+    /**
+     * Returns the due date of the task at the given position if it is open, reading only the
+     * flags and due date of its record.
+     *
+     * @param index position of the task in the file
+     * @return the due date, or null if the task is completed or has no due date
+     */
+    public LocalDate openDueDate(int index) {
+        int position = index * TaskFile.RECORD_SIZE;
+        if ((records.get(position + 5) & TaskFile.FLAG_COMPLETED) != 0) {
+            return null;
+        }
+        return TaskFile.fromEpochDay(records.getInt(position + 8));
+    }
+
+    /**
+     * Decodes the task at the given position. Every call returns a new Task instance.
+     *
+     * @param index position of the task in the file
+     * @return the decoded task
+     * @throws UncheckedIOException if the record is corrupt
+     */
+    public Task read(int index) {
+        try {
+            return TaskFile.readRecord(records, index * TaskFile.RECORD_SIZE, strings);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Releases the mapping. The file must not be read afterwards, and no other thread may be
+     * reading it meanwhile: reading an unmapped buffer crashes the JVM. Closing twice does nothing.
+     */
+    @Override
+    public void close() {
+        MappedByteBuffer released = mapping;
+        mapping = null;
+        if (released != null) {
+            unmap(released);
+        }
+    }
+
+    private static void unmap(MappedByteBuffer buffer) {
+        if (UNMAPPER != null) {
+            UNMAPPER.accept(buffer);
+        }
+    }
+
+    /**
+     * Looks up {@code sun.misc.Unsafe.invokeCleaner}, the only way to release a mapping before it is
+     * garbage collected. It is looked up reflectively, so without it the mapping is simply left to
+     * the garbage collector.
+     */
+    private static Consumer<ByteBuffer> unmapper() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            return buffer -> {
+                try {
+                    invokeCleaner.invoke(unsafe, buffer);
+                } catch (ReflectiveOperationException e) {
+                    System.err.println("Could not unmap task file: " + e.getMessage());
+                }
+            };
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
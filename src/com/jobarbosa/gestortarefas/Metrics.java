@@ -0,0 +1,150 @@
+package com.jobarbosa.gestortarefas;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process latency histograms for the hot paths of the application: persistence, queries,
+ * authentication, and table refreshes. Recording is cheap and lock-free, so the metrics are
+ * always on; they are shown in the diagnostics window.
+ * <p>
+ * Each operation also emits a JDK Flight Recorder event (see {@link MetricsEvents}), for
+ * recordings taken with {@code jcmd <pid> JFR.start}.
+ */
+public final class Metrics {
+    /** Histograms by name. */
+    private static final Map<String, Histogram> HISTOGRAMS = new ConcurrentHashMap<>();
+
+    private Metrics() { }
+
+    /**
+     * Returns the histogram with the given name, creating it on first use.
+     *
+     * @param name the metric name, e.g. {@code tasks.getByPriority}
+     * @return the histogram
+     */
+    public static Histogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, Histogram::new);
+    }
+
+    /**
+     * Returns all histograms, sorted by name.
+     *
+     * @return the histograms
+     */
+    public static List<Histogram> histograms() {
+        List<Histogram> histograms = new ArrayList<>(HISTOGRAMS.values());
+        histograms.sort(Comparator.comparing(Histogram::getName));
+        return histograms;
+    }
+
+    /**
+     * Clears all recorded values.
+     */
+    public static void reset() {
+        for (Histogram histogram : HISTOGRAMS.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Latency histogram with power-of-two buckets, plus a running total of a size per operation
+     * (bytes written, number of results, ...).
+     */
+    public static final class Histogram {
+        /** Bucket i counts durations in [2^(i-1), 2^i) nanoseconds. */
+        private static final int BUCKETS = 64;
+
+        private final String name;
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder totalSize = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        private Histogram(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Records one operation that started at the given time and ends now.
+         *
+         * @param startNanos the {@link System#nanoTime()} at the start of the operation
+         * @param size the size associated with the operation, or 0
+         */
+        public void recordSince(long startNanos, long size) {
+            record(System.nanoTime() - startNanos, size);
+        }
+
+        /**
+         * Records one operation.
+         *
+         * @param nanos the duration in nanoseconds
+         * @param size the size associated with the operation, or 0
+         */
+        public void record(long nanos, long size) {
+            long duration = Math.max(0, nanos);
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(duration));
+            count.increment();
+            totalNanos.add(duration);
+            totalSize.add(size);
+            maxNanos.accumulate(duration);
+        }
+
+        public String getName() { return name; }
+
+        public long getCount() { return count.sum(); }
+
+        public long getMaxNanos() { return maxNanos.get(); }
+
+        public long getTotalSize() { return totalSize.sum(); }
+
+        /**
+         * Returns the mean duration, or 0 if nothing was recorded.
+         *
+         * @return the mean duration in nanoseconds
+         */
+        public long getMeanNanos() {
+            long n = count.sum();
+            return n == 0 ? 0 : totalNanos.sum() / n;
+        }
+
+        /**
+         * Returns an upper bound of the given percentile of the durations, accurate to a factor of two.
+         *
+         * @param percentile the percentile, between 0 and 100
+         * @return the duration in nanoseconds, or 0 if nothing was recorded
+         */
+        public long getPercentileNanos(double percentile) {
+            long n = count.sum();
+            if (n == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(n * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(i == 0 ? 0 : (i == 63 ? Long.MAX_VALUE : 1L << i), getMaxNanos());
+                }
+            }
+            return getMaxNanos();
+        }
+
+        private void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            count.reset();
+            totalNanos.reset();
+            totalSize.reset();
+            maxNanos.reset();
+        }
+    }
+}
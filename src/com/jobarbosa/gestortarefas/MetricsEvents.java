@@ -0,0 +1,300 @@
+package com.jobarbosa.gestortarefas;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Timers for the operations measured by {@link Metrics}, which also emit JDK Flight Recorder events.
+ * <p>
+ * Each timer is started before the operation and finished after it; finishing records the
+ * duration in the histogram of the same name and commits the event if a recording is running.
+ * The event classes are only loaded once the flight recorder is initialized (a recording was
+ * started at launch or with {@code jcmd <pid> JFR.start}): loading the first event class otherwise
+ * initializes the recorder, which adds a few hundred milliseconds to startup.
+ */
+public final class MetricsEvents {
+    private static final String CATEGORY = "Task Manager";
+
+    private MetricsEvents() { }
+
+    private static boolean recording() {
+        return FlightRecorder.isInitialized();
+    }
+
+    /**
+     * Times a task or user file being read or written.
+     */
+    public static final class Persistence {
+        private final String operation;
+        private final long startNanos = System.nanoTime();
+        private final PersistenceEvent event;
+
+        private Persistence(String operation, String file) {
+            this.operation = operation;
+            this.event = recording() ? PersistenceEvent.started(operation, file) : null;
+        }
+
+        /**
+         * Starts timing a file operation.
+         *
+         * @param operation the metric name, e.g. {@code tasks.save}
+         * @param file the file read or written
+         * @return the started timer
+         */
+        public static Persistence start(String operation, String file) {
+            return new Persistence(operation, file);
+        }
+
+        /**
+         * Finishes the operation.
+         *
+         * @param bytes number of bytes read or written
+         */
+        public void finish(long bytes) {
+            Metrics.histogram(operation).recordSince(startNanos, bytes);
+            if (event != null) {
+                event.finish(bytes);
+            }
+        }
+    }
+
+    @Name("com.jobarbosa.gestortarefas.Persistence")
+    @Label("Persistence")
+    @Category(CATEGORY)
+    @Description("A task or user file was read or written")
+    private static final class PersistenceEvent extends Event {
+        @Label("Operation")
+        String operation;
+        @Label("File")
+        String file;
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        static PersistenceEvent started(String operation, String file) {
+            PersistenceEvent event = new PersistenceEvent();
+            event.operation = operation;
+            event.file = file;
+            event.begin();
+            return event;
+        }
+
+        void finish(long bytes) {
+            this.bytes = bytes;
+            commit();
+        }
+    }
+
+    /**
+     * Times a query being answered.
+     */
+    public static final class Query {
+        private final String query;
+        private final long startNanos = System.nanoTime();
+        private final QueryEvent event;
+
+        private Query(String query) {
+            this.query = query;
+            this.event = recording() ? QueryEvent.started(query) : null;
+        }
+
+        /**
+         * Starts timing a query.
+         *
+         * @param query the metric name, e.g. {@code tasks.getByPriority}
+         * @return the started timer
+         */
+        public static Query start(String query) {
+            return new Query(query);
+        }
+
+        /**
+         * Finishes the query.
+         *
+         * @param resultSize number of results
+         */
+        public void finish(int resultSize) {
+            Metrics.histogram(query).recordSince(startNanos, resultSize);
+            if (event != null) {
+                event.finish(resultSize);
+            }
+        }
+    }
+
+    @Name("com.jobarbosa.gestortarefas.Query")
+    @Label("Query")
+    @Category(CATEGORY)
+    @Description("A query over the tasks was answered")
+    private static final class QueryEvent extends Event {
+        @Label("Query")
+        String query;
+        @Label("Result Size")
+        int resultSize;
+
+        static QueryEvent started(String query) {
+            QueryEvent event = new QueryEvent();
+            event.query = query;
+            event.begin();
+            return event;
+        }
+
+        void finish(int resultSize) {
+            this.resultSize = resultSize;
+            commit();
+        }
+    }
+
+    /**
+     * Times a login attempt being checked.
+     */
+    public static final class Authentication {
+        /** Metric name. */
+        static final String METRIC = "users.authenticate";
+
+        private final long startNanos = System.nanoTime();
+        private final AuthenticationEvent event;
+
+        private Authentication() {
+            this.event = recording() ? AuthenticationEvent.started() : null;
+        }
+
+        /**
+         * Starts timing an authentication.
+         *
+         * @return the started timer
+         */
+        public static Authentication start() {
+            return new Authentication();
+        }
+
+        /**
+         * Finishes the authentication.
+         *
+         * @param success whether the credentials were correct
+         */
+        public void finish(boolean success) {
+            Metrics.histogram(METRIC).recordSince(startNanos, success ? 1 : 0);
+            if (event != null) {
+                event.finish(success);
+            }
+        }
+    }
+
+    @Name("com.jobarbosa.gestortarefas.Authentication")
+    @Label("Authentication")
+    @Category(CATEGORY)
+    @Description("A username and password were checked")
+    private static final class AuthenticationEvent extends Event {
+        @Label("Success")
+        boolean success;
+
+        static AuthenticationEvent started() {
+            AuthenticationEvent event = new AuthenticationEvent();
+            event.begin();
+            return event;
+        }
+
+        void finish(boolean success) {
+            this.success = success;
+            commit();
+        }
+    }
+
+    /**
+     * Records that a startup phase was reached, under the metric {@code startup.<phase>}, with the
+     * time since the JVM started as its duration.
+     *
+     * @param phase the phase name, e.g. {@code first-frame}
+     * @param sinceStartMillis milliseconds since the JVM started
+     */
+    public static void startupPhase(String phase, long sinceStartMillis) {
+        Metrics.histogram("startup." + phase).record(sinceStartMillis * 1_000_000, 0);
+        if (recording()) {
+            StartupPhaseEvent.reached(phase, sinceStartMillis);
+        }
+    }
+
+    @Name("com.jobarbosa.gestortarefas.StartupPhase")
+    @Label("Startup Phase")
+    @Category(CATEGORY)
+    @Description("A phase of application startup was reached")
+    private static final class StartupPhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+        @Label("Since JVM Start")
+        @Timespan(Timespan.MILLISECONDS)
+        long sinceStart;
+
+        static void reached(String phase, long sinceStartMillis) {
+            StartupPhaseEvent event = new StartupPhaseEvent();
+            event.phase = phase;
+            event.sinceStart = sinceStartMillis;
+            event.commit();
+        }
+    }
+
+    /**
+     * Times the task table processing a change of its items.
+     */
+    public static final class TableRefresh {
+        private final String change;
+        private final long startNanos = System.nanoTime();
+        private final TableRefreshEvent event;
+
+        private TableRefresh(String change) {
+            this.change = change;
+            this.event = recording() ? TableRefreshEvent.started(change) : null;
+        }
+
+        /**
+         * Starts timing a refresh.
+         *
+         * @param change the metric name, e.g. {@code table.update}
+         * @return the started timer
+         */
+        public static TableRefresh start(String change) {
+            return new TableRefresh(change);
+        }
+
+        /**
+         * Finishes the refresh.
+         *
+         * @param rows number of rows affected
+         */
+        public void finish(int rows) {
+            Metrics.histogram(change).recordSince(startNanos, rows);
+            if (event != null) {
+                event.finish(rows);
+            }
+        }
+    }
+
+    @Name("com.jobarbosa.gestortarefas.TableRefresh")
+    @Label("Table Refresh")
+    @Category(CATEGORY)
+    @Description("The task table processed a change of its items")
+    private static final class TableRefreshEvent extends Event {
+        @Label("Change")
+        String change;
+        @Label("Rows")
+        int rows;
+
+        static TableRefreshEvent started(String change) {
+            TableRefreshEvent event = new TableRefreshEvent();
+            event.change = change;
+            event.begin();
+            return event;
+        }
+
+        void finish(int rows) {
+            this.rows = rows;
+            commit();
+        }
+    }
+}
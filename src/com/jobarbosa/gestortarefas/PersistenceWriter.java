@@ -0,0 +1,142 @@
+package com.jobarbosa.gestortarefas;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Performs file writes on a dedicated background thread, so that saving never blocks the UI.
+ * <p>
+ * Writes are submitted under a key (usually the file name). Writes are collected for a short
+ * delay and then run in the order they were submitted; submitting a write for a key that is
+ * still queued replaces the queued write and moves it to the end of the queue. A burst of
+ * changes to the same file therefore results in a single write of the latest state.
+ */
+public class PersistenceWriter {
+    /** Default time writes are collected before they are run. */
+    private static final long DEFAULT_DELAY_MILLIS = 500;
+
+    /**
+     * A write to perform on the background thread.
+     */
+    public interface Write {
+        /**
+         * Performs the write.
+         *
+         * @throws IOException if an I/O error occurs
+         */
+        void run() throws IOException;
+    }
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "persistence-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /** Time writes are collected before they are run. */
+    private final long delayMillis;
+    /** Queued writes by key, in submission order. */
+    private final Map<String, Write> queue = new LinkedHashMap<>();
+    /** Pending run of the queued writes, or null if none is scheduled. */
+    private ScheduledFuture<?> scheduledDrain;
+    /** Receives errors from failed writes, on the writer thread. */
+    private volatile Consumer<IOException> onError = e -> System.err.println(e.getMessage());
+
+    /**
+     * Constructs a writer with the default delay.
+     */
+    public PersistenceWriter() {
+        this(DEFAULT_DELAY_MILLIS);
+    }
+
+    /**
+     * Constructs a writer that collects writes for the given delay before running them.
+     *
+     * @param delayMillis the delay in milliseconds
+     */
+    public PersistenceWriter(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    /**
+     * Sets the handler for failed writes. The handler is called on the writer thread.
+     * By default errors are printed to standard error.
+     *
+     * @param onError the error handler
+     */
+    public void setOnError(Consumer<IOException> onError) {
+        this.onError = onError;
+    }
+
+    /**
+     * Queues a write. Any write still queued under the same key is discarded.
+     *
+     * @param key identifies what is written, usually the file name
+     * @param write the write to perform
+     */
+    public synchronized void submit(String key, Write write) {
+        queue.remove(key);
+        queue.put(key, write);
+        if (scheduledDrain == null) {
+            scheduledDrain = executor.schedule(this::drain, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Runs all queued writes now and waits for them to finish.
+     */
+    public void flush() {
+        Future<?> drain;
+        synchronized (this) {
+            if (scheduledDrain != null) {
+                scheduledDrain.cancel(false);
+                scheduledDrain = null;
+            }
+            drain = executor.submit(this::drain);
+        }
+        try {
+            drain.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Runs all queued writes and stops the writer thread. Call this on application exit.
+     */
+    public void shutdown() {
+        flush();
+        executor.shutdown();
+    }
+
+    /**
+     * Runs the queued writes, reporting failures to the error handler and going on with the next write.
+     */
+    private void drain() {
+        List<Map.Entry<String, Write>> batch;
+        synchronized (this) {
+            batch = new ArrayList<>(queue.entrySet());
+            queue.clear();
+            scheduledDrain = null;
+        }
+        for (Map.Entry<String, Write> entry : batch) {
+            try {
+                entry.getValue().run();
+            } catch (IOException | RuntimeException e) {
+                // A failing write must not drop the writes queued after it
+                onError.accept(new IOException("Could not write " + entry.getKey() + ": " + e.getMessage(), e));
+            }
+        }
+    }
+}
@@ -0,0 +1,539 @@
+package com.jobarbosa.gestortarefas;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Immutable list of values ordered by a {@code long} key, stored as a persistent AVL tree whose
+ * leaves hold up to {@value #LEAF_SIZE} keys and values in arrays.
+ * <p>
+ * Adding or removing a value returns a new version that shares all but O(log n) nodes with the
+ * old one, which stays valid and unchanged. A version can therefore be handed out as a read-only
+ * snapshot in O(1), and kept by any thread for as long as needed without blocking writers.
+ * Positional access and finding the position of a key take O(log n). Iteration walks the leaf
+ * arrays, descending the tree only once per leaf, and appending a batch builds its leaves in O(n)
+ * and joins them to the tree in O(log n).
+ *
+ * @param <E> the type of the values
+ */
+final class PersistentSequence<E> extends AbstractList<E> implements Serializable {
+    private static final long serialVersionUID = 2L;
+    /** Maximum number of values in a leaf. */
+    private static final int LEAF_SIZE = 64;
+    private static final PersistentSequence<?> EMPTY = new PersistentSequence<>(null);
+    private static final Object[] NO_VALUES = {};
+
+    private final Node root;
+
+    private PersistentSequence(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Returns the empty sequence.
+     *
+     * @param <E> the type of the values
+     * @return the empty sequence
+     */
+    @SuppressWarnings("unchecked")
+    static <E> PersistentSequence<E> empty() {
+        return (PersistentSequence<E>) EMPTY;
+    }
+
+    /**
+     * Returns a sequence with the given value at the given key, replacing any value already there.
+     *
+     * @param key the key of the value
+     * @param value the value
+     * @return the new version
+     */
+    PersistentSequence<E> with(long key, E value) {
+        if (root == null) {
+            return new PersistentSequence<>(new Leaf(new long[] {key}, new Object[] {value}));
+        }
+        return new PersistentSequence<>(insert(root, key, value));
+    }
+
+    /**
+     * Returns a sequence with the given values appended, at consecutive keys starting at
+     * {@code firstKey}, which must be greater than every key already present. The values are
+     * packed into full leaves in O(n), which are then joined to the tree in O(log n).
+     *
+     * @param firstKey the key of the first value
+     * @param values the values to append, in order
+     * @return the new version
+     */
+    PersistentSequence<E> withAll(long firstKey, List<? extends E> values) {
+        long[] keys = new long[values.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = firstKey + i;
+        }
+        return withAll(keys, values);
+    }
+
+    /**
+     * Returns a sequence with the given values appended at the given keys, which must be ascending
+     * and greater than every key already present, like {@link #withAll(long, List)}.
+     *
+     * @param keys the keys of the values, in ascending order
+     * @param values the values to append, in order
+     * @return the new version
+     */
+    PersistentSequence<E> withAll(long[] keys, List<? extends E> values) {
+        if (values.isEmpty()) {
+            return this;
+        }
+        Object[] array = values.toArray();
+        Node[] leaves = new Node[(array.length + LEAF_SIZE - 1) / LEAF_SIZE];
+        for (int i = 0; i < leaves.length; i++) {
+            int from = i * LEAF_SIZE;
+            int to = Math.min(array.length, from + LEAF_SIZE);
+            leaves[i] = new Leaf(Arrays.copyOfRange(keys, from, to), Arrays.copyOfRange(array, from, to));
+        }
+        return new PersistentSequence<>(join(root, build(leaves, 0, leaves.length)));
+    }
+
+    /**
+     * Returns a sequence without the value at the given key.
+     *
+     * @param key the key of the value to remove
+     * @return the new version, or this sequence if the key is not present
+     */
+    PersistentSequence<E> without(long key) {
+        if (root == null) {
+            return this;
+        }
+        Node result = delete(root, key);
+        return result == root ? this : new PersistentSequence<>(result);
+    }
+
+    /**
+     * Returns the position of the value at the given key.
+     *
+     * @param key the key to look for
+     * @return the position, or -1 if the key is not present
+     */
+    int indexOfKey(long key) {
+        if (root == null) {
+            return -1;
+        }
+        int index = 0;
+        Node node = root;
+        while (node instanceof Branch branch) {
+            if (key < branch.right.firstKey) {
+                node = branch.left;
+            } else {
+                index += branch.left.size;
+                node = branch.right;
+            }
+        }
+        int position = Arrays.binarySearch(((Leaf) node).keys, key);
+        return position >= 0 ? index + position : -1;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        Objects.checkIndex(index, size());
+        Node node = root;
+        while (node instanceof Branch branch) {
+            if (index < branch.left.size) {
+                node = branch.left;
+            } else {
+                index -= branch.left.size;
+                node = branch.right;
+            }
+        }
+        return (E) ((Leaf) node).values[index];
+    }
+
+    @Override
+    public int size() {
+        return root == null ? 0 : root.size;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Forward();
+    }
+
+    /**
+     * Iterator over the whole sequence that walks the leaves in order, keeping the right subtrees
+     * still to be visited on a stack, so each node is visited once.
+     */
+    private final class Forward implements Iterator<E> {
+        /** Right subtrees still to be visited, innermost on top; never deeper than the tree. */
+        private final Node[] pending = new Node[root == null ? 0 : root.height];
+        private int depth;
+        /** Values of the current leaf, and the position of the next one in it. */
+        private Object[] values = NO_VALUES;
+        private int offset;
+
+        Forward() {
+            if (root != null) {
+                descend(root);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return offset < values.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            Object[] current = values;
+            int position = offset;
+            if (position >= current.length) {
+                throw new NoSuchElementException();
+            }
+            // Leaves are never empty, so stepping into the next one keeps hasNext() exact
+            if (position + 1 < current.length || depth == 0) {
+                offset = position + 1;
+            } else {
+                descend(pending[--depth]);
+            }
+            return (E) current[position];
+        }
+
+        private void descend(Node node) {
+            while (node instanceof Branch branch) {
+                pending[depth++] = branch.right;
+                node = branch.left;
+            }
+            values = ((Leaf) node).values;
+            offset = 0;
+        }
+    }
+
+    @Override
+    public ListIterator<E> listIterator(int index) {
+        Objects.checkIndex(index, size() + 1);
+        return new Cursor(index);
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] array = new Object[size()];
+        if (root != null) {
+            copyInto(root, array, 0);
+        }
+        return array;
+    }
+
+    /**
+     * Copies the values of a subtree into an array, leaf by leaf.
+     *
+     * @return the position after the last value copied
+     */
+    private static int copyInto(Node node, Object[] array, int offset) {
+        while (node instanceof Branch branch) {
+            offset = copyInto(branch.left, array, offset);
+            node = branch.right;
+        }
+        Leaf leaf = (Leaf) node;
+        System.arraycopy(leaf.values, 0, array, offset, leaf.size);
+        return offset + leaf.size;
+    }
+
+    @Override
+    public void forEach(Consumer<? super E> action) {
+        Objects.requireNonNull(action);
+        if (root != null) {
+            forEach(root, action);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> void forEach(Node node, Consumer<? super E> action) {
+        while (node instanceof Branch branch) {
+            forEach(branch.left, action);
+            node = branch.right;
+        }
+        for (Object value : ((Leaf) node).values) {
+            action.accept((E) value);
+        }
+    }
+
+    /**
+     * Read-only list iterator that keeps the leaf holding the current position, so it only
+     * descends the tree when it steps into another leaf. Sub-lists iterate through it as well.
+     */
+    private final class Cursor implements ListIterator<E> {
+        private final int size = size();
+        private int index;
+        /** Values of the leaf holding the last position looked up; empty before the first lookup. */
+        private Object[] values = NO_VALUES;
+        /** Positions of the first value of {@link #values} and of the value after the last. */
+        private int leafStart;
+        private int leafEnd;
+
+        Cursor(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < size;
+        }
+
+        @Override
+        public E next() {
+            int position = index;
+            if (position >= size) {
+                throw new NoSuchElementException();
+            }
+            index = position + 1;
+            return valueAt(position);
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return index > 0;
+        }
+
+        @Override
+        public E previous() {
+            if (index <= 0) {
+                throw new NoSuchElementException();
+            }
+            return valueAt(--index);
+        }
+
+        @Override
+        public int nextIndex() {
+            return index;
+        }
+
+        @Override
+        public int previousIndex() {
+            return index - 1;
+        }
+
+        @SuppressWarnings("unchecked")
+        private E valueAt(int position) {
+            if (position < leafStart || position >= leafEnd) {
+                seek(position);
+            }
+            return (E) values[position - leafStart];
+        }
+
+        /**
+         * Descends from the root to the leaf holding the given position.
+         */
+        private void seek(int position) {
+            Node node = root;
+            int start = 0;
+            while (node instanceof Branch branch) {
+                if (position - start < branch.left.size) {
+                    node = branch.left;
+                } else {
+                    start += branch.left.size;
+                    node = branch.right;
+                }
+            }
+            values = ((Leaf) node).values;
+            leafStart = start;
+            leafEnd = start + node.size;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void set(E value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void add(E value) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Subtree of the sequence. Leaves have height 1.
+     */
+    private abstract static sealed class Node implements Serializable permits Leaf, Branch {
+        private static final long serialVersionUID = 1L;
+
+        final int size;
+        final int height;
+        /** Smallest key in the subtree. */
+        final long firstKey;
+
+        Node(int size, int height, long firstKey) {
+            this.size = size;
+            this.height = height;
+            this.firstKey = firstKey;
+        }
+    }
+
+    /**
+     * Up to {@value #LEAF_SIZE} values, with their keys in ascending order. The arrays are never
+     * changed and never have unused slots.
+     */
+    private static final class Leaf extends Node {
+        private static final long serialVersionUID = 1L;
+
+        final long[] keys;
+        final Object[] values;
+
+        Leaf(long[] keys, Object[] values) {
+            super(keys.length, 1, keys[0]);
+            this.keys = keys;
+            this.values = values;
+        }
+    }
+
+    private static final class Branch extends Node {
+        private static final long serialVersionUID = 1L;
+
+        final Node left;
+        final Node right;
+
+        Branch(Node left, Node right) {
+            super(left.size + right.size, Math.max(left.height, right.height) + 1, left.firstKey);
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    /**
+     * Builds a balanced tree of the given leaves, in order.
+     */
+    private static Node build(Node[] leaves, int from, int to) {
+        if (to - from == 1) {
+            return leaves[from];
+        }
+        int mid = (from + to) >>> 1;
+        return new Branch(build(leaves, from, mid), build(leaves, mid, to));
+    }
+
+    private static Node insert(Node node, long key, Object value) {
+        if (node instanceof Branch branch) {
+            if (key < branch.right.firstKey) {
+                return balance(insert(branch.left, key, value), branch.right);
+            }
+            return balance(branch.left, insert(branch.right, key, value));
+        }
+        Leaf leaf = (Leaf) node;
+        int position = Arrays.binarySearch(leaf.keys, key);
+        if (position >= 0) {
+            Object[] values = leaf.values.clone();
+            values[position] = value;
+            return new Leaf(leaf.keys, values);
+        }
+        position = -position - 1;
+        if (leaf.size == LEAF_SIZE && position == leaf.size) {
+            // Appending: start a new leaf rather than leaving two half-full ones
+            return new Branch(leaf, new Leaf(new long[] {key}, new Object[] {value}));
+        }
+        long[] keys = new long[leaf.size + 1];
+        Object[] values = new Object[leaf.size + 1];
+        System.arraycopy(leaf.keys, 0, keys, 0, position);
+        System.arraycopy(leaf.values, 0, values, 0, position);
+        keys[position] = key;
+        values[position] = value;
+        System.arraycopy(leaf.keys, position, keys, position + 1, leaf.size - position);
+        System.arraycopy(leaf.values, position, values, position + 1, leaf.size - position);
+        if (keys.length <= LEAF_SIZE) {
+            return new Leaf(keys, values);
+        }
+        int half = keys.length / 2;
+        return new Branch(new Leaf(Arrays.copyOfRange(keys, 0, half), Arrays.copyOfRange(values, 0, half)),
+                new Leaf(Arrays.copyOfRange(keys, half, keys.length), Arrays.copyOfRange(values, half, keys.length)));
+    }
+
+    /**
+     * Returns the subtree without the given key: the same node if the key is not present, or
+     * null if it was the only one. Neighbouring leaves that fit in one are merged.
+     */
+    private static Node delete(Node node, long key) {
+        if (node instanceof Branch branch) {
+            if (key < branch.right.firstKey) {
+                Node left = delete(branch.left, key);
+                return left == branch.left ? node : left == null ? branch.right : join(left, branch.right);
+            }
+            Node right = delete(branch.right, key);
+            return right == branch.right ? node : right == null ? branch.left : join(branch.left, right);
+        }
+        Leaf leaf = (Leaf) node;
+        int position = Arrays.binarySearch(leaf.keys, key);
+        if (position < 0) {
+            return node;
+        }
+        if (leaf.size == 1) {
+            return null;
+        }
+        long[] keys = new long[leaf.size - 1];
+        Object[] values = new Object[leaf.size - 1];
+        System.arraycopy(leaf.keys, 0, keys, 0, position);
+        System.arraycopy(leaf.values, 0, values, 0, position);
+        System.arraycopy(leaf.keys, position + 1, keys, position, keys.length - position);
+        System.arraycopy(leaf.values, position + 1, values, position, values.length - position);
+        return new Leaf(keys, values);
+    }
+
+    /**
+     * Joins two trees, every key of the left one being smaller than every key of the right one,
+     * in O(difference of their heights). Two leaves that fit in one are merged.
+     */
+    private static Node join(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.height > right.height + 1) {
+            Branch branch = (Branch) left;
+            return balance(branch.left, join(branch.right, right));
+        }
+        if (right.height > left.height + 1) {
+            Branch branch = (Branch) right;
+            return balance(join(left, branch.left), branch.right);
+        }
+        if (left instanceof Leaf a && right instanceof Leaf b && a.size + b.size <= LEAF_SIZE / 2) {
+            long[] keys = Arrays.copyOf(a.keys, a.size + b.size);
+            Object[] values = Arrays.copyOf(a.values, a.size + b.size);
+            System.arraycopy(b.keys, 0, keys, a.size, b.size);
+            System.arraycopy(b.values, 0, values, a.size, b.size);
+            return new Leaf(keys, values);
+        }
+        return new Branch(left, right);
+    }
+
+    /**
+     * Creates a branch from subtrees whose heights differ by at most two, rotating to restore balance.
+     */
+    private static Node balance(Node left, Node right) {
+        if (left.height > right.height + 1) {
+            Branch heavy = (Branch) left;
+            if (heavy.left.height >= heavy.right.height) {
+                return new Branch(heavy.left, new Branch(heavy.right, right));
+            }
+            Branch inner = (Branch) heavy.right;
+            return new Branch(new Branch(heavy.left, inner.left), new Branch(inner.right, right));
+        }
+        if (right.height > left.height + 1) {
+            Branch heavy = (Branch) right;
+            if (heavy.right.height >= heavy.left.height) {
+                return new Branch(new Branch(left, heavy.left), heavy.right);
+            }
+            Branch inner = (Branch) heavy.left;
+            return new Branch(new Branch(left, inner.left), new Branch(inner.right, heavy.right));
+        }
+        return new Branch(left, right);
+    }
+}
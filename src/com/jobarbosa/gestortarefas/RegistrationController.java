@@ -42,7 +42,7 @@ public class RegistrationController {
                 feedbackLabel.setText("All fields are required.");
                 return;
             }
-            User newUser = new User(userController.getUsers().listAll().size() + 1, username, password, email, java.time.LocalDate.now(), User.Role.USER);
+            User newUser = new User(userController.newUserId(), username, password, email, java.time.LocalDate.now(), User.Role.USER);
             boolean success = userController.registerUser(newUser);
             if (success) {
                 feedbackLabel.setText("Registration successful! You can now log in.");
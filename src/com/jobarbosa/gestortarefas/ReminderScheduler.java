@@ -0,0 +1,361 @@
+package com.jobarbosa.gestortarefas;
+
+import javafx.application.Platform;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Reminds the user of open tasks as their due date approaches.
+ * <p>
+ * Each open task with a due date is scheduled for its reminder day, a fixed number of days before
+ * the due date, in a map sorted by day. Since due dates have a granularity of one day, a single
+ * timer wakes up at the start of the earliest reminder day, hands all tasks due for a reminder to
+ * the listener in one batch, and goes back to sleep until the next reminder day; no task is ever
+ * rescanned, and nothing runs in between. Entries are moved or dropped from the collection's
+ * listener events as tasks are added, removed, completed, or get a new due date. Tasks whose
+ * reminder day has already passed when they are scheduled are reminded of right away.
+ * <p>
+ * Each task is reminded of once per due date: the tasks already reminded of are recorded in a
+ * history file, if one is set, so that overdue tasks are not reminded of again on every login.
+ * <p>
+ * After the collection is reset (e.g. loaded from a file), the schedule is rebuilt in the
+ * background shortly afterwards, from the open tasks with a due date only; the tasks of a mapped
+ * snapshot that need no reminder are not loaded. The scheduler is thread-safe; its state is
+ * guarded by this.
+ */
+public class ReminderScheduler implements Tasks.Listener, AutoCloseable {
+    /** Default number of days before the due date a task is reminded of. */
+    public static final int DEFAULT_LEAD_DAYS = 1;
+    /** Delay before rebuilding the schedule after a reset, so login does not wait for it. */
+    private static final long REBUILD_DELAY_MILLIS = 2000;
+
+    private final Tasks tasks;
+    private final int leadDays;
+    private final Executor deliverer;
+    private final Clock clock;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "task-reminders");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /** Scheduled tasks by reminder day. */
+    private final NavigableMap<LocalDate, Set<Task>> byReminderDay = new TreeMap<>();
+    /** Reminder day of each scheduled task. */
+    private final Map<Task, LocalDate> reminderDays = new HashMap<>();
+    /** Due date each task was last reminded of for, by task id. */
+    private Map<Integer, LocalDate> reminded = new HashMap<>();
+    /** File the reminded tasks are kept in, or null to keep them in memory only. */
+    private String historyFile;
+    private Consumer<List<Task>> onDue;
+    /** Next timer run, or null if none is pending. */
+    private ScheduledFuture<?> wakeup;
+    /** Reminder day the next timer run is for. */
+    private LocalDate wakeupDay;
+    /** Whether the schedule must be rebuilt from the collection. */
+    private boolean stale = true;
+    private boolean closed;
+
+    /**
+     * Constructs a scheduler that reminds one day ahead and delivers reminders on the JavaFX thread.
+     *
+     * @param tasks the collection to watch
+     */
+    public ReminderScheduler(Tasks tasks) {
+        this(tasks, DEFAULT_LEAD_DAYS, Platform::runLater, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Constructs a scheduler and registers it as a listener of the collection.
+     *
+     * @param tasks the collection to watch
+     * @param leadDays number of days before the due date a task is reminded of
+     * @param deliverer runs the delivery of each batch of reminders, e.g. {@code Platform::runLater}
+     * @param clock the clock that tells today's date
+     */
+    public ReminderScheduler(Tasks tasks, int leadDays, Executor deliverer, Clock clock) {
+        if (leadDays < 0) throw new IllegalArgumentException("leadDays must not be negative");
+        this.tasks = tasks;
+        this.leadDays = leadDays;
+        this.deliverer = deliverer;
+        this.clock = clock;
+        tasks.addListener(this);
+        scheduleRebuild();
+    }
+
+    /**
+     * Sets the action run with the tasks whose reminder day has come. It runs through the
+     * deliverer given at construction, on the JavaFX thread by default.
+     *
+     * @param action receives the due tasks, in due date order
+     */
+    public synchronized void setOnDue(Consumer<List<Task>> action) {
+        this.onDue = action;
+    }
+
+    /**
+     * Sets the file that records which tasks were already reminded of, e.g. in the shard of the
+     * logged-in user, and rebuilds the schedule from it shortly afterwards. The file is only read
+     * and written on the scheduler's own thread.
+     *
+     * @param file the history file, or null to keep the history in memory only
+     */
+    public synchronized void setHistoryFile(String file) {
+        historyFile = file;
+        tasksReset();
+    }
+
+    /**
+     * Returns the number of tasks waiting for their reminder.
+     *
+     * @return the number of scheduled tasks
+     */
+    public synchronized int getScheduledCount() {
+        return reminderDays.size();
+    }
+
+    /**
+     * Stops the timer. No further reminders are delivered.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        tasks.removeListener(this);
+        timer.shutdownNow();
+    }
+
+    @Override
+    public void taskAdded(int index, Task task) {
+        tasksAdded(index, List.of(task));
+    }
+
+    @Override
+    public synchronized void tasksAdded(int index, List<Task> added) {
+        if (stale) {
+            return;
+        }
+        for (Task task : added) {
+            // Events from different threads may arrive out of order; skip tasks already removed again
+            if (!reminderDays.containsKey(task) && tasks.findById(task.getId()).orElse(null) == task) {
+                schedule(task);
+            }
+        }
+        scheduleWakeup();
+    }
+
+    @Override
+    public synchronized void taskRemoved(int index, Task task) {
+        unschedule(task);
+    }
+
+    @Override
+    public synchronized void taskUpdated(int index, Task task) {
+        if (stale) {
+            return;
+        }
+        LocalDate previous = reminderDays.get(task);
+        LocalDate current = reminderDay(task);
+        if (previous == null ? current == null : previous.equals(current)) {
+            return;
+        }
+        // A task with a new due date is reminded of again, even if it already was for the old one
+        reminded.remove(task.getId());
+        unschedule(task);
+        schedule(task);
+        scheduleWakeup();
+    }
+
+    @Override
+    public synchronized void tasksReset() {
+        stale = true;
+        byReminderDay.clear();
+        reminderDays.clear();
+        scheduleRebuild();
+    }
+
+    /**
+     * Returns the day a task should be reminded of, or null if it needs no reminder.
+     */
+    private LocalDate reminderDay(Task task) {
+        LocalDate dueDate = task.getDueDate();
+        return task.isCompleted() || dueDate == null ? null : dueDate.minusDays(leadDays);
+    }
+
+    /**
+     * Adds a task to the schedule if it needs a reminder and was not reminded of for its current
+     * due date yet. Requires the lock.
+     */
+    private void schedule(Task task) {
+        LocalDate day = reminderDay(task);
+        if (day != null && !task.getDueDate().equals(reminded.get(task.getId()))) {
+            reminderDays.put(task, day);
+            byReminderDay.computeIfAbsent(day, k -> new LinkedHashSet<>()).add(task);
+        }
+    }
+
+    /**
+     * Removes a task from the schedule. Requires the lock.
+     */
+    private void unschedule(Task task) {
+        LocalDate day = reminderDays.remove(task);
+        if (day != null) {
+            Set<Task> bucket = byReminderDay.get(day);
+            if (bucket != null && bucket.remove(task) && bucket.isEmpty()) {
+                byReminderDay.remove(day);
+            }
+        }
+    }
+
+    private synchronized void scheduleRebuild() {
+        if (closed) {
+            return;
+        }
+        if (wakeup != null) {
+            wakeup.cancel(false);
+        }
+        wakeupDay = null;
+        wakeup = timer.schedule(this::rebuild, REBUILD_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void rebuild() {
+        if (!stale) {
+            return;
+        }
+        reminded = loadHistory();
+        // Events received while stale were ignored, so start over from the collection
+        Map<Integer, LocalDate> stillDue = new HashMap<>();
+        tasks.forEachOpenWithDueDate(task -> {
+            LocalDate dueDate = reminded.get(task.getId());
+            if (dueDate != null) {
+                stillDue.put(task.getId(), dueDate);
+            }
+            schedule(task);
+        });
+        // Forget tasks that were removed or completed meanwhile
+        if (stillDue.size() < reminded.size()) {
+            reminded = stillDue;
+            saveHistory();
+        }
+        stale = false;
+        wakeup = null;
+        scheduleWakeup();
+    }
+
+    /**
+     * Makes sure the timer runs at the start of the earliest reminder day, or right away if that
+     * day has come. Requires the lock.
+     */
+    private void scheduleWakeup() {
+        if (closed || stale || byReminderDay.isEmpty()) {
+            return;
+        }
+        LocalDate first = byReminderDay.firstKey();
+        if (wakeup != null && !wakeup.isDone() && wakeupDay != null && !wakeupDay.isAfter(first)) {
+            return;
+        }
+        if (wakeup != null) {
+            wakeup.cancel(false);
+        }
+        ZonedDateTime now = ZonedDateTime.now(clock);
+        long delay = Math.max(0, Duration.between(now, first.atStartOfDay(clock.getZone())).toMillis());
+        wakeupDay = first;
+        wakeup = timer.schedule(this::fire, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Takes the tasks whose reminder day has come off the schedule and delivers them.
+     */
+    private synchronized void fire() {
+        wakeup = null;
+        wakeupDay = null;
+        LocalDate today = LocalDate.now(clock);
+        List<Task> due = new ArrayList<>();
+        NavigableMap<LocalDate, Set<Task>> reached = byReminderDay.headMap(today, true);
+        for (Set<Task> bucket : reached.values()) {
+            for (Task task : bucket) {
+                reminderDays.remove(task);
+                reminded.put(task.getId(), task.getDueDate());
+                due.add(task);
+            }
+        }
+        reached.clear();
+        if (!due.isEmpty()) {
+            saveHistory();
+        }
+        Consumer<List<Task>> action = onDue;
+        if (!due.isEmpty() && action != null) {
+            deliverer.execute(() -> action.accept(due));
+        }
+        scheduleWakeup();
+    }
+
+    /**
+     * Reads the history file: a count, then the id and due date (epoch day) of each task reminded of.
+     * A missing or unreadable file is an empty history. Requires the lock.
+     */
+    private Map<Integer, LocalDate> loadHistory() {
+        Map<Integer, LocalDate> history = new HashMap<>();
+        if (historyFile == null || !new File(historyFile).exists()) {
+            return history;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(historyFile)))) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                history.put(in.readInt(), LocalDate.ofEpochDay(in.readInt()));
+            }
+        } catch (IOException e) {
+            System.err.println("Could not read the reminder history: " + e.getMessage());
+        }
+        return history;
+    }
+
+    /**
+     * Replaces the history file with the current history. Requires the lock.
+     */
+    private void saveHistory() {
+        if (historyFile == null) {
+            return;
+        }
+        Path temp = Paths.get(historyFile + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp.toFile())))) {
+                out.writeInt(reminded.size());
+                for (Map.Entry<Integer, LocalDate> entry : reminded.entrySet()) {
+                    out.writeInt(entry.getKey());
+                    out.writeInt((int) entry.getValue().toEpochDay());
+                }
+            }
+            Files.move(temp, Paths.get(historyFile), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Could not save the reminder history: " + e.getMessage());
+        }
+    }
+}
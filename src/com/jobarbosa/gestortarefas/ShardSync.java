@@ -0,0 +1,520 @@
+package com.jobarbosa.gestortarefas;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+/**
+ * Keeps the tasks of one shard consistent between several instances of the application sharing
+ * the data directory, e.g. the desktop app and a batch job or a second window.
+ * <p>
+ * Every read and write of the shard's files happens while holding an exclusive lock on its lock
+ * file, so no instance sees a half-written file. Before writing its own journal records, an
+ * instance reads the records other instances appended since it last looked, so it always knows
+ * how much of the journal its tasks reflect. A watch service on the shard directory triggers the
+ * same catch-up when another instance writes, and only the new records are read and applied, one
+ * task at a time. When another instance replaced the snapshot (and emptied the journal), the new
+ * files are read in full but compared with the tasks by id, so only tasks that differ are changed.
+ * Changes of other instances are applied through the given executor, e.g. on the JavaFX thread.
+ * <p>
+ * Task ids are reserved from the shared id file in blocks, so instances never hand out the same id.
+ * The next block is reserved in the background before the current one runs out, so allocating an
+ * id on the JavaFX thread does not wait for the lock. Writes run on the persistence writer thread
+ * and catch-up on the watcher thread, serialized by the lock; ids may be allocated from any thread.
+ */
+final class ShardSync implements AutoCloseable {
+    /** Number of ids reserved from the id file at a time. */
+    private static final int ID_BLOCK_SIZE = 64;
+
+    private final Path directory;
+    private final String tasksFile;
+    private final String idsFile;
+    private final TaskJournal journal;
+    private final Tasks tasks;
+    private final Executor applier;
+    private final Executor prefetcher;
+    private final FileChannel lockChannel;
+    /** Guards the lock file within this process; file locks are held per process. */
+    private final Object lockGuard = new Object();
+    /** Journal length the tasks reflect, including records still being applied. */
+    private long appliedLength;
+    /** Identity of the snapshot the tasks are based on, or null if there is none. */
+    private Stamp snapshot;
+    /** Guards the reserved ids, apart from the lock file so handing out an id never waits for it. */
+    private final Object idGuard = new Object();
+    /** Next reserved id to hand out, and the end of the reserved block. */
+    private int nextId;
+    private int idLimit;
+    /** Block reserved ahead, handed out once the current one is used up; empty if start equals limit. */
+    private int spareStart;
+    private int spareLimit;
+    /** Whether a block is being reserved ahead. */
+    private boolean prefetching;
+    private WatchService watcher;
+    /** Set once the tasks belong to someone else; changes read afterwards are dropped. */
+    private volatile boolean detached;
+
+    /**
+     * Identifies a version of a file: written files are moved into place, so a new version has a new
+     * file key where the file system provides one, and a new modification time otherwise.
+     */
+    private record Stamp(Object fileKey, FileTime modified, long size) {
+        static Stamp of(String filename) throws IOException {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(Paths.get(filename), BasicFileAttributes.class);
+                return new Stamp(attributes.fileKey(), attributes.lastModifiedTime(), attributes.size());
+            } catch (NoSuchFileException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * An action on the shard files, run while holding the lock.
+     */
+    interface LockedAction {
+        void run() throws IOException, ClassNotFoundException;
+    }
+
+    /**
+     * Opens the lock file of a shard.
+     *
+     * @param directory the shard directory, which must exist
+     * @param tasksFile the snapshot file
+     * @param idsFile the id sequence file
+     * @param journal the journal of the shard
+     * @param tasks the tasks loaded from the shard
+     * @param applier runs the changes of other instances on the thread that may change the tasks
+     * @param prefetcher reserves the next block of ids in the background, e.g. on the persistence writer thread
+     * @throws IOException if the lock file cannot be opened
+     */
+    ShardSync(String directory, String tasksFile, String idsFile, TaskJournal journal, Tasks tasks, Executor applier,
+              Executor prefetcher) throws IOException {
+        this.directory = Paths.get(directory);
+        this.tasksFile = tasksFile;
+        this.idsFile = idsFile;
+        this.journal = journal;
+        this.tasks = tasks;
+        this.applier = applier;
+        this.prefetcher = prefetcher;
+        this.lockChannel = FileChannel.open(this.directory.resolve("tasks.lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Runs an action while holding the shard lock, waiting for other instances to release it.
+     *
+     * @param action the action to run
+     * @throws IOException if the lock cannot be taken or the action fails
+     * @throws ClassNotFoundException if the action reads a legacy file with an unknown class
+     */
+    void locked(LockedAction action) throws IOException, ClassNotFoundException {
+        synchronized (lockGuard) {
+            FileLock lock = lockChannel.lock();
+            try {
+                action.run();
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * Loads the tasks from the shard files, holding the lock so no other instance writes meanwhile.
+     *
+     * @throws IOException if an I/O error occurs
+     * @throws ClassNotFoundException if a legacy snapshot holds an unknown class
+     */
+    void load() throws IOException, ClassNotFoundException {
+        locked(() -> {
+            tasks.getIdSequence().load(idsFile);
+            tasks.loadFromFile(tasksFile, journal);
+            appliedLength = journal.length();
+            snapshot = Stamp.of(tasksFile);
+        });
+    }
+
+    /**
+     * Writes the journal records appended so far, after catching up with other instances' records.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void flush() throws IOException {
+        lockedIO(() -> {
+            catchUp();
+            journal.flush();
+            appliedLength = journal.length();
+        });
+    }
+
+    /**
+     * Replaces the snapshot and empties the journal, unless other instances changed the shard since
+     * the snapshot was taken: it would then miss their changes, so only the journal is written and
+     * the snapshot is retried the next time the journal is long enough.
+     *
+     * @param taken the tasks at the time the snapshot was taken
+     * @param foreignApplied the number of other instances' batches applied when it was taken
+     * @throws IOException if an I/O error occurs
+     */
+    void compact(List<Task> taken, long foreignApplied) throws IOException {
+        lockedIO(() -> {
+            catchUp();
+            if (journal.getForeignRead() == foreignApplied) {
+                try {
+                    TaskFile.write(tasksFile, taken);
+                    journal.reset();
+                    snapshot = Stamp.of(tasksFile);
+                } catch (FileSystemException e) {
+                    // On Windows a file mapped by any instance cannot be replaced until it is unmapped,
+                    // which only happens once the mapping is garbage collected; keep the journal instead
+                    Files.deleteIfExists(Paths.get(tasksFile + ".tmp"));
+                    System.err.println("Could not replace " + tasksFile + ", keeping the journal: " + e.getMessage());
+                }
+            }
+            journal.flush();
+            appliedLength = journal.length();
+        });
+    }
+
+    /**
+     * Reads and applies what other instances wrote since the last catch-up, if anything.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    private void sync() throws IOException {
+        lockedIO(this::catchUp);
+    }
+
+    /**
+     * Returns a new task id. Ids come from the block reserved ahead when the current one is used
+     * up, and from the shared id file only if that block is not reserved yet.
+     *
+     * @return the new id
+     * @throws IOException if the id file cannot be read or written
+     */
+    int nextId() throws IOException {
+        return reserveIds(1);
+    }
+
+    /**
+     * Returns the first of a range of consecutive new task ids. If neither the current block nor
+     * the one reserved ahead holds enough of them, they are reserved from the shared id file in a
+     * single write, waiting for the lock. The rest of the current block is then skipped.
+     *
+     * @param count the number of ids, at least 1
+     * @return the first id; the ids up to {@code first + count - 1} are reserved too
+     * @throws IOException if the id file cannot be read or written
+     */
+    int reserveIds(int count) throws IOException {
+        if (count < 1) throw new IllegalArgumentException("count must be positive");
+        synchronized (idGuard) {
+            if (idLimit - nextId < count && spareLimit - spareStart >= count) {
+                nextId = spareStart;
+                idLimit = spareLimit;
+                spareStart = spareLimit;
+            }
+            if (idLimit - nextId >= count) {
+                int first = nextId;
+                nextId += count;
+                prefetchIds();
+                return first;
+            }
+        }
+        int size = Math.max(count, ID_BLOCK_SIZE);
+        int first = reserveBlock(size);
+        synchronized (idGuard) {
+            nextId = first + count;
+            idLimit = first + size;
+            prefetchIds();
+            return first;
+        }
+    }
+
+    /**
+     * Reserves the next block of ids in the background if the current block is running low and no
+     * block is reserved ahead yet, e.g. right after loading, before the first id is needed.
+     */
+    void prefetchIds() {
+        synchronized (idGuard) {
+            if (prefetching || spareLimit > spareStart || idLimit - nextId >= ID_BLOCK_SIZE / 2 || detached) {
+                return;
+            }
+            prefetching = true;
+        }
+        prefetcher.execute(() -> {
+            try {
+                if (!detached) {
+                    int first = reserveBlock(ID_BLOCK_SIZE);
+                    synchronized (idGuard) {
+                        spareStart = first;
+                        spareLimit = first + ID_BLOCK_SIZE;
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Could not reserve task ids: " + e.getMessage());
+            } finally {
+                synchronized (idGuard) {
+                    prefetching = false;
+                }
+            }
+        });
+    }
+
+    /**
+     * Reserves a block of ids from the shared id file, holding the lock.
+     *
+     * @return the first id of the block
+     */
+    private int reserveBlock(int size) throws IOException {
+        int[] first = new int[1];
+        lockedIO(() -> {
+            IdSequence ids = tasks.getIdSequence();
+            ids.load(idsFile);
+            first[0] = ids.peek();
+            ids.advancePast(first[0] + size - 1);
+            ids.save(idsFile);
+        });
+        return first[0];
+    }
+
+    /**
+     * Starts watching the shard directory for changes of other instances, catching up with them on
+     * a background thread as soon as a shard file changes.
+     *
+     * @throws IOException if the directory cannot be watched
+     */
+    void watch() throws IOException {
+        WatchService service = FileSystems.getDefault().newWatchService();
+        directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        watcher = service;
+        Thread thread = new Thread(() -> {
+            try {
+                while (!detached) {
+                    WatchKey key = service.take();
+                    boolean changed = false;
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        Object name = event.context();
+                        changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || name != null
+                                && (name.toString().equals("tasks.journal") || name.toString().equals("tasks.dat"));
+                    }
+                    key.reset();
+                    if (changed) {
+                        try {
+                            sync();
+                        } catch (IOException e) {
+                            System.err.println("Could not read changes of other instances: " + e.getMessage());
+                        }
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // Watching stopped
+            }
+        }, "shard-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops watching and applying changes of other instances, e.g. when the user logs out.
+     * Writes still queued may run afterwards.
+     */
+    void detach() {
+        detached = true;
+        WatchService service = watcher;
+        if (service != null) {
+            try {
+                service.close();
+            } catch (IOException e) {
+                System.err.println("Could not stop watching " + directory + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Closes the journal, returns the ids still reserved to the id file if no other instance
+     * reserved ids since, and releases the lock file. Call this on the writer thread after the
+     * last write. Of a current block followed by a block reserved ahead, only the latter is
+     * returned unless the two are adjacent.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        detach();
+        try {
+            lockedIO(() -> {
+                journal.close();
+                synchronized (idGuard) {
+                    boolean spare = spareLimit > spareStart;
+                    int end = spare ? spareLimit : idLimit;
+                    int unused = spare && spareStart != idLimit ? spareStart : nextId;
+                    if (unused < end) {
+                        IdSequence stored = new IdSequence();
+                        stored.load(idsFile);
+                        if (stored.peek() == end) {
+                            stored.reset();
+                            stored.advancePast(unused - 1);
+                            stored.save(idsFile);
+                        }
+                    }
+                    idLimit = nextId;
+                    spareStart = spareLimit;
+                }
+            });
+        } finally {
+            lockChannel.close();
+        }
+    }
+
+    /**
+     * Runs an action that reads or writes only the binary files while holding the lock.
+     */
+    private void lockedIO(LockedAction action) throws IOException {
+        try {
+            locked(action);
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Reads what other instances wrote since the tasks were last brought up to date and queues it
+     * for applying. Requires the lock.
+     */
+    private void catchUp() throws IOException {
+        if (detached) {
+            return;
+        }
+        Stamp current = Stamp.of(tasksFile);
+        long length = journal.length();
+        if (Objects.equals(current, snapshot) && length >= appliedLength) {
+            if (length > appliedLength) {
+                TaskJournal.Changes read = journal.readFrom(appliedLength);
+                appliedLength = read.end();
+                apply(read.changes());
+            }
+        } else {
+            reload(current);
+        }
+    }
+
+    /**
+     * Queues a batch of other instances' records for applying, record by record.
+     */
+    private void apply(List<TaskJournal.Change> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        long mark = journal.startForeign();
+        applier.execute(() -> {
+            try {
+                if (!detached) {
+                    for (TaskJournal.Change change : changes) {
+                        if (!journal.isOverridden(change.id(), mark)) {
+                            change.applyTo(tasks);
+                        }
+                    }
+                }
+            } finally {
+                journal.finishForeign(mark);
+            }
+        });
+    }
+
+    /**
+     * Reads a snapshot another instance wrote, and the journal on top of it, and queues the
+     * differences from the tasks for applying. Requires the lock.
+     */
+    private void reload(Stamp current) throws IOException {
+        // Local records go to the new journal first, so the state read includes them
+        journal.flush();
+        journal.markSnapshot();
+        Map<Integer, Task> target = new LinkedHashMap<>();
+        if (current != null) {
+            List<Task> loaded;
+            try {
+                loaded = TaskFile.isLegacy(tasksFile) ? TaskFile.readLegacy(tasksFile) : TaskFile.read(tasksFile);
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            }
+            for (Task task : loaded) {
+                target.put(task.getId(), task);
+            }
+        }
+        TaskJournal.Changes read = journal.readFrom(0);
+        for (TaskJournal.Change change : read.changes()) {
+            switch (change.operation()) {
+                case ADD, UPDATE -> target.put(change.id(), change.state());
+                case COMPLETE -> {
+                    Task task = target.get(change.id());
+                    if (task != null) {
+                        task.restoreCompletion(true, change.endDate());
+                    }
+                }
+                case REMOVE -> target.remove(change.id());
+            }
+        }
+        snapshot = current;
+        appliedLength = read.end();
+        long mark = journal.startForeign();
+        applier.execute(() -> {
+            try {
+                if (!detached) {
+                    applyDifferences(target, mark);
+                }
+            } finally {
+                journal.finishForeign(mark);
+            }
+        });
+    }
+
+    /**
+     * Changes the tasks that differ from the state read from the files, leaving the others alone.
+     */
+    private void applyDifferences(Map<Integer, Task> target, long mark) {
+        List<Task> removed = new ArrayList<>();
+        for (Task task : tasks.listAll()) {
+            Task state = target.remove(task.getId());
+            if (journal.isOverridden(task.getId(), mark)) {
+                continue;
+            }
+            if (state == null) {
+                removed.add(task);
+            } else if (!task.hasSameState(state)) {
+                task.restoreState(state);
+            }
+        }
+        for (Task task : removed) {
+            tasks.remove(task);
+        }
+        List<Task> added = new ArrayList<>();
+        for (Task state : target.values()) {
+            if (!journal.isOverridden(state.getId(), mark)) {
+                added.add(state);
+            }
+        }
+        if (!added.isEmpty()) {
+            tasks.addAll(added);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.jobarbosa.gestortarefas;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records when the phases of application startup are reached, in milliseconds since the JVM
+ * started, so time-to-first-frame and time-to-interactive can be compared across releases.
+ * Only the first time each phase is reached is kept, and reported to {@link MetricsEvents}, so
+ * the phases show in the diagnostics window and in flight recordings. Safe to use from any thread.
+ */
+public class StartupTimer {
+    /** Wall-clock time the JVM started. */
+    private final long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+    /** Milliseconds since JVM start by phase, in the order the phases were reached. */
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+
+    /**
+     * Records that a phase was reached now, unless it was already recorded.
+     *
+     * @param phase the phase name
+     */
+    public synchronized void mark(String phase) {
+        long sinceStart = System.currentTimeMillis() - jvmStartMillis;
+        if (phases.putIfAbsent(phase, sinceStart) == null) {
+            MetricsEvents.startupPhase(phase, sinceStart);
+        }
+    }
+
+    /**
+     * Returns the recorded phases.
+     *
+     * @return milliseconds since JVM start by phase, in the order the phases were reached
+     */
+    public synchronized Map<String, Long> getPhases() {
+        return new LinkedHashMap<>(phases);
+    }
+
+    /**
+     * Returns the phases on one line, e.g. {@code startup: fx-start=310ms first-frame=420ms}.
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder line = new StringBuilder("startup:");
+        for (Map.Entry<String, Long> phase : phases.entrySet()) {
+            line.append(' ').append(phase.getKey()).append('=').append(phase.getValue()).append("ms");
+        }
+        return line.toString();
+    }
+}
@@ -4,24 +4,26 @@ import java.io.Serializable;
 
 /**
  * Represents a task with a unique id, description, and completion status.
+ * Setters may be called from any thread: changes to one task are serialized, and the
+ * latest values are always visible to other threads.
  */
 public class Task implements Serializable {
-    /** Static variable to generate unique task IDs.
-     * This is incremented each time a new Task is created.
-     */
-    private static int nextId = 1;
+    /** Matches the implicit id of the original class so existing task files keep loading. */
+    private static final long serialVersionUID = -7110380680067721400L;
     /** Unique identifier for the task. */
     private final int id;
     /** Task description. */
-    private String description;
+    private volatile String description;
     /** Indicates if the task is completed. */
-    private boolean completed;
+    private volatile boolean completed;
     /** Task priority. */
-    private Priority priority;
+    private volatile Priority priority;
     /** Due date for the task. */
-    private java.time.LocalDate dueDate;
+    private volatile java.time.LocalDate dueDate;
     /** End date when the task is completed. */
-    private java.time.LocalDate endDate;
+    private volatile java.time.LocalDate endDate;
+    /** Listener notified when the task changes, usually the owning Tasks collection. */
+    private transient volatile ChangeListener listener;
 
     /**
      * Enum representing the priority of a task.
@@ -32,6 +34,21 @@ public class Task implements Serializable {
         HIGH
     }
 
+    /**
+     * Listener that performs every change to a task's fields, so that collections
+     * holding the task can keep their indexes up to date.
+     */
+    public interface ChangeListener {
+        /**
+         * Applies a change to the task. Implementations must run the mutation exactly once,
+         * and can update their state before and after it, e.g. under a lock.
+         *
+         * @param task the task about to change
+         * @param mutation assigns the new field values
+         */
+        void change(Task task, Runnable mutation);
+    }
+
     /**
      * Constructs a new Task with the specified id and description.
      * The task is initially marked as not completed.
@@ -99,7 +116,9 @@ public class Task implements Serializable {
      *
      * @param description new task description
      */
-    public void setDescription(String description) { this.description = description; }
+    public synchronized void setDescription(String description) {
+        change(() -> this.description = description);
+    }
 
     /**
      * Returns whether the task is completed.
@@ -120,7 +139,9 @@ public class Task implements Serializable {
      *
      * @param priority new task priority
      */
-    public void setPriority(Priority priority) { this.priority = priority; }
+    public synchronized void setPriority(Priority priority) {
+        change(() -> this.priority = priority);
+    }
 
     /**
      * Returns the due date of the task.
@@ -134,7 +155,9 @@ public class Task implements Serializable {
      *
      * @param dueDate new due date
      */
-    public void setDueDate(java.time.LocalDate dueDate) { this.dueDate = dueDate; }
+    public synchronized void setDueDate(java.time.LocalDate dueDate) {
+        change(() -> this.dueDate = dueDate);
+    }
 
     /**
      * Returns the end date of the task.
@@ -146,8 +169,80 @@ public class Task implements Serializable {
     /**
      * Marks the task as completed and sets the end date to today.
      */
-    public void markCompleted() {
-        this.completed = true;
-        this.endDate = java.time.LocalDate.now();
+    public synchronized void markCompleted() {
+        change(() -> {
+            this.completed = true;
+            this.endDate = java.time.LocalDate.now();
+        });
+    }
+
+    /**
+     * Restores the completion state of the task, e.g. when it is read back from disk.
+     *
+     * @param completed whether the task is completed
+     * @param endDate the end date, or null if not completed
+     */
+    synchronized void restoreCompletion(boolean completed, java.time.LocalDate endDate) {
+        change(() -> {
+            this.completed = completed;
+            this.endDate = endDate;
+        });
+    }
+
+    /**
+     * Restores all fields but the id from another task, e.g. when another instance of the
+     * application changed it, as a single change.
+     *
+     * @param state the task holding the new field values
+     */
+    synchronized void restoreState(Task state) {
+        change(() -> {
+            this.description = state.description;
+            this.priority = state.priority;
+            this.dueDate = state.dueDate;
+            this.completed = state.completed;
+            this.endDate = state.endDate;
+        });
+    }
+
+    /**
+     * Returns whether another task has the same field values as this one, ignoring the id.
+     *
+     * @param other the task to compare with
+     * @return true if all other fields are equal
+     */
+    boolean hasSameState(Task other) {
+        return java.util.Objects.equals(description, other.description) && priority == other.priority
+                && java.util.Objects.equals(dueDate, other.dueDate) && completed == other.completed
+                && java.util.Objects.equals(endDate, other.endDate);
+    }
+
+    /**
+     * Returns a copy of this task with a different id, e.g. to resolve duplicate ids in old files.
+     *
+     * @param id the id of the copy
+     * @return the copy
+     */
+    Task withId(int id) {
+        Task copy = new Task(id, description, priority, dueDate);
+        copy.completed = completed;
+        copy.endDate = endDate;
+        return copy;
+    }
+
+    /**
+     * Sets the listener notified when the task changes. A task reports to a single listener.
+     *
+     * @param listener the listener, or null to stop notifying
+     */
+    void setListener(ChangeListener listener) { this.listener = listener; }
+
+    private void change(Runnable mutation) {
+        ChangeListener current = listener;
+        if (current != null) {
+            current.change(this, mutation);
+        } else {
+            mutation.run();
+        }
     }
 }
\ No newline at end of file
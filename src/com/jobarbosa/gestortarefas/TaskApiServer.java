@@ -0,0 +1,623 @@
+package com.jobarbosa.gestortarefas;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Local HTTP API over the tasks of one user, for other tools to read and change tasks without
+ * the desktop app. Every request is handled on its own virtual thread.
+ * <p>
+ * Requests authenticate with HTTP Basic credentials, which must be those of the user whose tasks
+ * are served. After a few failed attempts for the same username from the same address, further
+ * attempts are refused with 429 for a delay that doubles with each failure.
+ * Tasks are exchanged as flat JSON objects with the fields of the JSON Lines format:
+ * <ul>
+ *   <li>{@code POST /api/authenticate} with {@code {"username":..., "password":...}}: the user, or 401</li>
+ *   <li>{@code GET /api/users}, {@code GET /api/users/{id}}: users, without passwords; only
+ *       administrators see other users</li>
+ *   <li>{@code GET /api/tasks}: one page of tasks as a JSON array, optionally filtered with
+ *       {@code priority}, {@code completed}, {@code dueBy}, {@code text} and ordered with {@code sort};
+ *       pages are chosen with {@code offset} and {@code limit} and linked with a {@code Link: rel="next"} header</li>
+ *   <li>{@code GET /api/tasks/export}: every task, streamed as JSON Lines (or CSV with {@code format=csv})</li>
+ *   <li>{@code POST /api/tasks}, {@code GET}, {@code PUT}, {@code DELETE /api/tasks/{id}}: single tasks</li>
+ * </ul>
+ * Responses carry an ETag. Lists are tagged with the version of the collection and the query string,
+ * so {@code If-None-Match} answers 304 without reading any task while nothing changed; single tasks
+ * are tagged with a hash of their fields, and {@code PUT} and {@code DELETE} honour {@code If-Match}.
+ * <p>
+ * Reads run on the request thread. Changes go through the controller, so they are journaled as in
+ * the app, and run on the given executor, e.g. {@code Platform::runLater} while the task table is shown.
+ */
+public class TaskApiServer implements AutoCloseable {
+    /** Number of tasks per page when the request does not say. */
+    static final int DEFAULT_PAGE_SIZE = 100;
+    /** Largest page served; larger lists are read with the export endpoint. */
+    static final int MAX_PAGE_SIZE = 1000;
+    private static final String JSON = "application/json; charset=utf-8";
+    /**
+     * Reports failed requests. Their stack traces are only logged at the DEBUG level, so they
+     * stay out of the console unless logging is configured to show them.
+     */
+    private static final System.Logger LOG = System.getLogger(TaskApiServer.class.getName());
+    /** Failed logins for a username and address that are not delayed. */
+    static final int FREE_FAILURES = 3;
+    /** Longest a username and address are refused after failed logins. */
+    static final long MAX_LOCKOUT_MILLIS = 15 * 60 * 1000;
+
+    private final TasksManagementController controller;
+    private final Tasks tasks;
+    private final Users users;
+    private final User owner;
+    private final Executor mutator;
+    private final HttpServer server;
+    private final ExecutorService handlers = Executors.newVirtualThreadPerTaskExecutor();
+    /** Distinguishes list ETags of this server from those of earlier runs, whose versions started over. */
+    private final String epoch = Long.toHexString(System.nanoTime());
+    /** Failed logins by username and client address. */
+    private final Map<String, Failures> failures = new ConcurrentHashMap<>();
+
+    /**
+     * Failed logins in a row and the time until which further attempts are refused.
+     */
+    private record Failures(int count, long lockedUntil) {
+    }
+
+    /**
+     * Enables TCP_NODELAY in the JDK HTTP server. The server writes headers and body separately;
+     * without it, small responses on a kept-alive connection wait for the client's delayed ACK
+     * (about 40 ms each). The server reads the setting once, so call this at startup, before the
+     * first server is created.
+     */
+    public static void configureTransport() {
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    /**
+     * Starts serving the tasks of a user.
+     *
+     * @param controller the controller holding the user's tasks
+     * @param users the registered users, for authentication and the user endpoints
+     * @param owner the user whose tasks are served; requests must authenticate as this user
+     * @param mutator runs every change to the tasks, e.g. {@code Platform::runLater}
+     * @param address the address to listen on, usually the loopback address
+     * @throws IOException if the server cannot listen on the address
+     */
+    public TaskApiServer(TasksManagementController controller, Users users, User owner, Executor mutator,
+                         InetSocketAddress address) throws IOException {
+        this.controller = controller;
+        this.tasks = controller.getTasks();
+        this.users = users;
+        this.owner = owner;
+        this.mutator = mutator;
+        this.server = HttpServer.create(address, 0);
+        server.setExecutor(handlers);
+        server.createContext("/api/", this::handle);
+        server.start();
+    }
+
+    /**
+     * Returns the port the server listens on, e.g. when it was started on port 0.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops the server, closing open connections.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    /**
+     * A response with a status other than 200, ended early.
+     */
+    private static final class ApiException extends RuntimeException {
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            route(exchange);
+        } catch (RuntimeException e) {
+            if (exchange.getResponseCode() != -1) {
+                // The status was sent, e.g. by an export that failed halfway: leave the body unended
+                // so the server drops the connection and the client sees the response was cut short
+                LOG.log(System.Logger.Level.WARNING, () -> describe(exchange) + " failed after the response started: " + e);
+                LOG.log(System.Logger.Level.DEBUG, () -> describe(exchange) + " failed", e);
+                throw new IOException("response cut short", e);
+            }
+            sendError(exchange, e);
+        }
+        exchange.close();
+    }
+
+    /**
+     * Answers a failed request; unexpected failures are logged and answered with a generic message.
+     */
+    private static void sendError(HttpExchange exchange, RuntimeException e) throws IOException {
+        if (e instanceof ApiException api) {
+            sendError(exchange, api.status, api.getMessage());
+        } else if (e instanceof IllegalArgumentException || e instanceof DateTimeParseException) {
+            sendError(exchange, 400, e.getMessage());
+        } else if (e instanceof IllegalStateException) {
+            sendError(exchange, 409, e.getMessage());
+        } else {
+            LOG.log(System.Logger.Level.ERROR, () -> describe(exchange) + " failed: " + e);
+            LOG.log(System.Logger.Level.DEBUG, () -> describe(exchange) + " failed", e);
+            sendError(exchange, 500, "internal error");
+        }
+    }
+
+    /**
+     * Names a request in log messages, without its query, which may hold search text.
+     */
+    private static String describe(HttpExchange exchange) {
+        return "api: " + exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath();
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().substring("/api/".length()).split("/");
+        if (path.length > 2) {
+            throw new ApiException(404, "no such resource");
+        }
+        if (path.length == 1 && path[0].equals("authenticate")) {
+            require(method, "POST");
+            authenticateUser(exchange);
+            return;
+        }
+        User caller = authorize(exchange);
+        switch (path[0]) {
+            case "users" -> {
+                require(method, "GET");
+                boolean admin = caller.getRole() == User.Role.ADMIN;
+                if (path.length == 1) {
+                    sendUsers(exchange, admin ? users.listAll() : List.of(caller));
+                } else {
+                    // Other users are reported missing rather than forbidden, so ids cannot be probed
+                    int id = id(path[1]);
+                    sendUser(exchange, users.findById(id).filter(user -> admin || user.getId() == caller.getId())
+                            .orElseThrow(() -> new ApiException(404, "no user " + path[1])));
+                }
+            }
+            case "tasks" -> {
+                if (path.length == 1) {
+                    if (method.equals("POST")) {
+                        createTask(exchange);
+                    } else {
+                        require(method, "GET");
+                        listTasks(exchange);
+                    }
+                } else if (path[1].equals("export")) {
+                    require(method, "GET");
+                    exportTasks(exchange);
+                } else {
+                    Task task = tasks.findById(id(path[1])).orElseThrow(() -> new ApiException(404, "no task " + path[1]));
+                    switch (method) {
+                        case "GET" -> sendTask(exchange, 200, task);
+                        case "PUT" -> updateTask(exchange, task);
+                        case "DELETE" -> deleteTask(exchange, task);
+                        default -> throw new ApiException(405, "method not allowed: " + method);
+                    }
+                }
+            }
+            default -> throw new ApiException(404, "no such resource");
+        }
+    }
+
+    private void authenticateUser(HttpExchange exchange) throws IOException {
+        Map<String, String> fields = readJson(exchange);
+        User user = login(exchange, fields.get("username"), fields.get("password"))
+                .orElseThrow(() -> new ApiException(401, "invalid username or password"));
+        sendUser(exchange, user);
+    }
+
+    /**
+     * Checks the Basic credentials of a request against the served user.
+     *
+     * @return the authenticated user, who is the served user
+     */
+    private User authorize(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        Optional<User> user = Optional.empty();
+        if (header != null && header.regionMatches(true, 0, "Basic ", 0, 6)) {
+            String credentials;
+            try {
+                credentials = new String(Base64.getDecoder().decode(header.substring(6).trim()), StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException e) {
+                credentials = "";
+            }
+            int colon = credentials.indexOf(':');
+            if (colon >= 0) {
+                user = login(exchange, credentials.substring(0, colon), credentials.substring(colon + 1));
+            }
+        }
+        if (user.isEmpty()) {
+            exchange.getResponseHeaders().set("WWW-Authenticate", "Basic realm=\"tasks\", charset=\"UTF-8\"");
+            throw new ApiException(401, "authentication required");
+        }
+        if (user.get().getId() != owner.getId()) {
+            throw new ApiException(403, "the tasks of another user are served");
+        }
+        return user.get();
+    }
+
+    /**
+     * Authenticates a user, unless the username failed too often from the client's address.
+     * After {@link #FREE_FAILURES} failures in a row, each failure refuses further attempts for
+     * a delay that doubles, from one second up to {@link #MAX_LOCKOUT_MILLIS}; a success clears it.
+     */
+    private Optional<User> login(HttpExchange exchange, String username, String password) {
+        String key = username + "@" + exchange.getRemoteAddress().getAddress().getHostAddress();
+        long now = System.currentTimeMillis();
+        Failures failed = failures.get(key);
+        if (failed != null && failed.lockedUntil() > now) {
+            long seconds = (failed.lockedUntil() - now + 999) / 1000;
+            exchange.getResponseHeaders().set("Retry-After", Long.toString(seconds));
+            throw new ApiException(429, "too many failed attempts, retry in " + seconds + " s");
+        }
+        Optional<User> user = users.authenticate(username, password);
+        if (user.isPresent()) {
+            failures.remove(key);
+            return user;
+        }
+        if (failures.size() >= 10_000) {
+            failures.values().removeIf(f -> f.lockedUntil() + MAX_LOCKOUT_MILLIS < now);
+        }
+        failures.merge(key, new Failures(1, 0), (previous, one) -> {
+            int count = previous.count() + 1;
+            long delay = count <= FREE_FAILURES ? 0
+                    : Math.min(MAX_LOCKOUT_MILLIS, 1000L << Math.min(count - FREE_FAILURES - 1, 20));
+            return new Failures(count, now + delay);
+        });
+        return user;
+    }
+
+    private void listTasks(HttpExchange exchange) throws IOException {
+        // Read the version before the tasks, so a change made meanwhile never goes unnoticed
+        String etag = listEtag(exchange);
+        if (notModified(exchange, etag)) {
+            return;
+        }
+        Map<String, String> params = params(exchange);
+        int offset = intParam(params, "offset", 0);
+        int limit = intParam(params, "limit", DEFAULT_PAGE_SIZE);
+        if (offset < 0 || limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("offset must be at least 0 and limit between 1 and " + MAX_PAGE_SIZE);
+        }
+        TaskQuery query = query(params);
+        List<Task> page;
+        if (query.hasCriteria() || query.getSort() != TaskQuery.Sort.NONE) {
+            List<Task> matches = controller.queryTasks(query.limit((int) Math.min(Integer.MAX_VALUE, (long) offset + limit)));
+            page = offset < matches.size() ? matches.subList(offset, matches.size()) : List.of();
+        } else {
+            page = tasks.slice(offset, limit);
+        }
+        StringBuilder body = new StringBuilder(page.size() * 96 + 2).append('[');
+        for (int i = 0; i < page.size(); i++) {
+            if (i > 0) body.append(',');
+            body.append(TaskTextFormat.JSON_LINES.encode(page.get(i)));
+        }
+        body.append(']');
+        if (page.size() == limit) {
+            params.put("offset", Integer.toString(offset + limit));
+            exchange.getResponseHeaders().set("Link", "<" + link(params) + ">; rel=\"next\"");
+        }
+        exchange.getResponseHeaders().set("ETag", etag);
+        send(exchange, 200, body.toString());
+    }
+
+    /**
+     * Streams every task in chunks, without building the whole response in memory.
+     */
+    private void exportTasks(HttpExchange exchange) throws IOException {
+        String etag = listEtag(exchange);
+        if (notModified(exchange, etag)) {
+            return;
+        }
+        String formatName = params(exchange).getOrDefault("format", "jsonl");
+        TaskTextFormat format = TaskTextFormat.forFile("." + formatName);
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", (format == TaskTextFormat.CSV ? "text/csv" : "application/x-ndjson") + "; charset=utf-8");
+        headers.set("ETag", etag);
+        exchange.sendResponseHeaders(200, 0);
+        // Not closed on failure, which would end the body as if every task was sent; see handle
+        Writer out = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8);
+        TaskExporter.export(tasks, out, format);
+        out.close();
+    }
+
+    private void createTask(HttpExchange exchange) throws IOException {
+        Map<String, String> fields = readJson(exchange);
+        Task task = change(() -> {
+            Task created = new TaskImporter(controller).toTask(fields);
+            controller.addTask(created);
+            return created;
+        });
+        exchange.getResponseHeaders().set("Location", "/api/tasks/" + task.getId());
+        sendTask(exchange, 201, task);
+    }
+
+    /**
+     * Applies the fields present in the request body; a null value clears the due date.
+     * Completed tasks cannot be reopened.
+     */
+    private void updateTask(HttpExchange exchange, Task task) throws IOException {
+        Map<String, String> fields = readJson(exchange);
+        String description = fields.get("description");
+        if (fields.containsKey("description") && (description == null || description.isBlank())) {
+            throw new IllegalArgumentException("description is required");
+        }
+        Task.Priority priority = fields.containsKey("priority") ? priority(fields.get("priority")) : null;
+        LocalDate dueDate = fields.get("dueDate") != null ? LocalDate.parse(fields.get("dueDate").trim()) : null;
+        String completed = fields.get("completed");
+        if (completed != null && !completed.equals("true") && !completed.equals("false")) {
+            throw new IllegalArgumentException("completed must be true or false: " + completed);
+        }
+        change(() -> {
+            checkCurrent(exchange, task);
+            if ("false".equals(completed) && task.isCompleted()) {
+                throw new IllegalStateException("completed tasks cannot be reopened");
+            }
+            if (fields.containsKey("description")) task.setDescription(description);
+            if (fields.containsKey("priority")) task.setPriority(priority);
+            if (fields.containsKey("dueDate")) task.setDueDate(dueDate);
+            controller.updateTask(task);
+            if ("true".equals(completed) && !task.isCompleted()) {
+                controller.completeTask(task);
+            }
+            return task;
+        });
+        sendTask(exchange, 200, task);
+    }
+
+    private void deleteTask(HttpExchange exchange, Task task) throws IOException {
+        change(() -> {
+            checkCurrent(exchange, task);
+            controller.removeTask(task);
+            return task;
+        });
+        exchange.sendResponseHeaders(204, -1);
+    }
+
+    /**
+     * Runs a change on the mutator executor and waits for it, rethrowing its failure.
+     */
+    private <T> T change(Supplier<T> change) {
+        try {
+            return CompletableFuture.supplyAsync(change, mutator).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    /**
+     * Fails with 404 if the task was removed since it was looked up, or with 412 unless the
+     * If-Match header, if any, names the current version of the task.
+     */
+    private void checkCurrent(HttpExchange exchange, Task task) {
+        if (tasks.findById(task.getId()).orElse(null) != task) {
+            throw new ApiException(404, "no task " + task.getId());
+        }
+        String ifMatch = exchange.getRequestHeaders().getFirst("If-Match");
+        if (ifMatch != null && !ifMatch.trim().equals("*") && !ifMatch.contains(etag(task))) {
+            throw new ApiException(412, "task " + task.getId() + " was changed");
+        }
+    }
+
+    /**
+     * Answers 304 if the If-None-Match header names the given ETag.
+     */
+    private static boolean notModified(HttpExchange exchange, String etag) throws IOException {
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch != null && (ifNoneMatch.trim().equals("*") || ifNoneMatch.contains(etag))) {
+            exchange.getResponseHeaders().set("ETag", etag);
+            exchange.sendResponseHeaders(304, -1);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the ETag of a list: the version of the collection and a hash of the query string,
+     * which chooses the filter, order, page, and format.
+     */
+    private String listEtag(HttpExchange exchange) {
+        String query = exchange.getRequestURI().getRawQuery();
+        return "\"" + epoch + "-" + tasks.getVersion() + "-" + Long.toHexString(hash(query != null ? query : "")) + "\"";
+    }
+
+    /**
+     * Returns the ETag of a task: a hash of its JSON encoding.
+     */
+    static String etag(Task task) {
+        return "\"" + Long.toHexString(hash(TaskTextFormat.JSON_LINES.encode(task))) + "\"";
+    }
+
+    /**
+     * Returns the 64-bit FNV-1a hash of a string.
+     */
+    private static long hash(String text) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static void sendTask(HttpExchange exchange, int status, Task task) throws IOException {
+        String etag = etag(task);
+        if (status == 200 && notModified(exchange, etag)) {
+            return;
+        }
+        exchange.getResponseHeaders().set("ETag", etag);
+        send(exchange, status, TaskTextFormat.JSON_LINES.encode(task));
+    }
+
+    private static void sendUser(HttpExchange exchange, User user) throws IOException {
+        StringBuilder body = new StringBuilder();
+        appendUser(body, user);
+        send(exchange, 200, body.toString());
+    }
+
+    private static void sendUsers(HttpExchange exchange, List<User> list) throws IOException {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < list.size(); i++) {
+            if (i > 0) body.append(',');
+            appendUser(body, list.get(i));
+        }
+        send(exchange, 200, body.append(']').toString());
+    }
+
+    /**
+     * Appends a user as a JSON object; the password is never included.
+     */
+    private static void appendUser(StringBuilder body, User user) {
+        body.append("{\"id\":").append(user.getId()).append(",\"username\":");
+        TaskTextFormat.appendJsonString(body, user.getUsername());
+        body.append(",\"email\":");
+        if (user.getEmail() != null) {
+            TaskTextFormat.appendJsonString(body, user.getEmail());
+        } else {
+            body.append("null");
+        }
+        body.append(",\"role\":\"").append(user.getRole()).append("\"}");
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringBuilder body = new StringBuilder("{\"error\":");
+        TaskTextFormat.appendJsonString(body, message != null ? message : "");
+        send(exchange, status, body.append('}').toString());
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> readJson(HttpExchange exchange) throws IOException {
+        String body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = new String(in.readAllBytes(), StandardCharsets.UTF_8).strip();
+        }
+        return TaskTextFormat.JSON_LINES.decode(body, List.of());
+    }
+
+    /**
+     * Builds a query from the filter and sort parameters of a list request.
+     */
+    private static TaskQuery query(Map<String, String> params) {
+        TaskQuery query = new TaskQuery();
+        if (params.containsKey("priority")) {
+            List<Task.Priority> accepted = new ArrayList<>();
+            for (String name : params.get("priority").split(",")) {
+                accepted.add(priority(name));
+            }
+            query.priority(accepted.toArray(new Task.Priority[0]));
+        }
+        String completed = params.get("completed");
+        if ("true".equals(completed)) {
+            query.completed();
+        } else if ("false".equals(completed)) {
+            query.open();
+        } else if (completed != null) {
+            throw new IllegalArgumentException("completed must be true or false: " + completed);
+        }
+        if (params.containsKey("dueBy")) query.dueBetween(null, LocalDate.parse(params.get("dueBy")));
+        if (params.containsKey("text")) query.text(params.get("text"));
+        if (params.containsKey("sort")) query.sortBy(TaskQuery.Sort.valueOf(params.get("sort").toUpperCase(Locale.ROOT)));
+        return query;
+    }
+
+    private static Task.Priority priority(String name) {
+        if (name == null) throw new IllegalArgumentException("priority is required");
+        return Task.Priority.valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+
+    private static int id(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ApiException(404, "no such resource");
+        }
+    }
+
+    private static void require(String method, String expected) {
+        if (!method.equals(expected)) throw new ApiException(405, "method not allowed: " + method);
+    }
+
+    private static int intParam(Map<String, String> params, String name, int defaultValue) {
+        String value = params.get(name);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    private static Map<String, String> params(HttpExchange exchange) {
+        Map<String, String> params = new LinkedHashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                int equals = pair.indexOf('=');
+                if (equals > 0) {
+                    params.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                            URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return params;
+    }
+
+    private static String link(Map<String, String> params) {
+        StringBuilder link = new StringBuilder("/api/tasks");
+        char separator = '?';
+        for (Map.Entry<String, String> param : params.entrySet()) {
+            link.append(separator).append(URLEncoder.encode(param.getKey(), StandardCharsets.UTF_8))
+                    .append('=').append(URLEncoder.encode(param.getValue(), StandardCharsets.UTF_8));
+            separator = '&';
+        }
+        return link.toString();
+    }
+}
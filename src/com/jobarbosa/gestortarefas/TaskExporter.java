@@ -0,0 +1,46 @@
+package com.jobarbosa.gestortarefas;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Streams the tasks of a {@link Tasks} collection to a CSV or JSON Lines destination.
+ * Tasks are copied from the collection in small chunks, so exporting never holds a full copy
+ * of a large collection in memory nor blocks writers for the whole export. Tasks added or
+ * removed while an export is running may or may not be included.
+ */
+public final class TaskExporter {
+    /** Number of tasks copied from the collection at a time. */
+    private static final int CHUNK_SIZE = 1024;
+
+    private TaskExporter() { }
+
+    /**
+     * Writes every task, one line each, preceded by the header line if the format has one.
+     * The writer is flushed but not closed.
+     *
+     * @param tasks the tasks to export
+     * @param out the destination
+     * @param format the format to write
+     * @return the number of tasks written
+     * @throws IOException if an I/O error occurs
+     */
+    public static int export(Tasks tasks, Writer out, TaskTextFormat format) throws IOException {
+        if (format.header() != null) {
+            out.write(format.header());
+            out.write('\n');
+        }
+        int written = 0;
+        List<Task> chunk;
+        while (!(chunk = tasks.slice(written, CHUNK_SIZE)).isEmpty()) {
+            for (Task task : chunk) {
+                out.write(format.encode(task));
+                out.write('\n');
+            }
+            written += chunk.size();
+        }
+        out.flush();
+        return written;
+    }
+}
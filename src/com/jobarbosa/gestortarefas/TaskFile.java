@@ -0,0 +1,292 @@
+package com.jobarbosa.gestortarefas;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Reads and writes the binary task file format.
+ * <p>
+ * Layout (big endian):
+ * <ul>
+ *   <li>Header: magic "GTTF", version (short), reserved (short), record count (int), string section length (int),
+ *       and highest task id (int, 0 if there are no tasks; not in version 1 files)</li>
+ *   <li>Records: one fixed-width record per task with id (int), priority (byte, -1 if none),
+ *       flags (byte), padding (short), due date and end date (epoch day ints, {@link #NO_DATE} if none),
+ *       and offset and length (ints) of the description in the string section</li>
+ *   <li>String section: UTF-8 encoded descriptions</li>
+ * </ul>
+ * Files written by the previous Java serialization format are still readable through {@link #readLegacy(String)}.
+ */
+public class TaskFile {
+    /** File magic, "GTTF". */
+    static final int MAGIC = 0x47545446;
+    /** Current format version. */
+    static final short VERSION = 2;
+    /** Size of the header in bytes. */
+    static final int HEADER_SIZE = 20;
+    /** Size of the header of version 1 files, which lack the highest id. */
+    private static final int V1_HEADER_SIZE = 16;
+    /** Size of each task record in bytes. */
+    static final int RECORD_SIZE = 24;
+    /** Marker used for null dates. */
+    static final int NO_DATE = Integer.MIN_VALUE;
+    /** Record flag set when the task is completed. */
+    static final int FLAG_COMPLETED = 1;
+    /** Record flag set when the task has a description. */
+    static final int FLAG_DESCRIPTION = 2;
+    /** Magic bytes at the start of a Java serialization stream. */
+    private static final short SERIALIZATION_MAGIC = (short) 0xACED;
+    /** Size of the buffer used for channel I/O. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private TaskFile() { }
+
+    /**
+     * Writes tasks to a file in the binary format. The file is written to a temporary file
+     * first and then moved into place, so a failed write never leaves a partial file behind.
+     *
+     * @param filename the file to write
+     * @param tasks the tasks to write
+     * @throws IOException if an I/O error occurs
+     */
+    public static void write(String filename, Collection<Task> tasks) throws IOException {
+        MetricsEvents.Persistence event = MetricsEvents.Persistence.start("tasks.save", filename);
+        Path target = Paths.get(filename);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        byte[][] descriptions = new byte[tasks.size()][];
+        int stringBytes = 0;
+        int maxId = 0;
+        int i = 0;
+        for (Task task : tasks) {
+            maxId = Math.max(maxId, task.getId());
+            if (task.getDescription() != null) {
+                descriptions[i] = task.getDescription().getBytes(StandardCharsets.UTF_8);
+                stringBytes += descriptions[i].length;
+            }
+            i++;
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            buffer.putInt(MAGIC).putShort(VERSION).putShort((short) 0).putInt(tasks.size()).putInt(stringBytes).putInt(maxId);
+            int offset = 0;
+            i = 0;
+            for (Task task : tasks) {
+                if (buffer.remaining() < RECORD_SIZE) {
+                    drain(channel, buffer);
+                }
+                byte[] description = descriptions[i++];
+                int flags = (task.isCompleted() ? FLAG_COMPLETED : 0) | (description != null ? FLAG_DESCRIPTION : 0);
+                buffer.putInt(task.getId())
+                        .put((byte) (task.getPriority() != null ? task.getPriority().ordinal() : -1))
+                        .put((byte) flags)
+                        .putShort((short) 0)
+                        .putInt(toEpochDay(task.getDueDate()))
+                        .putInt(toEpochDay(task.getEndDate()))
+                        .putInt(offset)
+                        .putInt(description != null ? description.length : 0);
+                if (description != null) {
+                    offset += description.length;
+                }
+            }
+            for (byte[] description : descriptions) {
+                if (description == null) {
+                    continue;
+                }
+                if (buffer.remaining() < description.length) {
+                    drain(channel, buffer);
+                }
+                if (description.length > buffer.capacity()) {
+                    writeFully(channel, ByteBuffer.wrap(description));
+                } else {
+                    buffer.put(description);
+                }
+            }
+            drain(channel, buffer);
+            channel.force(false);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        event.finish(HEADER_SIZE + (long) tasks.size() * RECORD_SIZE + stringBytes);
+    }
+
+    /**
+     * Reads tasks from a file in the binary format.
+     *
+     * @param filename the file to read
+     * @return the tasks in the file, in the order they were written
+     * @throws IOException if an I/O error occurs or the file is not in the binary format
+     */
+    public static List<Task> read(String filename) throws IOException {
+        MetricsEvents.Persistence event = MetricsEvents.Persistence.start("tasks.load", filename);
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(HEADER_SIZE, channel.size()));
+            fill(channel, buffer);
+            Header header = readHeader(buffer);
+            int count = header.count();
+
+            ByteBuffer strings = ByteBuffer.allocate(header.stringBytes());
+            channel.position(header.size() + (long) count * RECORD_SIZE);
+            fill(channel, strings);
+            channel.position(header.size());
+
+            ByteBuffer records = ByteBuffer.allocate(Math.min(BUFFER_SIZE / RECORD_SIZE, count) * RECORD_SIZE);
+            records.limit(0);
+            List<Task> tasks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                if (!records.hasRemaining()) {
+                    records.clear();
+                    records.limit(Math.min(records.capacity(), (count - i) * RECORD_SIZE));
+                    fill(channel, records);
+                }
+                tasks.add(readRecord(records, records.position(), strings));
+                records.position(records.position() + RECORD_SIZE);
+            }
+            event.finish(channel.size());
+            return tasks;
+        }
+    }
+
+    /**
+     * Checks whether a file was written with the previous Java serialization format.
+     *
+     * @param filename the file to check
+     * @return true if the file is a Java serialization stream
+     * @throws IOException if an I/O error occurs
+     */
+    public static boolean isLegacy(String filename) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(filename))) {
+            return in.readShort() == SERIALIZATION_MAGIC;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads tasks from a file written with the previous Java serialization format.
+     * Used once to migrate existing files; they are rewritten in the binary format on the next save.
+     *
+     * @param filename the file to read
+     * @return the tasks in the file
+     * @throws IOException if an I/O error occurs
+     * @throws ClassNotFoundException if the class of a serialized object cannot be found
+     */
+    @SuppressWarnings("unchecked")
+    public static List<Task> readLegacy(String filename) throws IOException, ClassNotFoundException {
+        MetricsEvents.Persistence event = MetricsEvents.Persistence.start("tasks.loadLegacy", filename);
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(filename)))) {
+            List<Task> tasks = (List<Task>) in.readObject();
+            event.finish(new File(filename).length());
+            return tasks;
+        }
+    }
+
+    /**
+     * Header of a task file.
+     *
+     * @param size size of the header in bytes, where the records start
+     * @param count number of records
+     * @param stringBytes length of the string section
+     * @param maxId highest task id, or -1 if the file predates it being stored
+     */
+    record Header(int size, int count, int stringBytes, int maxId) { }
+
+    /**
+     * Validates and decodes the header at the start of a buffer holding at least the header.
+     * Version 1 files are still accepted.
+     */
+    static Header readHeader(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < V1_HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("not a task file");
+        }
+        short version = buffer.getShort();
+        if (version != 1 && version != VERSION) {
+            throw new IOException("unsupported task file version " + version);
+        }
+        buffer.getShort();
+        int count = buffer.getInt();
+        int stringBytes = buffer.getInt();
+        if (count < 0 || stringBytes < 0) {
+            throw new IOException("corrupt task file header");
+        }
+        if (version == 1) {
+            return new Header(V1_HEADER_SIZE, count, stringBytes, -1);
+        }
+        if (buffer.remaining() < Integer.BYTES) {
+            throw new IOException("truncated task file");
+        }
+        return new Header(HEADER_SIZE, count, stringBytes, buffer.getInt());
+    }
+
+    /**
+     * Decodes the task record starting at the given position, without moving the buffers.
+     *
+     * @param records buffer holding the record
+     * @param position position of the record in the buffer
+     * @param strings buffer holding the string section
+     * @return the decoded task
+     * @throws IOException if the record holds an unknown priority
+     */
+    static Task readRecord(ByteBuffer records, int position, ByteBuffer strings) throws IOException {
+        int id = records.getInt(position);
+        byte priority = records.get(position + 4);
+        if (priority < -1 || priority >= Task.Priority.values().length) {
+            throw new IOException("corrupt task record " + id + ": priority " + priority);
+        }
+        byte flags = records.get(position + 5);
+        int dueDate = records.getInt(position + 8);
+        int endDate = records.getInt(position + 12);
+        String description = null;
+        if ((flags & FLAG_DESCRIPTION) != 0) {
+            byte[] bytes = new byte[records.getInt(position + 20)];
+            strings.get(records.getInt(position + 16), bytes);
+            description = new String(bytes, StandardCharsets.UTF_8);
+        }
+        Task task = new Task(id, description,
+                priority >= 0 ? Task.Priority.values()[priority] : null, fromEpochDay(dueDate));
+        task.restoreCompletion((flags & FLAG_COMPLETED) != 0, fromEpochDay(endDate));
+        return task;
+    }
+
+    static int toEpochDay(LocalDate date) {
+        return date != null ? (int) date.toEpochDay() : NO_DATE;
+    }
+
+    static LocalDate fromEpochDay(int epochDay) {
+        return epochDay != NO_DATE ? LocalDate.ofEpochDay(epochDay) : null;
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        writeFully(channel, buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Writes all remaining bytes of a buffer; a single channel write may write only part of them.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void fill(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("truncated task file");
+            }
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,220 @@
+package com.jobarbosa.gestortarefas;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Named groups of a user's tasks, e.g. "Work" or "Home". A task may be in any number of groups.
+ * <p>
+ * Groups hold task ids, not tasks: the tasks live in the user's task files, and ids of tasks that
+ * were removed meanwhile are skipped when a group is looked up. Each group keeps its ids in a set
+ * in the order they were added, and a reverse index maps each task id to the groups it is in, so
+ * adding, removing, moving, or copying a task, checking whether it is in a group, and finding its
+ * groups take constant time, whatever the size of the groups. Thread-safe; guarded by this.
+ */
+public class TaskGroups {
+    /** Ids of the tasks in each group; the map saved with the user. */
+    private final Map<String, Set<Integer>> members;
+    /** Groups each task is in. */
+    private final Map<Integer, Set<String>> groupsByTask = new HashMap<>();
+
+    /**
+     * Constructs the groups backed by the given map, which is kept up to date and saved with the user.
+     *
+     * @param members the task ids of each group, in sets that keep their insertion order
+     */
+    TaskGroups(Map<String, Set<Integer>> members) {
+        this.members = members;
+        for (Map.Entry<String, Set<Integer>> group : members.entrySet()) {
+            for (int taskId : group.getValue()) {
+                groupsByTask.computeIfAbsent(taskId, k -> new LinkedHashSet<>()).add(group.getKey());
+            }
+        }
+    }
+
+    /**
+     * Adds a task to a group. If the group does not exist, it is created.
+     *
+     * @param group the name of the group
+     * @param taskId the id of the task
+     * @return true if the task was not in the group yet
+     */
+    public synchronized boolean add(String group, int taskId) {
+        if (!members.computeIfAbsent(group, k -> new LinkedHashSet<>()).add(taskId)) {
+            return false;
+        }
+        groupsByTask.computeIfAbsent(taskId, k -> new LinkedHashSet<>()).add(group);
+        return true;
+    }
+
+    /**
+     * Removes a task from a group. The group is kept, even if it becomes empty.
+     *
+     * @param group the name of the group
+     * @param taskId the id of the task
+     * @return true if the task was in the group
+     */
+    public synchronized boolean remove(String group, int taskId) {
+        Set<Integer> ids = members.get(group);
+        if (ids == null || !ids.remove(taskId)) {
+            return false;
+        }
+        Set<String> groups = groupsByTask.get(taskId);
+        if (groups != null && groups.remove(group) && groups.isEmpty()) {
+            groupsByTask.remove(taskId);
+        }
+        return true;
+    }
+
+    /**
+     * Removes a task from every group it is in, e.g. after the task was removed.
+     *
+     * @param taskId the id of the task
+     * @return the number of groups the task was removed from
+     */
+    public synchronized int removeFromAll(int taskId) {
+        Set<String> groups = groupsByTask.remove(taskId);
+        if (groups == null) {
+            return 0;
+        }
+        for (String group : groups) {
+            members.get(group).remove(taskId);
+        }
+        return groups.size();
+    }
+
+    /**
+     * Moves tasks from one group to another. Tasks that are not in the source group are skipped;
+     * the target group is created if it does not exist.
+     *
+     * @param from the name of the source group
+     * @param to the name of the target group
+     * @param taskIds the ids of the tasks to move
+     * @return the number of tasks that were in the source group
+     */
+    public synchronized int move(String from, String to, Collection<Integer> taskIds) {
+        if (from.equals(to)) {
+            return count(from, taskIds);
+        }
+        int moved = 0;
+        for (int taskId : taskIds) {
+            if (remove(from, taskId)) {
+                add(to, taskId);
+                moved++;
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Copies tasks from one group to another, leaving them in the source group as well. Tasks that
+     * are not in the source group are skipped; the target group is created if it does not exist.
+     *
+     * @param from the name of the source group
+     * @param to the name of the target group
+     * @param taskIds the ids of the tasks to copy
+     * @return the number of tasks that were in the source group
+     */
+    public synchronized int copy(String from, String to, Collection<Integer> taskIds) {
+        int copied = 0;
+        for (int taskId : taskIds) {
+            if (contains(from, taskId)) {
+                add(to, taskId);
+                copied++;
+            }
+        }
+        return copied;
+    }
+
+    /**
+     * Returns whether a task is in a group.
+     *
+     * @param group the name of the group
+     * @param taskId the id of the task
+     * @return true if the task is in the group
+     */
+    public synchronized boolean contains(String group, int taskId) {
+        Set<Integer> ids = members.get(group);
+        return ids != null && ids.contains(taskId);
+    }
+
+    /**
+     * Returns the number of tasks in a group, including ids of tasks removed meanwhile.
+     *
+     * @param group the name of the group
+     * @return the number of task ids in the group, 0 if the group does not exist
+     */
+    public synchronized int size(String group) {
+        Set<Integer> ids = members.get(group);
+        return ids != null ? ids.size() : 0;
+    }
+
+    /**
+     * Returns the ids of the tasks in a group, in the order they were added.
+     *
+     * @param group the name of the group
+     * @return a copy of the task ids, or an empty list if the group does not exist
+     */
+    public synchronized List<Integer> getTaskIds(String group) {
+        Set<Integer> ids = members.get(group);
+        return ids != null ? new ArrayList<>(ids) : List.of();
+    }
+
+    /**
+     * Returns the groups a task is in.
+     *
+     * @param taskId the id of the task
+     * @return the names of the groups, or an empty list if the task is in none
+     */
+    public synchronized List<String> getGroupsOf(int taskId) {
+        Set<String> groups = groupsByTask.get(taskId);
+        return groups != null ? new ArrayList<>(groups) : List.of();
+    }
+
+    /**
+     * Returns the names of all groups.
+     *
+     * @return a copy of the group names
+     */
+    public synchronized List<String> getNames() {
+        return new ArrayList<>(members.keySet());
+    }
+
+    /**
+     * Returns the tasks in a group, looked up in the given collection.
+     * Ids of tasks that are no longer in the collection are skipped.
+     *
+     * @param group the name of the group
+     * @param tasks the user's tasks
+     * @return the tasks in the group, in the order they were added
+     */
+    public List<Task> getTasks(String group, Tasks tasks) {
+        List<Integer> ids = getTaskIds(group);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        List<Task> result = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            tasks.findById(id).ifPresent(result::add);
+        }
+        return result;
+    }
+
+    /**
+     * Counts how many of the given tasks are in a group. Requires the lock.
+     */
+    private int count(String group, Collection<Integer> taskIds) {
+        int count = 0;
+        for (int taskId : taskIds) {
+            if (contains(group, taskId)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
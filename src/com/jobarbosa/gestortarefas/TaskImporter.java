@@ -0,0 +1,237 @@
+package com.jobarbosa.gestortarefas;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Streams tasks from a CSV or JSON Lines source into a {@link TasksManagementController}.
+ * <p>
+ * The source is read one line at a time and valid rows are collected into batches; each batch
+ * is added to the collection as a single change and recorded with a single journal write, so
+ * memory use is bounded by the batch size rather than the size of the source. Imported tasks
+ * always get new ids, since ids from another tool would collide with existing tasks; the ids
+ * of a batch are reserved together when it is committed.
+ * Rows that fail validation are skipped and reported.
+ */
+public class TaskImporter {
+    /** Default number of tasks committed together. */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    /** Maximum number of rejected rows described in a report; further rejections are only counted. */
+    private static final int MAX_REPORTED_REJECTIONS = 100;
+
+    private final TasksManagementController controller;
+    private final int batchSize;
+
+    /**
+     * Constructs an importer with the default batch size.
+     *
+     * @param controller the controller that receives the tasks
+     */
+    public TaskImporter(TasksManagementController controller) {
+        this(controller, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Constructs an importer.
+     *
+     * @param controller the controller that receives the tasks
+     * @param batchSize number of tasks committed together
+     */
+    public TaskImporter(TasksManagementController controller, int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("batch size must be positive");
+        this.controller = controller;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Result of an import.
+     */
+    public static class Report {
+        private final int rowsRead;
+        private final int imported;
+        private final int rejected;
+        private final List<String> rejections;
+        private final long elapsedNanos;
+
+        Report(int rowsRead, int imported, int rejected, List<String> rejections, long elapsedNanos) {
+            this.rowsRead = rowsRead;
+            this.imported = imported;
+            this.rejected = rejected;
+            this.rejections = Collections.unmodifiableList(rejections);
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /** Returns the number of data rows read, not counting the header and blank lines. */
+        public int getRowsRead() { return rowsRead; }
+
+        /** Returns the number of tasks added. */
+        public int getImported() { return imported; }
+
+        /** Returns the number of rows skipped because they were invalid. */
+        public int getRejected() { return rejected; }
+
+        /** Returns a description of each rejected row, with its line number, up to a limit. */
+        public List<String> getRejections() { return rejections; }
+
+        /** Returns the time the import took, in nanoseconds. */
+        public long getElapsedNanos() { return elapsedNanos; }
+
+        /** Returns the number of rows read per second. */
+        public double getRowsPerSecond() {
+            return elapsedNanos > 0 ? rowsRead * 1_000_000_000.0 / elapsedNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d rows read, %d imported, %d rejected in %.1f ms (%.0f rows/s)",
+                    rowsRead, imported, rejected, elapsedNanos / 1_000_000.0, getRowsPerSecond());
+        }
+    }
+
+    /**
+     * Imports every row of a source. The reader is not closed.
+     *
+     * @param reader the source, positioned at the header line for CSV
+     * @param format the format of the source
+     * @return the import report
+     * @throws IOException if an I/O error occurs; tasks from batches already committed stay imported
+     */
+    public Report importFrom(BufferedReader reader, TaskTextFormat format) throws IOException {
+        long start = System.nanoTime();
+        List<String> columns = List.of();
+        if (format.header() != null) {
+            String header = reader.readLine();
+            if (header == null) {
+                return new Report(0, 0, 0, new ArrayList<>(), System.nanoTime() - start);
+            }
+            columns = format.columns(stripByteOrderMark(header));
+        }
+        int lineNumber = format.header() != null ? 1 : 0;
+        int rowsRead = 0;
+        int imported = 0;
+        int rejected = 0;
+        List<String> rejections = new ArrayList<>();
+        List<Task> batch = new ArrayList<>(batchSize);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (lineNumber == 1) {
+                line = stripByteOrderMark(line);
+            }
+            if (line.isBlank()) {
+                continue;
+            }
+            int firstLine = lineNumber;
+            String continued;
+            while (!format.isComplete(line) && (continued = reader.readLine()) != null) {
+                // A quoted value with a line break; readLine dropped the break
+                line = line + '\n' + continued;
+                lineNumber++;
+            }
+            rowsRead++;
+            try {
+                // Ids are given when the batch is committed
+                batch.add(toTask(format.decode(line, columns), 0));
+            } catch (IllegalArgumentException e) {
+                rejected++;
+                if (rejections.size() < MAX_REPORTED_REJECTIONS) {
+                    rejections.add("line " + firstLine + ": " + e.getMessage());
+                }
+                continue;
+            }
+            if (batch.size() == batchSize) {
+                imported += commit(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        imported += commit(batch);
+        return new Report(rowsRead, imported, rejected, rejections, System.nanoTime() - start);
+    }
+
+    /**
+     * Gives the tasks of a batch new ids, reserved together, and adds them as one change.
+     *
+     * @return the number of tasks added
+     */
+    private int commit(List<Task> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        int firstId = controller.reserveTaskIds(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            batch.set(i, batch.get(i).withId(firstId + i));
+        }
+        controller.addTasks(batch);
+        return batch.size();
+    }
+
+    /**
+     * Validates decoded field values and builds a task with a new id.
+     *
+     * @throws IllegalArgumentException if a value is missing or invalid
+     */
+    Task toTask(Map<String, String> fields) {
+        Task task = toTask(fields, 0);
+        return task.withId(controller.newTaskId());
+    }
+
+    /**
+     * Validates decoded field values and builds a task with the given id.
+     *
+     * @throws IllegalArgumentException if a value is missing or invalid
+     */
+    private Task toTask(Map<String, String> fields, int id) {
+        String description = fields.get("description");
+        if (description == null || description.isBlank()) throw new IllegalArgumentException("description is required");
+        Task.Priority priority = Task.Priority.MEDIUM;
+        String priorityName = fields.get("priority");
+        if (priorityName != null) {
+            try {
+                priority = Task.Priority.valueOf(priorityName.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("unknown priority: " + priorityName);
+            }
+        }
+        LocalDate dueDate = date(fields, "dueDate");
+        LocalDate endDate = date(fields, "endDate");
+        boolean completed = false;
+        String completedValue = fields.get("completed");
+        if (completedValue != null) {
+            switch (completedValue.trim().toLowerCase(Locale.ROOT)) {
+                case "true" -> completed = true;
+                case "false" -> completed = false;
+                default -> throw new IllegalArgumentException("completed must be true or false: " + completedValue);
+            }
+        }
+        if (endDate != null && !completed) throw new IllegalArgumentException("endDate given for a task that is not completed");
+
+        Task task = new Task(id, description, priority, dueDate);
+        if (completed) {
+            task.restoreCompletion(true, endDate);
+        }
+        return task;
+    }
+
+    private static LocalDate date(Map<String, String> fields, String name) {
+        String value = fields.get(name);
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("invalid " + name + ": " + value);
+        }
+    }
+
+    private static String stripByteOrderMark(String line) {
+        return !line.isEmpty() && line.charAt(0) == '\uFEFF' ? line.substring(1) : line;
+    }
+}
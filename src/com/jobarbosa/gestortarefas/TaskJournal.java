@@ -0,0 +1,433 @@
+package com.jobarbosa.gestortarefas;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Append-only log of task changes.
+ * Each change is written as a small record at the end of the file, so saving an edit
+ * costs the same no matter how many tasks exist. The journal is replayed on top of the
+ * last snapshot on startup and truncated whenever a new snapshot is written.
+ * <p>
+ * Records are encoded in memory when a change is appended and written to the file by
+ * {@link #flush()}, which may run on a different thread. Reading stops at the first record that
+ * is truncated or corrupted (e.g. after a crash), keeping the records before it. Replaying a record more than once
+ * leaves the tasks in the same state, so records written after a snapshot that already
+ * contains them are harmless.
+ * <p>
+ * When several instances of the application share the file, each one reads the records the others
+ * appended with {@link #readFrom(long)}. Records of another instance are read before the local
+ * records written after them, but applied to the local tasks later; the journal remembers which
+ * tasks have local records that were not yet written when a batch of such records was read, so that
+ * the batch does not overwrite them ({@link #isOverridden(int, long)}). Every instance thus ends up
+ * with the state the file describes: the record written last wins.
+ */
+public class TaskJournal {
+    /** Marker used for null dates in journal records. */
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    /**
+     * Enum representing the kind of change recorded in the journal.
+     */
+    public enum Operation {
+        ADD,
+        REMOVE,
+        COMPLETE,
+        UPDATE
+    }
+
+    /** Journal file. */
+    private final File file;
+    /** Open stream used for appending, created on first flush. */
+    private OutputStream out;
+    /** Records appended but not yet written to the file. */
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    /** Number of records appended since the last snapshot. */
+    private int entryCount;
+    /** Number of records appended since the journal was created. */
+    private long appended;
+    /** Number of those records taken for writing to the file. */
+    private long flushed;
+    /** Number of the last local record of each task that other instances' records must not overwrite. */
+    private final Map<Integer, Long> unsettled = new HashMap<>();
+    /** Number of batches of other instances' records read from the file. */
+    private long foreignRead;
+    /** Number of those batches applied to the tasks. */
+    private long foreignApplied;
+
+    /**
+     * A change read back from the journal.
+     *
+     * @param operation the kind of change
+     * @param id the id of the task that changed
+     * @param state the task as it was after an {@code ADD} or {@code UPDATE}, otherwise null
+     * @param endDate the end date set by a {@code COMPLETE}, otherwise null
+     */
+    public record Change(Operation operation, int id, Task state, LocalDate endDate) {
+        /**
+         * Applies the change to the given tasks. A task that already exists is updated in place.
+         *
+         * @param tasks the tasks to apply the change to
+         */
+        public void applyTo(Tasks tasks) {
+            switch (operation) {
+                case ADD, UPDATE -> {
+                    Task existing = tasks.findById(id).orElse(null);
+                    if (existing != null) {
+                        existing.restoreState(state);
+                    } else {
+                        tasks.add(state);
+                    }
+                }
+                case COMPLETE -> tasks.findById(id).ifPresent(task -> task.restoreCompletion(true, endDate));
+                case REMOVE -> tasks.findById(id).ifPresent(tasks::remove);
+            }
+        }
+    }
+
+    /**
+     * Changes read from the journal file.
+     *
+     * @param changes the changes, in the order they were written
+     * @param end the file position after the last complete record
+     */
+    public record Changes(List<Change> changes, long end) { }
+
+    /**
+     * Constructs a journal backed by the specified file.
+     *
+     * @param filename the journal file
+     */
+    public TaskJournal(String filename) {
+        this.file = new File(filename);
+    }
+
+    /**
+     * Returns the number of records appended since the last snapshot.
+     *
+     * @return the number of journal records
+     */
+    public synchronized int getEntryCount() { return entryCount; }
+
+    /**
+     * Returns whether the journal file holds no records.
+     *
+     * @return true if there is nothing to replay
+     */
+    public boolean isEmpty() {
+        return !file.exists() || file.length() == 0;
+    }
+
+    /**
+     * Returns the size of the journal file.
+     *
+     * @return the file length in bytes, 0 if the file does not exist
+     */
+    public long length() {
+        return file.length();
+    }
+
+    /**
+     * Appends a change record for a task. The record captures the task as it is now
+     * and is written to disk on the next {@link #flush()}.
+     *
+     * @param operation the kind of change
+     * @param task the task that changed
+     */
+    public synchronized void append(Operation operation, Task task) {
+        DataOutputStream out = new DataOutputStream(pending);
+        try {
+            out.writeByte(operation.ordinal());
+            out.writeInt(task.getId());
+            switch (operation) {
+                case ADD, UPDATE -> writeState(out, task);
+                case COMPLETE -> writeDate(out, task.getEndDate());
+                case REMOVE -> { }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        entryCount++;
+        unsettled.put(task.getId(), ++appended);
+    }
+
+    /**
+     * Writes the records appended so far to the end of the journal file.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public synchronized void flush() throws IOException {
+        if (pending.size() == 0) {
+            return;
+        }
+        ByteArrayOutputStream records = pending;
+        pending = new ByteArrayOutputStream();
+        flushed = appended;
+        if (foreignApplied == foreignRead) {
+            // No batch read before these records is waiting to be applied
+            settle(flushed);
+        }
+        MetricsEvents.Persistence event = MetricsEvents.Persistence.start("journal.flush", file.getPath());
+        if (out == null) {
+            out = new FileOutputStream(file, true);
+        }
+        records.writeTo(out);
+        out.flush();
+        event.finish(records.size());
+    }
+
+    /**
+     * Applies every record in the journal to the given tasks, in the order they were written.
+     * A truncated record at the end of the file (e.g. after a crash) is ignored.
+     *
+     * @param tasks the tasks to apply the changes to
+     * @throws IOException if an I/O error occurs
+     */
+    public synchronized void replay(Tasks tasks) throws IOException {
+        entryCount = 0;
+        if (isEmpty()) {
+            return;
+        }
+        MetricsEvents.Persistence event = MetricsEvents.Persistence.start("journal.replay", file.getPath());
+        read(0, change -> {
+            change.applyTo(tasks);
+            entryCount++;
+        });
+        event.finish(file.length());
+    }
+
+    /**
+     * Reads the records written from the given file position on, e.g. by another instance of the
+     * application. The records are counted towards the next snapshot.
+     *
+     * @param position the file position of the first record to read
+     * @return the records read, and the position after the last complete one
+     * @throws IOException if an I/O error occurs
+     */
+    public synchronized Changes readFrom(long position) throws IOException {
+        List<Change> changes = new ArrayList<>();
+        if (length() <= position) {
+            return new Changes(changes, position);
+        }
+        MetricsEvents.Persistence event = MetricsEvents.Persistence.start("journal.read", file.getPath());
+        long end = read(position, changes::add);
+        entryCount += changes.size();
+        event.finish(end - position);
+        return new Changes(changes, end);
+    }
+
+    /**
+     * Starts applying a batch of other instances' records read from the file, which were written
+     * before the local records not yet flushed. Call {@link #finishForeign(long)} once applied.
+     *
+     * @return the mark to pass to {@link #isOverridden(int, long)} while applying the batch
+     */
+    public synchronized long startForeign() {
+        foreignRead++;
+        return flushed;
+    }
+
+    /**
+     * Returns whether a task has a local record that was written after a batch of other instances'
+     * records, and so takes precedence over the batch.
+     *
+     * @param id the task id
+     * @param mark the mark returned by {@link #startForeign()} for the batch
+     * @return true if the batch must leave the task as it is
+     */
+    public synchronized boolean isOverridden(int id, long mark) {
+        Long number = unsettled.get(id);
+        return number != null && number > mark;
+    }
+
+    /**
+     * Records that a batch of other instances' records was applied.
+     *
+     * @param mark the mark returned by {@link #startForeign()} for the batch
+     */
+    public synchronized void finishForeign(long mark) {
+        foreignApplied++;
+        settle(foreignApplied == foreignRead ? flushed : mark);
+    }
+
+    /**
+     * Returns the number of batches of other instances' records applied so far. A snapshot taken
+     * after this many batches were applied may only replace the file if no further batch was read.
+     *
+     * @return the number of applied batches
+     */
+    public synchronized long getForeignApplied() {
+        return foreignApplied;
+    }
+
+    /**
+     * Returns the number of batches of other instances' records read so far.
+     *
+     * @return the number of batches read
+     */
+    public synchronized long getForeignRead() {
+        return foreignRead;
+    }
+
+    /**
+     * Empties the journal file. Call this after a snapshot containing all written changes has been saved.
+     * Records not yet flushed are kept and written on the next {@link #flush()}.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public synchronized void reset() throws IOException {
+        close();
+        new FileOutputStream(file).close();
+    }
+
+    /**
+     * Records that a snapshot of the current state was taken, restarting the entry count.
+     */
+    public synchronized void markSnapshot() {
+        entryCount = 0;
+    }
+
+    /**
+     * Closes the append stream, if open.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    /**
+     * Forgets the local records numbered up to the given one; no batch still to be applied was read
+     * before they were written.
+     */
+    private void settle(long number) {
+        if (!unsettled.isEmpty()) {
+            unsettled.values().removeIf(n -> n <= number);
+        }
+    }
+
+    /**
+     * Reads the records from the given file position to the end of the file, stopping at a
+     * truncated record, and returns the position after the last complete one.
+     */
+    private long read(long position, Consumer<Change> action) throws IOException {
+        try (FileInputStream file = new FileInputStream(this.file)) {
+            file.getChannel().position(position);
+            long length = file.getChannel().size();
+            CountingInputStream counter = new CountingInputStream(new BufferedInputStream(file));
+            DataInputStream in = new DataInputStream(counter);
+            long end = position;
+            while (true) {
+                Change change;
+                try {
+                    int code = in.readUnsignedByte();
+                    if (code >= Operation.values().length) throw corrupt("unknown operation " + code);
+                    Operation operation = Operation.values()[code];
+                    int id = in.readInt();
+                    change = switch (operation) {
+                        case ADD, UPDATE -> new Change(operation, id, readState(id, in, length), null);
+                        case COMPLETE -> new Change(operation, id, null, readDate(in));
+                        case REMOVE -> new Change(operation, id, null, null);
+                    };
+                } catch (EOFException e) {
+                    // End of file, or a truncated or corrupted record
+                    return end;
+                }
+                end = position + counter.count;
+                action.accept(change);
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes read through it, to tell where each record ends.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+
+    private static void writeState(DataOutputStream out, Task task) throws IOException {
+        byte[] description = task.getDescription() != null
+                ? task.getDescription().getBytes(StandardCharsets.UTF_8) : null;
+        out.writeInt(description != null ? description.length : -1);
+        if (description != null) {
+            out.write(description);
+        }
+        out.writeByte(task.getPriority() != null ? task.getPriority().ordinal() : -1);
+        out.writeBoolean(task.isCompleted());
+        writeDate(out, task.getDueDate());
+        writeDate(out, task.getEndDate());
+    }
+
+    private static Task readState(int id, DataInputStream in, long fileLength) throws IOException {
+        int length = in.readInt();
+        if (length < -1 || length > fileLength) throw corrupt("description length " + length);
+        String description = null;
+        if (length >= 0) {
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            description = new String(bytes, StandardCharsets.UTF_8);
+        }
+        byte priority = in.readByte();
+        if (priority < -1 || priority >= Task.Priority.values().length) throw corrupt("priority " + priority);
+        boolean completed = in.readBoolean();
+        LocalDate dueDate = readDate(in);
+        LocalDate endDate = readDate(in);
+        Task task = new Task(id, description, priority >= 0 ? Task.Priority.values()[priority] : null, dueDate);
+        task.restoreCompletion(completed, endDate);
+        return task;
+    }
+
+    private static void writeDate(DataOutputStream out, LocalDate date) throws IOException {
+        out.writeLong(date != null ? date.toEpochDay() : NO_DATE);
+    }
+
+    private static LocalDate readDate(DataInputStream in) throws IOException {
+        long epochDay = in.readLong();
+        if (epochDay == NO_DATE) {
+            return null;
+        }
+        if (epochDay < LocalDate.MIN.toEpochDay() || epochDay > LocalDate.MAX.toEpochDay()) {
+            throw corrupt("epoch day " + epochDay);
+        }
+        return LocalDate.ofEpochDay(epochDay);
+    }
+
+    /**
+     * Returns the exception that ends reading at a corrupted record, like the end of the file does.
+     */
+    private static EOFException corrupt(String detail) {
+        return new EOFException("corrupted journal record: " + detail);
+    }
+}
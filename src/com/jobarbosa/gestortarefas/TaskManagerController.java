@@ -1,12 +1,14 @@
 package com.jobarbosa.gestortarefas;
 
+import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
+import javafx.scene.control.SelectionMode;
 import javafx.scene.control.TableView;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.control.TextField;
 import javafx.scene.control.Button;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
@@ -14,18 +16,61 @@ import javafx.scene.control.ComboBox;
 import javafx.scene.control.DatePicker;
 import javafx.scene.control.TableCell;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Controller for the main task management screen.
- * Handles displaying, adding, and removing tasks.
+ * Handles displaying, adding, and removing tasks, and sorting them into the user's groups.
  */
 public class TaskManagerController {
+    /** Maximum number of search and filter results shown in the table. */
+    private static final int SEARCH_LIMIT = 500;
+    private static final String ANY_PRIORITY = "Any priority";
+    private static final String ANY_STATUS = "Any status";
+    private static final String OPEN = "Open";
+    private static final String COMPLETED = "Completed";
+    private static final String OVERDUE = "Overdue";
+    private static final String ALL_GROUPS = "All groups";
     private TasksManagementController tasksController;
-    private ObservableList<Task> taskList;
+    private final UserManagementController userController;
+    /** The logged-in user, whose groups are shown. */
+    private User user;
+    private LazyTaskList taskList;
     private TableView<Task> tableView;
+    private Runnable onExit;
+    /** Whether the search index was already requested. */
+    private boolean searchPrepared;
+    private final DiagnosticsController diagnostics = new DiagnosticsController();
+    private final DashboardController dashboard;
+    private TextField searchField;
+    private ComboBox<String> priorityFilter;
+    private ComboBox<String> statusFilter;
+    private DatePicker dueByFilter;
+    private ComboBox<String> groupFilter;
+    private ComboBox<String> targetGroup;
 
-    public TaskManagerController(TasksManagementController tasksController) {
+    public TaskManagerController(TasksManagementController tasksController, UserManagementController userController) {
         this.tasksController = tasksController;
-        this.taskList = FXCollections.observableArrayList(tasksController.getTasks().listAll());
+        this.userController = userController;
+        this.taskList = new LazyTaskList(tasksController.getTasks());
+        this.dashboard = new DashboardController(tasksController.getStatistics());
+    }
+
+    /**
+     * Sets the action to perform when the user exits the task manager (e.g., return to login screen).
+     * @param action the Runnable to execute
+     */
+    public void setOnExit(Runnable action) {
+        this.onExit = action;
+    }
+
+    /**
+     * Sets the logged-in user, whose task groups are shown. Call this before {@link #show(Stage)}.
+     * @param user the logged-in user
+     */
+    public void setUser(User user) {
+        this.user = user;
     }
 
     /**
@@ -33,7 +78,42 @@ public class TaskManagerController {
      * @param primaryStage the main stage
      */
     public void show(Stage primaryStage) {
+        searchPrepared = false;
+        searchField = new TextField();
+        searchField.setPromptText("Search tasks");
+        // Build the search index in the background once the user heads for the search field,
+        // so the first keystroke does not wait for it and browsing alone keeps loading lazy
+        searchField.focusedProperty().addListener((obs, wasFocused, focused) -> {
+            if (focused && !searchPrepared) {
+                searchPrepared = true;
+                Thread indexer = new Thread(tasksController::prepareSearch, "search-indexer");
+                indexer.setDaemon(true);
+                indexer.start();
+            }
+        });
         tableView = new TableView<>(taskList);
+        tableView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        priorityFilter = new ComboBox<>();
+        priorityFilter.getItems().add(ANY_PRIORITY);
+        for (Task.Priority priority : Task.Priority.values()) {
+            priorityFilter.getItems().add(priority.name());
+        }
+        priorityFilter.setValue(ANY_PRIORITY);
+        statusFilter = new ComboBox<>();
+        statusFilter.getItems().setAll(ANY_STATUS, OPEN, OVERDUE, COMPLETED);
+        statusFilter.setValue(ANY_STATUS);
+        dueByFilter = new DatePicker();
+        dueByFilter.setPromptText("Due by");
+        groupFilter = new ComboBox<>();
+        targetGroup = new ComboBox<>();
+        targetGroup.setEditable(true);
+        targetGroup.setPromptText("Group");
+        refreshGroups();
+        searchField.textProperty().addListener((obs, oldValue, value) -> applyFilter());
+        priorityFilter.valueProperty().addListener((obs, oldValue, value) -> applyFilter());
+        statusFilter.valueProperty().addListener((obs, oldValue, value) -> applyFilter());
+        dueByFilter.valueProperty().addListener((obs, oldValue, value) -> applyFilter());
+        groupFilter.valueProperty().addListener((obs, oldValue, value) -> applyFilter());
         TableColumn<Task, Integer> idCol = new TableColumn<>("ID");
         idCol.setCellValueFactory(new PropertyValueFactory<>("id"));
         TableColumn<Task, String> descCol = new TableColumn<>("Description");
@@ -55,7 +135,10 @@ public class TaskManagerController {
         priorityCol.setCellValueFactory(new PropertyValueFactory<>("priority"));
         TableColumn<Task, java.time.LocalDate> dueDateCol = new TableColumn<>("Due Date");
         dueDateCol.setCellValueFactory(new PropertyValueFactory<>("dueDate"));
-        tableView.getColumns().addAll(idCol, descCol, completedCol, priorityCol, dueDateCol);
+        TableColumn<Task, String> groupsCol = new TableColumn<>("Groups");
+        groupsCol.setCellValueFactory(cell -> new ReadOnlyStringWrapper(
+                String.join(", ", user.getTaskGroups().getGroupsOf(cell.getValue().getId()))));
+        tableView.getColumns().addAll(idCol, descCol, completedCol, priorityCol, dueDateCol, groupsCol);
 
         TableColumn<Task, Void> completeCol = new TableColumn<>("Mark Completed");
         completeCol.setCellFactory(col -> new TableCell<Task, Void>() {
@@ -64,9 +147,11 @@ public class TaskManagerController {
                 btn.setOnAction(e -> {
                     Task task = getTableView().getItems().get(getIndex());
                     if (!task.isCompleted()) {
-                        task.markCompleted();
-                        tasksController.saveTasks();
-                        taskList.setAll(tasksController.getTasks().listAll());
+                        tasksController.completeTask(task);
+                        if (getTableView().getItems() != taskList) {
+                            // Filtered results are a plain list that does not see the change
+                            applyFilter();
+                        }
                     }
                 });
             }
@@ -96,9 +181,8 @@ public class TaskManagerController {
             Task.Priority priority = priorityBox.getValue();
             java.time.LocalDate dueDate = dueDatePicker.getValue();
             if (!desc.isEmpty() && dueDate != null) {
-                Task newTask = new Task(taskList.size() + 1, desc, priority, dueDate);
+                Task newTask = new Task(tasksController.newTaskId(), desc, priority, dueDate);
                 tasksController.addTask(newTask);
-                taskList.setAll(tasksController.getTasks().listAll());
                 descField.clear();
                 priorityBox.setValue(Task.Priority.MEDIUM);
                 dueDatePicker.setValue(null);
@@ -107,23 +191,150 @@ public class TaskManagerController {
 
         Button removeButton = new Button("Remove Selected");
         removeButton.setOnAction(e -> {
-            Task selected = tableView.getSelectionModel().getSelectedItem();
-            if (selected != null) {
-                tasksController.removeTask(selected);
-                taskList.setAll(tasksController.getTasks().listAll());
+            // Copied, as removing the tasks changes the selection
+            List<Task> selected = List.copyOf(tableView.getSelectionModel().getSelectedItems());
+            if (!selected.isEmpty()) {
+                // Also takes the tasks out of the user's groups
+                tasksController.removeTasks(selected);
+                if (tableView.getItems() != taskList) {
+                    tableView.getItems().removeAll(selected);
+                }
             }
         });
 
+        Button addToGroupButton = new Button("Add to Group");
+        addToGroupButton.setOnAction(e -> changeGroups((groups, ids, target) -> {
+            for (int id : ids) {
+                groups.add(target, id);
+            }
+        }));
+        Button moveToGroupButton = new Button("Move to Group");
+        moveToGroupButton.setOnAction(e -> changeGroups((groups, ids, target) -> {
+            // Moving takes the tasks out of the group being shown, or out of all their groups
+            String shown = shownGroup();
+            if (shown != null) {
+                groups.move(shown, target, ids);
+            } else {
+                for (int id : ids) {
+                    groups.removeFromAll(id);
+                    groups.add(target, id);
+                }
+            }
+        }));
+        Button removeFromGroupButton = new Button("Remove from Group");
+        removeFromGroupButton.setOnAction(e -> changeGroups((groups, ids, target) -> {
+            String shown = shownGroup();
+            for (int id : ids) {
+                groups.remove(shown != null ? shown : target, id);
+            }
+        }));
+
+        Button dashboardButton = new Button("Dashboard");
+        dashboardButton.setOnAction(e -> dashboard.show());
+
+        Button diagnosticsButton = new Button("Diagnostics");
+        diagnosticsButton.setOnAction(e -> diagnostics.show());
+
         Button exitButton = new Button("Exit");
         exitButton.setOnAction(e -> {
             // Go back to login screen
-            new LoginController(new UserManagementController()).show(primaryStage);
+            if (onExit != null) onExit.run();
         });
 
-        VBox vbox = new VBox(tableView, descField, priorityBox, dueDatePicker, addButton, removeButton, exitButton);
+        HBox filters = new HBox(searchField, priorityFilter, statusFilter, dueByFilter, groupFilter);
+        HBox groupActions = new HBox(targetGroup, addToGroupButton, moveToGroupButton, removeFromGroupButton);
+        VBox vbox = new VBox(filters, tableView, groupActions, descField, priorityBox, dueDatePicker, addButton, removeButton, dashboardButton, diagnosticsButton, exitButton);
         Scene scene = new Scene(vbox, 700, 450);
         primaryStage.setScene(scene);
         primaryStage.setTitle("Task Manager");
         primaryStage.show();
     }
+
+    /**
+     * Shows the tasks matching the search text and filters, or all tasks if none is set.
+     */
+    private void applyFilter() {
+        TaskQuery query = new TaskQuery().text(searchField.getText());
+        if (!ANY_PRIORITY.equals(priorityFilter.getValue())) {
+            query.priority(Task.Priority.valueOf(priorityFilter.getValue()));
+        }
+        java.time.LocalDate dueBy = dueByFilter.getValue();
+        if (OPEN.equals(statusFilter.getValue())) {
+            query.open();
+        } else if (OVERDUE.equals(statusFilter.getValue())) {
+            query.open();
+            java.time.LocalDate yesterday = java.time.LocalDate.now().minusDays(1);
+            dueBy = dueBy == null || dueBy.isAfter(yesterday) ? yesterday : dueBy;
+        } else if (COMPLETED.equals(statusFilter.getValue())) {
+            query.completed();
+        }
+        if (dueBy != null) {
+            query.dueBetween(null, dueBy).sortBy(TaskQuery.Sort.DUE_DATE);
+        }
+        if (shownGroup() != null) {
+            query.inGroup(user, shownGroup());
+        }
+        if (!query.hasCriteria()) {
+            tableView.setItems(taskList);
+            return;
+        }
+        MetricsEvents.TableRefresh event = MetricsEvents.TableRefresh.start("table.filter");
+        tableView.setItems(FXCollections.observableArrayList(tasksController.queryTasks(query.limit(SEARCH_LIMIT))));
+        event.finish(tableView.getItems().size());
+    }
+
+    /**
+     * A change to the user's groups, applied to the selected tasks.
+     */
+    private interface GroupChange {
+        void apply(TaskGroups groups, List<Integer> taskIds, String target);
+    }
+
+    /**
+     * Applies a change to the groups of the selected tasks, with the group named in the group box
+     * as the target, then saves the user and shows the new membership.
+     */
+    private void changeGroups(GroupChange change) {
+        String target = targetGroup.getEditor().getText().strip();
+        List<Task> selected = tableView.getSelectionModel().getSelectedItems();
+        if (target.isEmpty() || selected.isEmpty()) {
+            return;
+        }
+        List<Integer> ids = new ArrayList<>(selected.size());
+        for (Task task : selected) {
+            ids.add(task.getId());
+        }
+        change.apply(user.getTaskGroups(), ids, target);
+        userController.saveUsers();
+        refreshGroups();
+        if (shownGroup() != null) {
+            applyFilter();
+        } else {
+            tableView.refresh();
+        }
+    }
+
+    /**
+     * Fills the group boxes with the user's groups, keeping their current values.
+     */
+    private void refreshGroups() {
+        List<String> names = user.getTaskGroups().getNames();
+        names.sort(String.CASE_INSENSITIVE_ORDER);
+        String filter = groupFilter.getValue();
+        String target = targetGroup.getEditor().getText();
+        List<String> filterItems = new ArrayList<>(names);
+        filterItems.add(0, ALL_GROUPS);
+        groupFilter.getItems().setAll(filterItems);
+        groupFilter.setValue(filter != null && filterItems.contains(filter) ? filter : ALL_GROUPS);
+        targetGroup.getItems().setAll(names);
+        targetGroup.getEditor().setText(target);
+    }
+
+    /**
+     * Returns the group the table is filtered by, or null if it shows tasks of any group.
+     */
+    private String shownGroup() {
+        String group = groupFilter.getValue();
+        return group == null || ALL_GROUPS.equals(group) ? null : group;
+    }
 }
@@ -0,0 +1,270 @@
+package com.jobarbosa.gestortarefas;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Criteria for finding tasks, combined with AND: priorities, completion, due and end date ranges,
+ * description words, and membership of a user's group or a set of ids, plus a sort order and a limit.
+ * Criteria are set with chained calls, e.g.
+ * <pre>{@code
+ * new TaskQuery().priority(Task.Priority.HIGH).open().dueBetween(monday, sunday).sortBy(TaskQuery.Sort.DUE_DATE)
+ * }</pre>
+ * Queries are run by a {@link TaskQueryEngine}, which picks the index to start from.
+ * A query is not thread-safe while it is being built.
+ */
+public class TaskQuery {
+    /**
+     * Order of the results.
+     */
+    public enum Sort {
+        /** The order of the index the query starts from. */
+        NONE(null),
+        /** By id, ascending. */
+        ID(Comparator.comparingInt(Task::getId)),
+        /** By priority, highest first; tasks without a priority last. */
+        PRIORITY(Comparator.comparing(Task::getPriority, Comparator.nullsLast(Comparator.reverseOrder()))),
+        /** By due date, earliest first; tasks without a due date last. */
+        DUE_DATE(Comparator.comparing(Task::getDueDate, Comparator.nullsLast(Comparator.naturalOrder()))),
+        /** By end date, earliest first; tasks without an end date last. */
+        END_DATE(Comparator.comparing(Task::getEndDate, Comparator.nullsLast(Comparator.naturalOrder())));
+
+        private final Comparator<Task> comparator;
+
+        Sort(Comparator<Task> comparator) {
+            this.comparator = comparator;
+        }
+
+        Comparator<Task> comparator() { return comparator; }
+    }
+
+    /** Accepted priorities, or null for any. */
+    private Set<Task.Priority> priorities;
+    /** Required completion state, or null for any. */
+    private Boolean completed;
+    private LocalDate dueFrom;
+    private LocalDate dueTo;
+    private boolean dueRange;
+    private LocalDate endFrom;
+    private LocalDate endTo;
+    private boolean endRange;
+    /** Text as given, and its normalized words; null for any description. */
+    private String text;
+    private String[] terms;
+    /** Name and task ids of the group (name null for plain ids), or null for any task. */
+    private String groupName;
+    private Set<Integer> groupIds;
+    private Sort sort = Sort.NONE;
+    private int limit = Integer.MAX_VALUE;
+
+    /**
+     * Only matches tasks with one of the given priorities.
+     *
+     * @param accepted the accepted priorities
+     * @return this query
+     */
+    public TaskQuery priority(Task.Priority... accepted) {
+        priorities = accepted.length == 0 ? EnumSet.noneOf(Task.Priority.class) : EnumSet.of(accepted[0], accepted);
+        return this;
+    }
+
+    /**
+     * Only matches tasks that are not completed.
+     *
+     * @return this query
+     */
+    public TaskQuery open() {
+        completed = false;
+        return this;
+    }
+
+    /**
+     * Only matches completed tasks.
+     *
+     * @return this query
+     */
+    public TaskQuery completed() {
+        completed = true;
+        return this;
+    }
+
+    /**
+     * Only matches tasks with a due date in a range.
+     *
+     * @param from the first date (inclusive), or null for no lower bound
+     * @param to the last date (inclusive), or null for no upper bound
+     * @return this query
+     */
+    public TaskQuery dueBetween(LocalDate from, LocalDate to) {
+        dueFrom = from;
+        dueTo = to;
+        dueRange = true;
+        return this;
+    }
+
+    /**
+     * Only matches tasks with an end date in a range, i.e. completed in that range.
+     *
+     * @param from the first date (inclusive), or null for no lower bound
+     * @param to the last date (inclusive), or null for no upper bound
+     * @return this query
+     */
+    public TaskQuery endBetween(LocalDate from, LocalDate to) {
+        endFrom = from;
+        endTo = to;
+        endRange = true;
+        return this;
+    }
+
+    /**
+     * Only matches tasks whose description contains, for every word of the text, a word
+     * starting with it, ignoring case and accents. Blank text matches every task.
+     *
+     * @param text the text to look for
+     * @return this query
+     */
+    public TaskQuery text(String text) {
+        String[] words = TaskTextIndex.words(text);
+        this.text = words.length == 0 ? null : text.strip();
+        this.terms = words.length == 0 ? null : words;
+        return this;
+    }
+
+    /**
+     * Only matches tasks in a group of a user, as the group is when this method is called.
+     *
+     * @param user the user owning the group
+     * @param group the name of the group
+     * @return this query
+     */
+    public TaskQuery inGroup(User user, String group) {
+        groupName = group;
+        groupIds = new LinkedHashSet<>(user.getTaskIdsInGroup(group));
+        return this;
+    }
+
+    /**
+     * Only matches tasks with one of the given ids.
+     *
+     * @param ids the accepted ids
+     * @return this query
+     */
+    public TaskQuery ids(Collection<Integer> ids) {
+        groupName = null;
+        groupIds = new LinkedHashSet<>(ids);
+        return this;
+    }
+
+    /**
+     * Sets the order of the results.
+     *
+     * @param order the order
+     * @return this query
+     */
+    public TaskQuery sortBy(Sort order) {
+        sort = order;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of results.
+     *
+     * @param max the maximum number of results
+     * @return this query
+     */
+    public TaskQuery limit(int max) {
+        if (max < 0) throw new IllegalArgumentException("limit must not be negative");
+        limit = max;
+        return this;
+    }
+
+    /**
+     * Returns whether the query has any criteria, as opposed to listing every task.
+     *
+     * @return true if some criterion is set
+     */
+    public boolean hasCriteria() {
+        return !describeCriteria().isEmpty();
+    }
+
+    /**
+     * Checks every criterion against a task.
+     *
+     * @param task the task to check
+     * @return true if the task matches all criteria
+     */
+    public boolean matches(Task task) {
+        if (priorities != null && !priorities.contains(task.getPriority())) return false;
+        if (completed != null && task.isCompleted() != completed) return false;
+        if (dueRange && !inRange(task.getDueDate(), dueFrom, dueTo)) return false;
+        if (endRange && !inRange(task.getEndDate(), endFrom, endTo)) return false;
+        if (groupIds != null && !groupIds.contains(task.getId())) return false;
+        return terms == null || TaskTextIndex.matches(task.getDescription(), terms);
+    }
+
+    Set<Task.Priority> getPriorities() { return priorities; }
+
+    Boolean getCompleted() { return completed; }
+
+    boolean hasDueRange() { return dueRange; }
+
+    LocalDate getDueFrom() { return dueFrom; }
+
+    LocalDate getDueTo() { return dueTo; }
+
+    boolean hasEndRange() { return endRange; }
+
+    LocalDate getEndFrom() { return endFrom; }
+
+    LocalDate getEndTo() { return endTo; }
+
+    String getText() { return text; }
+
+    String getGroupName() { return groupName; }
+
+    Set<Integer> getGroupIds() { return groupIds; }
+
+    Sort getSort() { return sort; }
+
+    int getLimit() { return limit; }
+
+    /**
+     * Describes each criterion, e.g. {@code priority in [HIGH]}, for query plans.
+     */
+    List<String> describeCriteria() {
+        List<String> criteria = new ArrayList<>();
+        if (priorities != null) criteria.add("priority in " + priorities);
+        if (completed != null) criteria.add(completed ? "completed" : "open");
+        if (dueRange) criteria.add("due " + describeRange(dueFrom, dueTo));
+        if (endRange) criteria.add("ended " + describeRange(endFrom, endTo));
+        if (groupIds != null && groupName != null) criteria.add("in group \"" + groupName + "\" (" + groupIds.size() + " ids)");
+        if (groupIds != null && groupName == null) criteria.add("id in " + groupIds);
+        if (terms != null) criteria.add("text \"" + text + "\"");
+        return criteria;
+    }
+
+    @Override
+    public String toString() {
+        List<String> parts = describeCriteria();
+        if (sort != Sort.NONE) parts.add("sort by " + sort);
+        if (limit != Integer.MAX_VALUE) parts.add("limit " + limit);
+        return parts.isEmpty() ? "all tasks" : String.join(", ", parts);
+    }
+
+    private static boolean inRange(LocalDate date, LocalDate from, LocalDate to) {
+        return date != null && (from == null || !date.isBefore(from)) && (to == null || !date.isAfter(to));
+    }
+
+    private static String describeRange(LocalDate from, LocalDate to) {
+        if (from == null && to == null) return "on any date";
+        if (from == null) return "by " + to;
+        if (to == null) return "from " + from;
+        return "between " + from + " and " + to;
+    }
+}
@@ -0,0 +1,258 @@
+package com.jobarbosa.gestortarefas;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Runs {@link TaskQuery} queries over a Tasks collection and its text index.
+ * <p>
+ * A simple planner counts the tasks each applicable index would yield for the query: the
+ * priority index, the set of completed tasks, the due date index of open tasks, the end date
+ * index, the text index, and the task ids of a group or id list, with a full scan as fallback. The query
+ * starts from the smallest candidate set; the other criteria are then checked on each candidate,
+ * which for the hash-based indexes amounts to intersecting the candidate set with theirs.
+ * Results are sorted unless the chosen index already yields them in the requested order, in which
+ * case the scan also stops at the limit. Indexes are read in place, not copied, and the text index
+ * is only considered once it is built. {@link #explain(TaskQuery)} shows the chosen plan.
+ */
+public class TaskQueryEngine {
+    private final Tasks tasks;
+    private final TaskTextIndex textIndex;
+
+    /**
+     * Constructs an engine over a collection and a text index of the same collection.
+     *
+     * @param tasks the collection to query
+     * @param textIndex the text index of the collection
+     */
+    public TaskQueryEngine(Tasks tasks, TaskTextIndex textIndex) {
+        this.tasks = tasks;
+        this.textIndex = textIndex;
+    }
+
+    /**
+     * Plan chosen for a query: where the candidates come from, how many are expected, and the
+     * estimated cost of checking and sorting them.
+     */
+    public static final class Plan {
+        private final TaskQuery query;
+        private final AccessPath access;
+        private final List<AccessPath> considered;
+
+        private Plan(TaskQuery query, AccessPath access, List<AccessPath> considered) {
+            this.query = query;
+            this.access = access;
+            this.considered = considered;
+        }
+
+        /**
+         * Returns the name of the index the query starts from, e.g. {@code priority index}.
+         *
+         * @return the access path name
+         */
+        public String getAccessPath() { return access.name; }
+
+        /**
+         * Returns the number of candidate tasks the access path yields.
+         *
+         * @return the estimated number of rows read
+         */
+        public long getEstimatedRows() { return access.rows; }
+
+        /**
+         * Returns whether the results are sorted after filtering, as opposed to being read in order.
+         *
+         * @return true if a sort step is needed
+         */
+        public boolean needsSort() {
+            return query.getSort() != TaskQuery.Sort.NONE && query.getSort() != access.order;
+        }
+
+        /**
+         * Returns the estimated cost: one unit per candidate read and checked, plus n log n
+         * for sorting the matches if needed.
+         *
+         * @return the estimated cost
+         */
+        public long getEstimatedCost() {
+            long rows = access.rows;
+            // Without a sort step the scan may stop early at the limit, so this is an upper bound
+            return needsSort() ? rows + rows * (64 - Long.numberOfLeadingZeros(rows)) : rows;
+        }
+
+        /**
+         * Describes the plan on a few lines, e.g.
+         * <pre>
+         * query: priority in [HIGH], open, due by 2026-10-18, sort by DUE_DATE
+         * access: open due date index by 2026-10-18 (~120 rows)
+         * filter: priority in [HIGH], open, due by 2026-10-18
+         * order: from index
+         * cost: ~120
+         * considered: full scan 100000, priority index 33412, open due date index 120
+         * </pre>
+         */
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append("query: ").append(query).append('\n');
+            text.append("access: ").append(access.name);
+            if (access.detail != null) {
+                text.append(' ').append(access.detail);
+            }
+            text.append(" (~").append(access.rows).append(" rows)\n");
+            List<String> criteria = query.describeCriteria();
+            text.append("filter: ").append(criteria.isEmpty() ? "none" : String.join(", ", criteria)).append('\n');
+            if (query.getSort() != TaskQuery.Sort.NONE) {
+                text.append("order: ").append(needsSort() ? "sort by " + query.getSort() : "from index").append('\n');
+            }
+            if (query.getLimit() != Integer.MAX_VALUE) {
+                text.append("limit: ").append(query.getLimit()).append(needsSort() ? " after sorting" : " (stops early)").append('\n');
+            }
+            text.append("cost: ~").append(getEstimatedCost()).append('\n');
+            text.append("considered:");
+            for (int i = 0; i < considered.size(); i++) {
+                text.append(i == 0 ? " " : ", ").append(considered.get(i).name).append(' ').append(considered.get(i).rows);
+            }
+            return text.toString();
+        }
+    }
+
+    /**
+     * One way of getting candidate tasks for a query.
+     */
+    private static final class AccessPath {
+        final String name;
+        final String detail;
+        final long rows;
+        /** Order in which the candidates come, or NONE. */
+        final TaskQuery.Sort order;
+        /** Passes the candidates to an action until it returns false, without copying the index. */
+        final Consumer<Predicate<Task>> candidates;
+
+        AccessPath(String name, String detail, long rows, TaskQuery.Sort order, Consumer<Predicate<Task>> candidates) {
+            this.name = name;
+            this.detail = detail;
+            this.rows = rows;
+            this.order = order;
+            this.candidates = candidates;
+        }
+    }
+
+    /**
+     * Runs a query.
+     *
+     * @param query the query to run
+     * @return the matching tasks, in the requested order, at most the query's limit
+     */
+    public List<Task> execute(TaskQuery query) {
+        MetricsEvents.Query event = MetricsEvents.Query.start("tasks.query");
+        Plan plan = plan(query);
+        int limit = query.getLimit();
+        List<Task> result = new ArrayList<>();
+        boolean stopEarly = !plan.needsSort();
+        plan.access.candidates.accept(task -> {
+            if (stopEarly && result.size() >= limit) {
+                return false;
+            }
+            if (query.matches(task)) {
+                result.add(task);
+            }
+            return true;
+        });
+        if (plan.needsSort()) {
+            result.sort(query.getSort().comparator());
+            if (result.size() > limit) {
+                result.subList(limit, result.size()).clear();
+            }
+        }
+        event.finish(result.size());
+        return result;
+    }
+
+    /**
+     * Chooses how to run a query without running it.
+     *
+     * @param query the query to plan
+     * @return the chosen plan
+     */
+    public Plan plan(TaskQuery query) {
+        List<AccessPath> paths = new ArrayList<>();
+        paths.add(new AccessPath("full scan", null, tasks.size(), TaskQuery.Sort.NONE,
+                action -> visit(tasks.listAll(), action)));
+        if (query.getPriorities() != null) {
+            paths.add(new AccessPath("priority index", String.valueOf(query.getPriorities()),
+                    tasks.countWithPriority(query.getPriorities()), TaskQuery.Sort.NONE,
+                    action -> tasks.forEachWithPriority(query.getPriorities(), action)));
+        }
+        if (Boolean.TRUE.equals(query.getCompleted())) {
+            paths.add(new AccessPath("completed set", null, tasks.countCompleted(), TaskQuery.Sort.NONE,
+                    tasks::forEachCompleted));
+        }
+        if (Boolean.FALSE.equals(query.getCompleted()) && query.hasDueRange()) {
+            LocalDate from = query.getDueFrom();
+            LocalDate to = query.getDueTo();
+            paths.add(new AccessPath("open due date index", describe(from, to), tasks.countOpenDueBetween(from, to),
+                    TaskQuery.Sort.DUE_DATE, action -> tasks.forEachOpenDueBetween(from, to, action)));
+        }
+        if (query.hasEndRange() && !Boolean.FALSE.equals(query.getCompleted())) {
+            LocalDate from = query.getEndFrom() != null ? query.getEndFrom() : LocalDate.MIN;
+            LocalDate to = query.getEndTo() != null ? query.getEndTo() : LocalDate.MAX;
+            paths.add(new AccessPath("end date index", describe(query.getEndFrom(), query.getEndTo()),
+                    tasks.countCompletedBetween(from, to), TaskQuery.Sort.END_DATE,
+                    action -> tasks.forEachCompletedBetween(from, to, action)));
+        }
+        if (query.getGroupIds() != null) {
+            String name = query.getGroupName() != null ? "group ids" : "id lookup";
+            paths.add(new AccessPath(name, null, query.getGroupIds().size(), TaskQuery.Sort.NONE, action -> {
+                for (int id : query.getGroupIds()) {
+                    Task task = tasks.findById(id).orElse(null);
+                    if (task != null && !action.test(task)) {
+                        break;
+                    }
+                }
+            }));
+        }
+        // An index that is not built yet would be built right here, possibly on the FX thread,
+        // so until it is ready, queries on text use another index or a scan
+        if (query.getText() != null && textIndex.isReady()) {
+            paths.add(new AccessPath("text index", "\"" + query.getText() + "\"", textIndex.estimate(query.getText()),
+                    TaskQuery.Sort.NONE, action -> visit(textIndex.search(query.getText(), Integer.MAX_VALUE), action)));
+        }
+        AccessPath best = paths.get(0);
+        for (AccessPath path : paths) {
+            // On a tie, prefer the path that yields the requested order
+            if (path.rows < best.rows || path.rows == best.rows && path.order == query.getSort() && best.order != query.getSort()) {
+                best = path;
+            }
+        }
+        return new Plan(query, best, paths);
+    }
+
+    /**
+     * Describes the plan chosen for a query, see {@link Plan#toString()}.
+     *
+     * @param query the query to plan
+     * @return the plan description
+     */
+    public String explain(TaskQuery query) {
+        return plan(query).toString();
+    }
+
+    private static void visit(List<Task> candidates, Predicate<Task> action) {
+        for (Task task : candidates) {
+            if (!action.test(task)) {
+                break;
+            }
+        }
+    }
+
+    private static String describe(LocalDate from, LocalDate to) {
+        if (from == null && to == null) return "(all dates)";
+        if (from == null) return "by " + to;
+        if (to == null) return "from " + from;
+        return from + ".." + to;
+    }
+}
@@ -0,0 +1,313 @@
+package com.jobarbosa.gestortarefas;
+
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Counters over a {@link Tasks} collection for the dashboard: tasks per priority, open and
+ * completed tasks, open tasks that are overdue, due today, or due this week, and completions
+ * per day.
+ * <p>
+ * The counters are updated from the collection's listener events, so reading them takes constant
+ * time. The counted fields of each task are remembered, so a change only moves the task between
+ * counters. Date-dependent counters are recomputed once from a per-day histogram of open tasks
+ * when the date changes, so they stay correct past midnight. After the collection is reset
+ * (e.g. loaded from a file), the counters are rebuilt on the next read, so loading stays lazy.
+ * <p>
+ * The statistics are thread-safe; all state is guarded by this.
+ */
+public class TaskStatistics implements Tasks.Listener {
+    private static final Task.Priority[] PRIORITIES = Task.Priority.values();
+
+    private final Tasks tasks;
+    private final Clock clock;
+    /** Counted fields of each task, by task instance. */
+    private final Map<Task, Counted> counted = new HashMap<>();
+    private final int[] byPriority = new int[PRIORITIES.length];
+    private int withoutPriority;
+    private int completed;
+    /** Number of open tasks by due date. */
+    private final NavigableMap<LocalDate, Integer> openByDueDate = new TreeMap<>();
+    /** Number of completed tasks by end date. */
+    private final Map<LocalDate, Integer> completionsByDay = new HashMap<>();
+    /** Date the date-dependent counters refer to, or null before the first read. */
+    private LocalDate today;
+    /** Last day of the current week (Sunday). */
+    private LocalDate endOfWeek;
+    private int overdue;
+    private int dueToday;
+    private int dueThisWeek;
+    /** Whether the counters must be rebuilt from the collection before the next read. */
+    private boolean stale = true;
+
+    /**
+     * Field values of a task as last counted.
+     */
+    private static final class Counted {
+        final Task.Priority priority;
+        final boolean completed;
+        final LocalDate dueDate;
+        final LocalDate endDate;
+
+        Counted(Task task) {
+            this.priority = task.getPriority();
+            this.completed = task.isCompleted();
+            this.dueDate = task.getDueDate();
+            this.endDate = task.getEndDate();
+        }
+
+        boolean sameAs(Counted other) {
+            return priority == other.priority && completed == other.completed
+                    && Objects.equals(dueDate, other.dueDate) && Objects.equals(endDate, other.endDate);
+        }
+    }
+
+    /**
+     * Constructs statistics over a collection, using the system clock, and registers them as a listener.
+     *
+     * @param tasks the collection to count
+     */
+    public TaskStatistics(Tasks tasks) {
+        this(tasks, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Constructs statistics over a collection and registers them as a listener.
+     *
+     * @param tasks the collection to count
+     * @param clock the clock that tells today's date
+     */
+    public TaskStatistics(Tasks tasks, Clock clock) {
+        this.tasks = tasks;
+        this.clock = clock;
+        tasks.addListener(this);
+    }
+
+    /**
+     * Returns the number of tasks with a priority.
+     *
+     * @param priority the priority, or null for tasks without one
+     * @return the number of tasks
+     */
+    public synchronized int getCount(Task.Priority priority) {
+        ensureCurrent();
+        return priority == null ? withoutPriority : byPriority[priority.ordinal()];
+    }
+
+    /**
+     * Returns the number of tasks that are not completed.
+     *
+     * @return the number of open tasks
+     */
+    public synchronized int getOpenCount() {
+        ensureCurrent();
+        return counted.size() - completed;
+    }
+
+    /**
+     * Returns the number of completed tasks.
+     *
+     * @return the number of completed tasks
+     */
+    public synchronized int getCompletedCount() {
+        ensureCurrent();
+        return completed;
+    }
+
+    /**
+     * Returns the number of open tasks whose due date has passed.
+     *
+     * @return the number of overdue tasks
+     */
+    public synchronized int getOverdueCount() {
+        ensureCurrent();
+        return overdue;
+    }
+
+    /**
+     * Returns the number of open tasks due today.
+     *
+     * @return the number of tasks due today
+     */
+    public synchronized int getDueTodayCount() {
+        ensureCurrent();
+        return dueToday;
+    }
+
+    /**
+     * Returns the number of open tasks due from today to the end of the week (Sunday).
+     *
+     * @return the number of tasks due this week, including today
+     */
+    public synchronized int getDueThisWeekCount() {
+        ensureCurrent();
+        return dueThisWeek;
+    }
+
+    /**
+     * Returns the number of tasks completed on a day, by end date.
+     *
+     * @param day the day
+     * @return the number of completions
+     */
+    public synchronized int getCompletionsOn(LocalDate day) {
+        ensureCurrent();
+        return completionsByDay.getOrDefault(day, 0);
+    }
+
+    /**
+     * Returns the number of tasks completed on each day of a range, by end date.
+     *
+     * @param from the first day (inclusive)
+     * @param to the last day (inclusive)
+     * @return the number of completions by day, for every day of the range in order
+     */
+    public synchronized Map<LocalDate, Integer> getCompletionsPerDay(LocalDate from, LocalDate to) {
+        ensureCurrent();
+        Map<LocalDate, Integer> perDay = new LinkedHashMap<>();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            perDay.put(day, completionsByDay.getOrDefault(day, 0));
+        }
+        return perDay;
+    }
+
+    @Override
+    public void taskAdded(int index, Task task) {
+        tasksAdded(index, List.of(task));
+    }
+
+    @Override
+    public synchronized void tasksAdded(int index, List<Task> added) {
+        if (stale) {
+            return;
+        }
+        for (Task task : added) {
+            // Events from different threads may arrive out of order; skip tasks already removed again
+            if (!counted.containsKey(task) && tasks.findById(task.getId()).orElse(null) == task) {
+                count(task);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void taskRemoved(int index, Task task) {
+        Counted previous = counted.remove(task);
+        if (previous != null) {
+            apply(previous, -1);
+        }
+    }
+
+    @Override
+    public synchronized void taskUpdated(int index, Task task) {
+        Counted previous = counted.get(task);
+        if (previous == null) {
+            return;
+        }
+        Counted current = new Counted(task);
+        if (!current.sameAs(previous)) {
+            apply(previous, -1);
+            apply(current, 1);
+            counted.put(task, current);
+        }
+    }
+
+    @Override
+    public synchronized void tasksReset() {
+        stale = true;
+        clearCounters();
+    }
+
+    /**
+     * Rebuilds the counters if the collection was reset, and moves the date-dependent counters
+     * to today if the date changed since the last read. Requires the lock.
+     */
+    private void ensureCurrent() {
+        LocalDate now = LocalDate.now(clock);
+        if (stale) {
+            // Events received while stale were ignored, so start over from the collection
+            clearCounters();
+            setToday(now);
+            for (Task task : tasks.listAll()) {
+                count(task);
+            }
+            stale = false;
+        } else if (!now.equals(today)) {
+            setToday(now);
+            overdue = sum(openByDueDate.headMap(today, false));
+            dueToday = openByDueDate.getOrDefault(today, 0);
+            dueThisWeek = sum(openByDueDate.subMap(today, true, endOfWeek, true));
+        }
+    }
+
+    private void setToday(LocalDate now) {
+        today = now;
+        endOfWeek = now.with(TemporalAdjusters.nextOrSame(DayOfWeek.SUNDAY));
+    }
+
+    private void count(Task task) {
+        Counted current = new Counted(task);
+        counted.put(task, current);
+        apply(current, 1);
+    }
+
+    /**
+     * Adds ({@code sign} 1) or removes ({@code sign} -1) a task's fields from the counters. Requires the lock.
+     */
+    private void apply(Counted task, int sign) {
+        if (task.priority == null) {
+            withoutPriority += sign;
+        } else {
+            byPriority[task.priority.ordinal()] += sign;
+        }
+        if (task.completed) {
+            completed += sign;
+            if (task.endDate != null) {
+                add(completionsByDay, task.endDate, sign);
+            }
+        } else if (task.dueDate != null) {
+            add(openByDueDate, task.dueDate, sign);
+            if (task.dueDate.isBefore(today)) {
+                overdue += sign;
+            } else if (!task.dueDate.isAfter(endOfWeek)) {
+                dueThisWeek += sign;
+                if (task.dueDate.equals(today)) {
+                    dueToday += sign;
+                }
+            }
+        }
+    }
+
+    private void clearCounters() {
+        counted.clear();
+        Arrays.fill(byPriority, 0);
+        withoutPriority = 0;
+        completed = 0;
+        openByDueDate.clear();
+        completionsByDay.clear();
+        overdue = 0;
+        dueToday = 0;
+        dueThisWeek = 0;
+    }
+
+    private static void add(Map<LocalDate, Integer> counts, LocalDate day, int delta) {
+        counts.merge(day, delta, (a, b) -> a + b == 0 ? null : a + b);
+    }
+
+    private static int sum(Map<LocalDate, Integer> counts) {
+        int sum = 0;
+        for (int count : counts.values()) {
+            sum += count;
+        }
+        return sum;
+    }
+}
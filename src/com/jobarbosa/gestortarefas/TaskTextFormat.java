@@ -0,0 +1,347 @@
+package com.jobarbosa.gestortarefas;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Line-based text formats used to import and export tasks: CSV with a header row, and
+ * JSON Lines with one flat object per task. Both carry the fields {@code id},
+ * {@code description}, {@code priority}, {@code dueDate}, {@code completed} and
+ * {@code endDate}; dates are ISO-8601 ({@code yyyy-MM-dd}) and missing values are empty or null.
+ * <p>
+ * JSON Lines records are single lines. CSV values are quoted as in RFC 4180, so a description
+ * with line breaks spans several lines inside its quotes; {@link #isComplete(String)} tells a
+ * reader reading one line at a time when a record continues on the next line.
+ */
+public enum TaskTextFormat {
+    CSV {
+        @Override
+        public String header() { return String.join(",", FIELDS); }
+
+        @Override
+        public String encode(Task task) {
+            StringBuilder line = new StringBuilder();
+            String[] values = fieldValues(task);
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) line.append(',');
+                if (values[i] != null) appendCsv(line, values[i]);
+            }
+            return line.toString();
+        }
+
+        @Override
+        public boolean isComplete(String record) {
+            // Doubled quotes inside a value count twice, so an odd count means a value is still open
+            int quotes = 0;
+            for (int i = 0; i < record.length(); i++) {
+                if (record.charAt(i) == '"') quotes++;
+            }
+            return quotes % 2 == 0;
+        }
+
+        @Override
+        public Map<String, String> decode(String line, List<String> columns) {
+            List<String> values = splitCsv(line);
+            if (values.size() != columns.size()) {
+                throw new IllegalArgumentException("expected " + columns.size() + " columns, found " + values.size());
+            }
+            Map<String, String> fields = new HashMap<>();
+            for (int i = 0; i < values.size(); i++) {
+                String value = values.get(i);
+                fields.put(columns.get(i), value.isEmpty() ? null : value);
+            }
+            return fields;
+        }
+    },
+    JSON_LINES {
+        @Override
+        public String header() { return null; }
+
+        @Override
+        public String encode(Task task) {
+            StringBuilder line = new StringBuilder("{");
+            String[] values = fieldValues(task);
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) line.append(',');
+                line.append('"').append(FIELDS[i]).append("\":");
+                if (values[i] == null) {
+                    line.append("null");
+                } else if (i == 0 || i == 4) {
+                    // id and completed are written as JSON number and boolean
+                    line.append(values[i]);
+                } else {
+                    appendJsonString(line, values[i]);
+                }
+            }
+            return line.append('}').toString();
+        }
+
+        @Override
+        public Map<String, String> decode(String line, List<String> columns) {
+            return new JsonObjectParser(line).parse();
+        }
+    };
+
+    /** Field names, in the order they are written. */
+    private static final String[] FIELDS = {"id", "description", "priority", "dueDate", "completed", "endDate"};
+
+    /**
+     * Returns the header line to write before the first record, or null if the format has none.
+     *
+     * @return the header line, or null
+     */
+    public abstract String header();
+
+    /**
+     * Encodes a task as one record, without the final line terminator.
+     *
+     * @param task the task to encode
+     * @return the encoded line
+     */
+    public abstract String encode(Task task);
+
+    /**
+     * Returns whether the lines read so far form a whole record, or whether the record continues
+     * on the next line, e.g. inside a quoted CSV value with a line break.
+     *
+     * @param record the lines read so far, joined with {@code \n}
+     * @return true if the record is complete
+     */
+    public boolean isComplete(String record) {
+        return true;
+    }
+
+    /**
+     * Decodes one record into field values by field name. Absent or empty values map to null.
+     *
+     * @param line the record to decode, which may span several lines, see {@link #isComplete(String)}
+     * @param columns field names from the header line, for formats that have one
+     * @return the field values
+     * @throws IllegalArgumentException if the line is malformed
+     */
+    public abstract Map<String, String> decode(String line, List<String> columns);
+
+    /**
+     * Parses a header line into field names. Names are trimmed; they keep their case.
+     *
+     * @param line the header line
+     * @return the field names
+     */
+    public List<String> columns(String line) {
+        List<String> columns = new ArrayList<>();
+        for (String column : splitCsv(line)) {
+            columns.add(column.trim());
+        }
+        return columns;
+    }
+
+    /**
+     * Picks the format from a file name: {@code .csv} for CSV, {@code .jsonl} or {@code .ndjson} for JSON Lines.
+     *
+     * @param filename the file name
+     * @return the format
+     * @throws IllegalArgumentException if the extension is not recognized
+     */
+    public static TaskTextFormat forFile(String filename) {
+        String name = filename.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".csv")) return CSV;
+        if (name.endsWith(".jsonl") || name.endsWith(".ndjson")) return JSON_LINES;
+        throw new IllegalArgumentException("unknown task file format: " + filename);
+    }
+
+    private static String[] fieldValues(Task task) {
+        return new String[] {
+                Integer.toString(task.getId()),
+                task.getDescription(),
+                task.getPriority() != null ? task.getPriority().name() : null,
+                task.getDueDate() != null ? task.getDueDate().toString() : null,
+                Boolean.toString(task.isCompleted()),
+                task.getEndDate() != null ? task.getEndDate().toString() : null
+        };
+    }
+
+    private static void appendCsv(StringBuilder line, String value) {
+        boolean quote = value.isEmpty() || value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!quote) {
+            line.append(value);
+            return;
+        }
+        // Line breaks are kept inside the quotes, as in RFC 4180
+        line.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    /**
+     * Splits a CSV line into values. Quoted values may contain commas and doubled quotes.
+     */
+    private static List<String> splitCsv(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        if (quoted) throw new IllegalArgumentException("unterminated quoted value");
+        values.add(value.toString());
+        return values;
+    }
+
+    /**
+     * Appends a value as a quoted JSON string.
+     */
+    static void appendJsonString(StringBuilder line, String value) {
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> line.append("\\\"");
+                case '\\' -> line.append("\\\\");
+                case '\n' -> line.append("\\n");
+                case '\r' -> line.append("\\r");
+                case '\t' -> line.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        line.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        line.append(c);
+                    }
+                }
+            }
+        }
+        line.append('"');
+    }
+
+    /**
+     * Parser for a single flat JSON object whose values are strings, numbers, booleans or null.
+     * Numbers and booleans are returned as their literal text.
+     */
+    private static final class JsonObjectParser {
+        private final String text;
+        private int position;
+
+        JsonObjectParser(String text) {
+            this.text = text;
+        }
+
+        Map<String, String> parse() {
+            Map<String, String> fields = new HashMap<>();
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                position++;
+            } else {
+                do {
+                    skipWhitespace();
+                    String name = string();
+                    expect(':');
+                    fields.put(name, value());
+                    skipWhitespace();
+                } while (consume(','));
+                expect('}');
+            }
+            skipWhitespace();
+            if (position < text.length()) throw error("unexpected text after object");
+            return fields;
+        }
+
+        private String value() {
+            skipWhitespace();
+            char c = peek();
+            if (c == '"') {
+                return string();
+            }
+            if (c == '{' || c == '[') throw error("nested values are not supported");
+            int start = position;
+            while (position < text.length() && ",} \t".indexOf(text.charAt(position)) < 0) {
+                position++;
+            }
+            String literal = text.substring(start, position);
+            if (literal.isEmpty()) throw error("missing value");
+            return literal.equals("null") ? null : literal;
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                if (position >= text.length()) throw error("unterminated string");
+                char c = text.charAt(position++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (position >= text.length()) throw error("unterminated string");
+                char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case '"', '\\', '/' -> value.append(escaped);
+                    case 'b' -> value.append('\b');
+                    case 'f' -> value.append('\f');
+                    case 'n' -> value.append('\n');
+                    case 'r' -> value.append('\r');
+                    case 't' -> value.append('\t');
+                    case 'u' -> {
+                        if (position + 4 > text.length()) throw error("invalid unicode escape");
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("invalid unicode escape");
+                        }
+                        position += 4;
+                    }
+                    default -> throw error("invalid escape");
+                }
+            }
+        }
+
+        private void expect(char c) {
+            skipWhitespace();
+            if (!consume(c)) throw error("expected '" + c + "'");
+        }
+
+        private boolean consume(char c) {
+            if (position < text.length() && text.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private char peek() {
+            if (position >= text.length()) throw error("unexpected end of line");
+            return text.charAt(position);
+        }
+
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at column " + (position + 1));
+        }
+    }
+}
@@ -0,0 +1,430 @@
+package com.jobarbosa.gestortarefas;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.regex.Pattern;
+
+/**
+ * Inverted index over the descriptions of a {@link Tasks} collection, for search as you type.
+ * <p>
+ * Descriptions are split into words; words are lower-cased and stripped of diacritics, so
+ * "Orçamento" is found by "orcam". A query matches a task when every query word is a prefix
+ * of some word of its description. The index is kept up to date from the collection's
+ * listener events. After the collection is reset (e.g. loaded from a file) the index is
+ * rebuilt by {@link #prepare()}, so loading stays lazy; until then, searches scan the collection.
+ * <p>
+ * The index is thread-safe: searches share the read lock of a {@link StampedLock}, updates take the write lock.
+ * A rebuild reads the collection in chunks into new maps without holding the lock, and only takes
+ * the write lock to swap them in, so searches and updates never wait for it.
+ */
+public class TaskTextIndex implements Tasks.Listener {
+    /** Combining marks left over after decomposing accented letters. */
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    /** Separators between words. */
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    /** Number of tasks read from the collection at a time while building the index. */
+    private static final int BUILD_CHUNK_SIZE = 1024;
+
+    private final Tasks tasks;
+    /** Tasks by word, sorted so that all words with a given prefix form one range. */
+    private NavigableMap<String, Set<Task>> postings = new TreeMap<>();
+    /** Words of each indexed task, needed to unindex it after its description changed. */
+    private Map<Task, String[]> wordsByTask = new HashMap<>();
+    private final StampedLock lock = new StampedLock();
+    /** Whether the index must be rebuilt from the collection before it can be searched. */
+    private volatile boolean stale = true;
+    /** Number of resets of the collection, so a build can tell it read an outdated collection. */
+    private long resets;
+    /** Tasks added, removed, or changed while a build is running, or null if none is. */
+    private Set<Task> touched;
+    /** Whether a task was removed while a build is running, shifting the positions it reads. */
+    private boolean removedDuringBuild;
+    /** Lets one build run at a time. */
+    private final Object buildLock = new Object();
+
+    /**
+     * Constructs an index over a collection and registers it as a listener.
+     *
+     * @param tasks the collection to index
+     */
+    public TaskTextIndex(Tasks tasks) {
+        this.tasks = tasks;
+        tasks.addListener(this);
+    }
+
+    /**
+     * Splits text into normalized words: lower case, without diacritics, without punctuation.
+     *
+     * @param text the text to split, may be null
+     * @return the distinct words, in order of first appearance
+     */
+    public static String[] words(String text) {
+        if (text == null || text.isEmpty()) {
+            return new String[0];
+        }
+        String normalized = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        Set<String> words = new LinkedHashSet<>();
+        for (String word : SEPARATORS.split(normalized.toLowerCase(Locale.ROOT))) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words.toArray(new String[0]);
+    }
+
+    /**
+     * Finds tasks whose description contains, for every word of the query, a word starting with it.
+     * Only the postings of the most selective query word are walked. While the index is not built
+     * (see {@link #prepare()}), the collection is scanned instead, so a search never waits for a build.
+     *
+     * @param query the text typed by the user
+     * @param limit maximum number of tasks to return
+     * @return the matching tasks, at most {@code limit}
+     */
+    public List<Task> search(String query, int limit) {
+        String[] terms = words(query);
+        if (terms.length == 0 || limit <= 0) {
+            return new ArrayList<>();
+        }
+        MetricsEvents.Query event = MetricsEvents.Query.start("tasks.search");
+        List<Task> found = find(terms, limit);
+        if (found == null) {
+            found = scan(terms, limit);
+        }
+        event.finish(found.size());
+        return found;
+    }
+
+    /**
+     * Returns whether the index is built, so that searches and estimates do not have to build it first.
+     *
+     * @return true if the index is up to date with the collection
+     */
+    public boolean isReady() {
+        return !stale;
+    }
+
+    /**
+     * Returns an upper bound of the number of tasks matching a query: the number of postings
+     * of its most selective word. Never builds the index: until it is built (see {@link #isReady()}),
+     * the index is not selective at all.
+     *
+     * @param query the search text
+     * @return the estimated number of matches, 0 if the query has no words, or
+     *         {@code Long.MAX_VALUE} if the index is not built
+     */
+    public long estimate(String query) {
+        String[] terms = words(query);
+        if (terms.length == 0) {
+            return 0;
+        }
+        long stamp = lock.readLock();
+        try {
+            if (stale) {
+                return Long.MAX_VALUE;
+            }
+            long fewest = Long.MAX_VALUE;
+            for (String term : terms) {
+                fewest = Math.min(fewest, countWithPrefix(term, fewest));
+            }
+            return fewest;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Checks whether a description matches query words the same way a search does.
+     *
+     * @param description the description to check, may be null
+     * @param terms normalized query words, as returned by {@link #words(String)}
+     * @return true if every term is a prefix of some word of the description
+     */
+    static boolean matches(String description, String[] terms) {
+        return matchesAll(words(description), terms);
+    }
+
+    /**
+     * Walks the postings of the most selective term, keeping tasks that match all terms.
+     *
+     * @return the matching tasks, or null if the index is not built
+     */
+    private List<Task> find(String[] terms, int limit) {
+        long stamp = lock.readLock();
+        try {
+            if (stale) {
+                return null;
+            }
+            NavigableMap<String, Set<Task>> candidates = null;
+            long fewest = Long.MAX_VALUE;
+            for (String term : terms) {
+                long count = countWithPrefix(term, fewest);
+                if (count < fewest) {
+                    fewest = count;
+                    candidates = withPrefix(term);
+                }
+            }
+            Set<Task> result = new LinkedHashSet<>();
+            for (Set<Task> posting : candidates.values()) {
+                for (Task task : posting) {
+                    if (matchesAll(wordsByTask.get(task), terms)) {
+                        result.add(task);
+                        if (result.size() == limit) {
+                            return new ArrayList<>(result);
+                        }
+                    }
+                }
+            }
+            return new ArrayList<>(result);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Scans the collection in chunks for tasks matching all terms, while the index is not built.
+     */
+    private List<Task> scan(String[] terms, int limit) {
+        List<Task> result = new ArrayList<>();
+        List<Task> chunk;
+        for (int from = 0; result.size() < limit && !(chunk = tasks.slice(from, BUILD_CHUNK_SIZE)).isEmpty();
+             from += chunk.size()) {
+            for (Task task : chunk) {
+                if (matches(task.getDescription(), terms) && result.size() < limit) {
+                    result.add(task);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Builds the index now if the collection was reset since the last build, e.g. on a
+     * background thread so that searches use the index as soon as possible. The collection is
+     * read in chunks, so a collection that is still mapped from its file is not loaded at once,
+     * and changes made meanwhile are applied to the new index before it is used.
+     */
+    public void prepare() {
+        if (!stale) {
+            return;
+        }
+        synchronized (buildLock) {
+            boolean inChunks = true;
+            while (stale) {
+                long started;
+                long stamp = lock.writeLock();
+                try {
+                    started = resets;
+                    touched = new HashSet<>();
+                    removedDuringBuild = false;
+                } finally {
+                    lock.unlockWrite(stamp);
+                }
+                NavigableMap<String, Set<Task>> builtPostings = new TreeMap<>();
+                Map<Task, String[]> builtWords = new HashMap<>();
+                if (inChunks) {
+                    List<Task> chunk;
+                    for (int from = 0; !(chunk = tasks.slice(from, BUILD_CHUNK_SIZE)).isEmpty(); from += chunk.size()) {
+                        for (Task task : chunk) {
+                            index(builtPostings, builtWords, task, words(task.getDescription()));
+                        }
+                    }
+                } else {
+                    // Removing a task loads the whole collection, so a snapshot costs nothing by now
+                    for (Task task : tasks.listAll()) {
+                        index(builtPostings, builtWords, task, words(task.getDescription()));
+                    }
+                }
+                stamp = lock.writeLock();
+                try {
+                    if (resets != started) {
+                        // The collection was replaced, e.g. by another user's tasks
+                        inChunks = true;
+                        continue;
+                    }
+                    if (removedDuringBuild) {
+                        // A removal shifted the positions being read, so tasks may have been skipped
+                        inChunks = false;
+                        continue;
+                    }
+                    postings = builtPostings;
+                    wordsByTask = builtWords;
+                    for (Task task : touched) {
+                        unindex(task);
+                        if (tasks.findById(task.getId()).orElse(null) == task) {
+                            index(task);
+                        }
+                    }
+                    touched = null;
+                    stale = false;
+                } finally {
+                    lock.unlockWrite(stamp);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void taskAdded(int index, Task task) {
+        tasksAdded(index, List.of(task));
+    }
+
+    @Override
+    public void tasksAdded(int index, List<Task> added) {
+        long stamp = lock.writeLock();
+        try {
+            if (touched != null) {
+                touched.addAll(added);
+            }
+            if (stale) {
+                return;
+            }
+            for (Task task : added) {
+                // Events from different threads may arrive out of order; skip tasks already removed again
+                if (!wordsByTask.containsKey(task) && tasks.findById(task.getId()).orElse(null) == task) {
+                    index(task);
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void taskRemoved(int index, Task task) {
+        long stamp = lock.writeLock();
+        try {
+            if (touched != null) {
+                touched.add(task);
+                removedDuringBuild = true;
+            }
+            unindex(task);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void taskUpdated(int index, Task task) {
+        long stamp = lock.writeLock();
+        try {
+            if (touched != null) {
+                touched.add(task);
+            }
+            String[] previous = wordsByTask.get(task);
+            if (previous == null) {
+                return;
+            }
+            String[] words = words(task.getDescription());
+            if (!Arrays.equals(previous, words)) {
+                unindex(task);
+                index(task, words);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void tasksReset() {
+        long stamp = lock.writeLock();
+        try {
+            stale = true;
+            resets++;
+            postings.clear();
+            wordsByTask.clear();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the postings of all words starting with the given prefix.
+     */
+    private NavigableMap<String, Set<Task>> withPrefix(String prefix) {
+        return postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    /**
+     * Counts the postings of all words starting with the given prefix, stopping once the count
+     * reaches {@code bound}. Requires the read lock.
+     */
+    private long countWithPrefix(String prefix, long bound) {
+        long count = 0;
+        for (Set<Task> posting : withPrefix(prefix).values()) {
+            count += posting.size();
+            if (count >= bound) break;
+        }
+        return count;
+    }
+
+    private static boolean matchesAll(String[] words, String[] terms) {
+        for (String term : terms) {
+            boolean found = false;
+            for (String word : words) {
+                if (word.startsWith(term)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void index(Task task) {
+        index(task, words(task.getDescription()));
+    }
+
+    /**
+     * Adds a task under each of its words. Requires the write lock.
+     */
+    private void index(Task task, String[] words) {
+        index(postings, wordsByTask, task, words);
+    }
+
+    /**
+     * Adds a task under each of its words to the given maps.
+     */
+    private static void index(NavigableMap<String, Set<Task>> postings, Map<Task, String[]> wordsByTask,
+                              Task task, String[] words) {
+        for (int i = 0; i < words.length; i++) {
+            // Share one String instance per distinct word between the postings and wordsByTask
+            String key = postings.ceilingKey(words[i]);
+            if (words[i].equals(key)) {
+                words[i] = key;
+            }
+            postings.computeIfAbsent(words[i], k -> new LinkedHashSet<>()).add(task);
+        }
+        wordsByTask.put(task, words);
+    }
+
+    /**
+     * Removes a task from the index. Requires the write lock.
+     */
+    private void unindex(Task task) {
+        String[] words = wordsByTask.remove(task);
+        if (words == null) {
+            return;
+        }
+        for (String word : words) {
+            Set<Task> posting = postings.get(word);
+            if (posting != null && posting.remove(task) && posting.isEmpty()) {
+                postings.remove(word);
+            }
+        }
+    }
+}
@@ -1,51 +1,351 @@
 package com.jobarbosa.gestortarefas;
 
 import java.io.*;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * Manages a collection of Task objects, providing methods to add, remove, and list tasks.
+ * Queries are answered from indexes that are kept up to date as tasks are added, removed, or changed.
+ * <p>
+ * When loaded from a binary task file with no pending journal, the file is only memory-mapped and
+ * tasks are materialized one by one through {@link #get(int)}. The first operation that needs every
+ * task (a query, a change, or a save) materializes the rest and builds the indexes. Lookups of
+ * single tasks and slices share the read lock while the snapshot is mapped; only that one-time
+ * switch to a fully loaded list takes the write lock.
+ * <p>
+ * Registered {@link Listener}s are told about every insertion, removal, and change, with the
+ * position of the affected task, so views can update exactly the affected row.
+ * <p>
+ * The collection is thread-safe. Its state is guarded by a {@link StampedLock}: queries share
+ * the read lock and run in parallel, while changes (including changes made through the setters
+ * of a task in the collection) take the write lock for the in-memory update only. File I/O and
+ * listener notifications happen outside the lock.
+ * <p>
+ * The list itself is a {@link PersistentSequence}: every change publishes a new version that
+ * shares most of its structure with the previous one. {@link #listAll()}, {@link #get(int)}, and
+ * {@link #size()} read the current version without locking, and snapshots cost O(1).
  */
-public class Tasks implements Serializable {
-    /** Internal list that stores the tasks. */
-    private final List<Task> list = new ArrayList<>();
+public class Tasks implements Serializable, Task.ChangeListener {
+    /** Current version of the list of tasks. Replaced, never modified, under the write lock. */
+    private volatile PersistentSequence<Task> list = PersistentSequence.empty();
+    /** Key of each task in the list, by task instance. */
+    private final Map<Task, Long> keys = new IdentityHashMap<>();
+    /** Key given to the next task appended to the list. */
+    private long nextKey;
+    /** Tasks by id. */
+    private final Map<Integer, Task> byId = new HashMap<>();
+    /** Source of ids for new tasks. */
+    private final IdSequence ids = new IdSequence();
+    /**
+     * Tasks grouped by priority, each group keyed by list key, so a group keeps the order of the
+     * list even when a task is re-indexed after an edit. Groups are never empty.
+     */
+    private final Map<Task.Priority, PersistentSequence<Task>> byPriority = new HashMap<>();
+    /** Completed tasks. */
+    private final Set<Task> completed = new LinkedHashSet<>();
+    /** Open tasks with a due date, sorted by due date. */
+    private final NavigableMap<LocalDate, Set<Task>> openByDueDate = new TreeMap<>();
+    /** Completed tasks with an end date, sorted by end date. */
+    private final NavigableMap<LocalDate, Set<Task>> completedByEndDate = new TreeMap<>();
+    /** Mapped snapshot whose tasks are not all materialized yet, or null once every task is in the list. */
+    private transient volatile MappedTaskFile unloaded;
+    /**
+     * Tasks already materialized from the mapped snapshot, by position. Rows are filled under the
+     * read lock by whichever reader gets there first, so each row is only ever set once.
+     */
+    private transient AtomicReferenceArray<Task> unloadedRows;
+    /** Listeners notified of changes to the collection. */
+    private final transient List<Listener> listeners = new CopyOnWriteArrayList<>();
+    /** Guards the list, the indexes, and the mapped snapshot. */
+    private final transient StampedLock lock = new StampedLock();
+    /** Incremented on every change to the collection or to a task in it. Written under the write lock. */
+    private transient volatile long version;
+
+    /**
+     * Listener notified of changes to a Tasks collection. Events are delivered on the thread
+     * that made the change, after the collection has been updated and the lock released.
+     * When several threads change the collection at once, their events may interleave.
+     */
+    public interface Listener {
+        /**
+         * Called after a task was inserted.
+         *
+         * @param index position of the new task
+         * @param task the new task
+         */
+        void taskAdded(int index, Task task);
+
+        /**
+         * Called after several tasks were inserted at once, e.g. by a bulk import.
+         *
+         * @param index position of the first new task
+         * @param tasks the new tasks, in order
+         */
+        void tasksAdded(int index, List<Task> tasks);
+
+        /**
+         * Called after a task was removed.
+         *
+         * @param index position the task had before it was removed
+         * @param task the removed task
+         */
+        void taskRemoved(int index, Task task);
+
+        /**
+         * Called after a field of a task changed.
+         *
+         * @param index position of the task
+         * @param task the changed task
+         */
+        void taskUpdated(int index, Task task);
+
+        /**
+         * Called after the whole collection was replaced, e.g. by loading from a file.
+         */
+        void tasksReset();
+    }
+
+    /**
+     * Registers a listener for changes to the collection.
+     *
+     * @param listener the listener to add
+     */
+    public void addListener(Listener listener) { listeners.add(listener); }
+
+    /**
+     * Unregisters a listener.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeListener(Listener listener) { listeners.remove(listener); }
 
     /**
      * Adds a task to the list.
      *
      * @param task the task to be added
+     * @throws IllegalArgumentException if another task already has the same id
      */
-    public void add(Task task) { list.add(task); }
+    public void add(Task task) {
+        int index;
+        long stamp = lock.writeLock();
+        try {
+            materialize();
+            if (byId.containsKey(task.getId())) throw new IllegalArgumentException("task id already exists");
+            index = list.size();
+            long key = register(task);
+            list = list.with(key, task);
+            index(task, key);
+            version++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        for (Listener listener : listeners) {
+            listener.taskAdded(index, task);
+        }
+    }
+
+    /**
+     * Adds several tasks to the end of the list as one change, notifying listeners once.
+     * Either all tasks are added or, if an id is already taken, none is.
+     *
+     * @param batch the tasks to be added
+     * @throws IllegalArgumentException if a task id already exists or appears twice in the batch
+     */
+    public void addAll(List<Task> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        int index;
+        long stamp = lock.writeLock();
+        try {
+            materialize();
+            Set<Integer> batchIds = new HashSet<>();
+            for (Task task : batch) {
+                if (byId.containsKey(task.getId()) || !batchIds.add(task.getId())) {
+                    throw new IllegalArgumentException("task id already exists");
+                }
+            }
+            index = list.size();
+            appendAll(batch);
+            version++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        List<Task> added = List.copyOf(batch);
+        for (Listener listener : listeners) {
+            listener.tasksAdded(index, added);
+        }
+    }
 
     /**
      * Removes a task from the list.
      *
      * @param task the task to be removed
+     * @return true if the task was in the list
+     */
+    public boolean remove(Task task) {
+        int index;
+        long stamp = lock.writeLock();
+        try {
+            materialize();
+            if (byId.get(task.getId()) != task) {
+                return false;
+            }
+            long key = keys.remove(task);
+            unindex(task, key);
+            index = list.indexOfKey(key);
+            list = list.without(key);
+            byId.remove(task.getId());
+            task.setListener(null);
+            version++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        for (Listener listener : listeners) {
+            listener.taskRemoved(index, task);
+        }
+        return true;
+    }
+
+    /**
+     * Returns a snapshot of all tasks. The snapshot is immutable and is not affected by later
+     * changes to the collection; once every task is materialized, taking one costs O(1).
+     *
+     * @return an unmodifiable list containing all tasks
+     */
+    public List<Task> listAll() {
+        MetricsEvents.Query event = MetricsEvents.Query.start("tasks.listAll");
+        List<Task> snapshot = snapshot();
+        event.finish(snapshot.size());
+        return snapshot;
+    }
+
+    /**
+     * Finds a task by id.
+     *
+     * @param id the task id to search for
+     * @return an Optional containing the task if found, or empty if not found
+     */
+    public Optional<Task> findById(int id) {
+        return read(() -> Optional.ofNullable(byId.get(id)));
+    }
+
+    /**
+     * Returns a number that changes whenever the collection or one of its tasks changes, e.g. to
+     * tell whether a result computed earlier is still current. Read it before reading the tasks.
+     *
+     * @return the current version
+     */
+    public long getVersion() { return version; }
+
+    /**
+     * Returns a new, unused task id.
+     *
+     * @return the new id
+     */
+    public int nextId() { return ids.next(); }
+
+    /**
+     * Returns the sequence used for new task ids, e.g. to persist it.
+     *
+     * @return the id sequence
+     */
+    public IdSequence getIdSequence() { return ids; }
+
+    /**
+     * Returns a copy of a range of the list, so callers can walk a large collection in
+     * bounded chunks. Like {@link #get(int)}, only the tasks in the range are materialized
+     * if they are still on disk. Changes made between two calls may shift positions.
+     *
+     * @param from position of the first task
+     * @param count maximum number of tasks to return
+     * @return the tasks from {@code from}, empty if {@code from} is past the end
+     */
+    public List<Task> slice(int from, int count) {
+        if (unloaded == null) {
+            PersistentSequence<Task> current = list;
+            int start = Math.min(from, current.size());
+            return new ArrayList<>(current.subList(start, Math.min(current.size(), start + count)));
+        }
+        long stamp = lock.readLock();
+        try {
+            int size = unloaded != null ? unloadedRows.length() : list.size();
+            int start = Math.min(from, size);
+            int end = Math.min(size, start + count);
+            if (unloaded == null) {
+                return new ArrayList<>(list.subList(start, end));
+            }
+            List<Task> slice = new ArrayList<>(end - start);
+            for (int i = start; i < end; i++) {
+                slice.add(unloadedRow(i));
+            }
+            return slice;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the number of tasks, without materializing tasks that are still on disk.
+     *
+     * @return the number of tasks
      */
-    public void remove(Task task) { list.remove(task); }
+    public int size() {
+        MappedTaskFile file = unloaded;
+        return file != null ? file.size() : list.size();
+    }
 
     /**
-     * Returns a list of all tasks.
+     * Returns the task at the given position, materializing only that task if it is still on disk.
      *
-     * @return a new list containing all tasks
+     * @param index position of the task
+     * @return the task at the given position
+     * @throws IndexOutOfBoundsException if the index is out of range
      */
-    public List<Task> listAll() { return new ArrayList<>(list); }
+    public Task get(int index) {
+        if (unloaded == null) {
+            return list.get(index);
+        }
+        long stamp = lock.readLock();
+        try {
+            if (unloaded == null) {
+                return list.get(index);
+            }
+            Objects.checkIndex(index, unloadedRows.length());
+            return unloadedRow(index);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
 
     /**
-     * Returns a list of tasks with the specified priority.
+     * Returns a list of tasks with the specified priority, in list order.
      *
      * @param priority the priority to filter by
      * @return a list of tasks with the given priority
      */
     public List<Task> getByPriority(Task.Priority priority) {
-        List<Task> result = new ArrayList<>();
-        for (Task task : list) {
-            if (task.getPriority() == priority) {
-                result.add(task);
-            }
-        }
-        return result;
+        return query("tasks.getByPriority", () -> new ArrayList<>(byPriority.getOrDefault(priority, PersistentSequence.empty())));
     }
 
     /**
@@ -54,29 +354,17 @@ public class Tasks implements Serializable {
      * @return a list of completed tasks
      */
     public List<Task> getCompleted() {
-        List<Task> result = new ArrayList<>();
-        for (Task task : list) {
-            if (task.isCompleted()) {
-                result.add(task);
-            }
-        }
-        return result;
+        return query("tasks.getCompleted", () -> new ArrayList<>(completed));
     }
 
     /**
      * Returns a list of tasks to be done by a given due date (inclusive).
      *
      * @param dueDate the due date to filter by
-     * @return a list of tasks with due date on or before the given date and not completed
+     * @return a list of tasks with due date on or before the given date and not completed, ordered by due date
      */
-    public List<Task> getToBeDoneBy(java.time.LocalDate dueDate) {
-        List<Task> result = new ArrayList<>();
-        for (Task task : list) {
-            if (!task.isCompleted() && task.getDueDate() != null && !task.getDueDate().isAfter(dueDate)) {
-                result.add(task);
-            }
-        }
-        return result;
+    public List<Task> getToBeDoneBy(LocalDate dueDate) {
+        return query("tasks.getToBeDoneBy", () -> flatten(openByDueDate.headMap(dueDate, true).values()));
     }
 
     /**
@@ -84,43 +372,549 @@ public class Tasks implements Serializable {
      *
      * @param start the start date (inclusive)
      * @param end the end date (inclusive)
-     * @return a list of tasks completed between the two dates
+     * @return a list of tasks completed between the two dates, ordered by end date
      */
-    public List<Task> getCompletedBetween(java.time.LocalDate start, java.time.LocalDate end) {
-        List<Task> result = new ArrayList<>();
-        for (Task task : list) {
-            if (task.isCompleted() && task.getEndDate() != null &&
-                (!task.getEndDate().isBefore(start) && !task.getEndDate().isAfter(end))) {
-                result.add(task);
+    public List<Task> getCompletedBetween(LocalDate start, LocalDate end) {
+        if (start.isAfter(end)) {
+            return new ArrayList<>();
+        }
+        return query("tasks.getCompletedBetween", () -> flatten(completedByEndDate.subMap(start, true, end, true).values()));
+    }
+
+    /**
+     * Returns the open tasks with a due date in a range, ordered by due date.
+     *
+     * @param from the first due date (inclusive), or null for no lower bound
+     * @param to the last due date (inclusive), or null for no upper bound
+     * @return the matching tasks
+     */
+    List<Task> getOpenDueBetween(LocalDate from, LocalDate to) {
+        return query("tasks.getOpenDueBetween", () -> flatten(range(openByDueDate, from, to).values()));
+    }
+
+    /**
+     * Passes the tasks with one of the given priorities to an action, priority by priority and in
+     * list order within each, reading the priority index in place instead of copying it. Runs
+     * under the read lock, so the action must be quick and must not use the collection.
+     *
+     * @param priorities the priorities to visit
+     * @param action receives each task, and returns false to stop
+     */
+    void forEachWithPriority(Set<Task.Priority> priorities, Predicate<Task> action) {
+        read(() -> {
+            for (Task.Priority priority : priorities) {
+                if (!visit(byPriority.getOrDefault(priority, PersistentSequence.empty()), action)) {
+                    break;
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Passes the completed tasks to an action, like {@link #forEachWithPriority}.
+     *
+     * @param action receives each task, and returns false to stop
+     */
+    void forEachCompleted(Predicate<Task> action) {
+        read(() -> visit(completed, action));
+    }
+
+    /**
+     * Passes the open tasks with a due date in a range to an action, ordered by due date,
+     * like {@link #forEachWithPriority}.
+     *
+     * @param from the first due date (inclusive), or null for no lower bound
+     * @param to the last due date (inclusive), or null for no upper bound
+     * @param action receives each task, and returns false to stop
+     */
+    void forEachOpenDueBetween(LocalDate from, LocalDate to, Predicate<Task> action) {
+        read(() -> visitAll(range(openByDueDate, from, to).values(), action));
+    }
+
+    /**
+     * Passes every open task with a due date to an action, in no particular order. Unlike
+     * {@link #forEachOpenDueBetween}, a mapped snapshot is not materialized: the flags and due date
+     * of each record are read in place under the read lock, and only the matching tasks are decoded.
+     * The action must be quick and must not use the collection.
+     *
+     * @param action receives each task
+     */
+    void forEachOpenWithDueDate(Consumer<Task> action) {
+        long stamp = lock.readLock();
+        try {
+            MappedTaskFile file = unloaded;
+            if (file == null) {
+                visitAll(openByDueDate.values(), task -> {
+                    action.accept(task);
+                    return true;
+                });
+                return;
+            }
+            // Materialized rows were not changed, since any change materializes the whole snapshot
+            for (int i = 0; i < unloadedRows.length(); i++) {
+                if (file.openDueDate(i) != null) {
+                    action.accept(unloadedRow(i));
+                }
             }
+        } finally {
+            lock.unlockRead(stamp);
         }
-        return result;
     }
 
     /**
-     * Saves the task list to a file using Java serialization.
+     * Passes the tasks with an end date in a range to an action, ordered by end date,
+     * like {@link #forEachWithPriority}.
+     *
+     * @param from the first end date (inclusive), or null for no lower bound
+     * @param to the last end date (inclusive), or null for no upper bound
+     * @param action receives each task, and returns false to stop
+     */
+    void forEachCompletedBetween(LocalDate from, LocalDate to, Predicate<Task> action) {
+        read(() -> visitAll(range(completedByEndDate, from, to).values(), action));
+    }
+
+    /**
+     * Returns the number of tasks with one of the given priorities, from the priority index.
+     *
+     * @param priorities the priorities to count
+     * @return the number of tasks
+     */
+    int countWithPriority(Set<Task.Priority> priorities) {
+        return read(() -> {
+            int count = 0;
+            for (Task.Priority priority : priorities) {
+                count += byPriority.getOrDefault(priority, PersistentSequence.empty()).size();
+            }
+            return count;
+        });
+    }
+
+    /**
+     * Returns the number of completed tasks.
+     *
+     * @return the number of tasks
+     */
+    int countCompleted() {
+        return read(completed::size);
+    }
+
+    /**
+     * Returns the number of open tasks with a due date in a range, from the due date index.
+     *
+     * @param from the first due date (inclusive), or null for no lower bound
+     * @param to the last due date (inclusive), or null for no upper bound
+     * @return the number of tasks
+     */
+    int countOpenDueBetween(LocalDate from, LocalDate to) {
+        return read(() -> count(range(openByDueDate, from, to).values()));
+    }
+
+    /**
+     * Returns the number of tasks with an end date in a range, from the end date index.
+     *
+     * @param from the first end date (inclusive), or null for no lower bound
+     * @param to the last end date (inclusive), or null for no upper bound
+     * @return the number of tasks
+     */
+    int countCompletedBetween(LocalDate from, LocalDate to) {
+        return read(() -> count(range(completedByEndDate, from, to).values()));
+    }
+
+    @Override
+    public void change(Task task, Runnable mutation) {
+        int index;
+        long stamp = lock.writeLock();
+        try {
+            materialize();
+            if (byId.get(task.getId()) != task) {
+                // Removed concurrently; the task is no longer indexed here
+                mutation.run();
+                return;
+            }
+            long key = keys.get(task);
+            unindex(task, key);
+            mutation.run();
+            index(task, key);
+            version++;
+            index = listeners.isEmpty() ? -1 : list.indexOfKey(key);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if (index >= 0) {
+            for (Listener listener : listeners) {
+                listener.taskUpdated(index, task);
+            }
+        }
+    }
+
+    /**
+     * Saves the task list to a file in the binary task file format.
      *
      * @param filename the file to save to
      * @throws IOException if an I/O error occurs
      */
     public void saveToFile(String filename) throws IOException {
-        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(filename))) {
-            out.writeObject(list);
+        TaskFile.write(filename, listAll());
+    }
+
+    /**
+     * Removes all tasks and restarts the id sequence, e.g. before loading the tasks of another user.
+     */
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            discardAll();
+            ids.reset();
+        } finally {
+            lock.unlockWrite(stamp);
         }
+        fireReset();
     }
 
     /**
-     * Loads the task list from a file using Java serialization.
+     * Loads the task list from a file. Files in the previous Java serialization format are also accepted.
      *
      * @param filename the file to load from
      * @throws IOException if an I/O error occurs
      * @throws ClassNotFoundException if the class of a serialized object cannot be found
      */
-    @SuppressWarnings("unchecked")
     public void loadFromFile(String filename) throws IOException, ClassNotFoundException {
-        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(filename))) {
-            list.clear();
-            list.addAll((List<Task>) in.readObject());
+        List<Task> loaded = TaskFile.isLegacy(filename) ? TaskFile.readLegacy(filename) : TaskFile.read(filename);
+        long stamp = lock.writeLock();
+        try {
+            discardAll();
+            appendLoaded(loaded);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        fireReset();
+    }
+
+    /**
+     * Loads the task list from a snapshot file and replays the journal of changes written after it.
+     * A missing snapshot is treated as an empty task list. If the journal is empty and the snapshot is
+     * in the binary format, the snapshot is only mapped and tasks are materialized on demand.
+     *
+     * @param filename the snapshot file to load from
+     * @param journal the journal to replay
+     * @throws IOException if an I/O error occurs
+     * @throws ClassNotFoundException if the class of a serialized object cannot be found
+     */
+    public void loadFromFile(String filename, TaskJournal journal) throws IOException, ClassNotFoundException {
+        if (!new File(filename).exists()) {
+            long stamp = lock.writeLock();
+            try {
+                discardAll();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            fireReset();
+        } else if (journal.isEmpty() && !TaskFile.isLegacy(filename)) {
+            MappedTaskFile file = MappedTaskFile.open(filename);
+            long stamp = lock.writeLock();
+            try {
+                discardAll();
+                ids.advancePast(file.maxId());
+                unloadedRows = new AtomicReferenceArray<>(file.size());
+                unloaded = file;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            fireReset();
+        } else {
+            loadFromFile(filename);
+        }
+        journal.replay(this);
+    }
+
+    /**
+     * Runs a query returning tasks, recording its duration and result size under the given metric name.
+     */
+    private List<Task> query(String name, Supplier<List<Task>> query) {
+        MetricsEvents.Query event = MetricsEvents.Query.start(name);
+        List<Task> result = read(query);
+        event.finish(result.size());
+        return result;
+    }
+
+    /**
+     * Returns the current version of the list, after making sure every task is materialized.
+     */
+    private PersistentSequence<Task> snapshot() {
+        if (unloaded != null) {
+            long stamp = lock.writeLock();
+            try {
+                materialize();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Runs a query under the read lock, after making sure every task is materialized.
+     */
+    private <T> T read(Supplier<T> query) {
+        if (unloaded != null) {
+            long stamp = lock.writeLock();
+            try {
+                materialize();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+        long stamp = lock.readLock();
+        try {
+            return query.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Removes all tasks and empties the indexes. Requires the write lock.
+     */
+    private void discardAll() {
+        for (Task task : list) {
+            task.setListener(null);
+        }
+        list = PersistentSequence.empty();
+        if (unloaded != null) {
+            unloaded.close();
         }
+        unloaded = null;
+        unloadedRows = null;
+        version++;
+        keys.clear();
+        byId.clear();
+        byPriority.clear();
+        completed.clear();
+        openByDueDate.clear();
+        completedByEndDate.clear();
+    }
+
+    /**
+     * Materializes every task still on disk, adds them to the list and indexes, and releases the mapping.
+     * Requires the write lock.
+     */
+    private void materialize() {
+        if (unloaded == null) {
+            return;
+        }
+        MappedTaskFile file = unloaded;
+        AtomicReferenceArray<Task> rows = unloadedRows;
+        List<Task> loaded = new ArrayList<>(rows.length());
+        for (int i = 0; i < rows.length(); i++) {
+            Task row = rows.get(i);
+            loaded.add(row != null ? row : file.read(i));
+        }
+        // Publish the list before clearing the mapping, so lock-free readers never see a partial list
+        appendLoaded(loaded);
+        unloaded = null;
+        unloadedRows = null;
+        file.close();
+    }
+
+    /**
+     * Returns a task of the mapped snapshot, materializing it on first access. Requires the read or
+     * write lock; when two readers materialize the same row, the first one to publish it wins.
+     */
+    private Task unloadedRow(int index) {
+        Task task = unloadedRows.get(index);
+        if (task == null) {
+            Task read = unloaded.read(index);
+            read.setListener(this);
+            task = unloadedRows.compareAndExchange(index, null, read);
+            if (task == null) {
+                task = read;
+            }
+        }
+        return task;
+    }
+
+    /**
+     * Gives a task the next list key and adds it to the id lookup, without adding it to the list
+     * or to the query indexes.
+     *
+     * @return the key of the task in the list
+     */
+    private long register(Task task) {
+        long key = nextKey++;
+        keys.put(task, key);
+        byId.put(task.getId(), task);
+        ids.advancePast(task.getId());
+        task.setListener(this);
+        return key;
+    }
+
+    /**
+     * Adds tasks to the end of the list and the indexes as one new version, without notifying
+     * listeners. Each priority group is appended to in one step, like the list.
+     */
+    private void appendAll(List<Task> batch) {
+        long firstKey = nextKey;
+        Map<Task.Priority, PriorityRun> runs = new HashMap<>();
+        for (Task task : batch) {
+            long key = register(task);
+            runs.computeIfAbsent(task.getPriority(), k -> new PriorityRun()).add(key, task);
+            indexState(task);
+        }
+        for (Map.Entry<Task.Priority, PriorityRun> run : runs.entrySet()) {
+            PersistentSequence<Task> group = byPriority.getOrDefault(run.getKey(), PersistentSequence.empty());
+            byPriority.put(run.getKey(), group.withAll(run.getValue().keys(), run.getValue().tasks));
+        }
+        list = list.withAll(firstKey, batch);
+    }
+
+    /**
+     * Tasks of one priority in a batch being appended, with their list keys in ascending order.
+     */
+    private static final class PriorityRun {
+        private long[] keys = new long[16];
+        final List<Task> tasks = new ArrayList<>();
+
+        void add(long key, Task task) {
+            if (tasks.size() == keys.length) {
+                keys = Arrays.copyOf(keys, keys.length * 2);
+            }
+            keys[tasks.size()] = key;
+            tasks.add(task);
+        }
+
+        long[] keys() {
+            return Arrays.copyOf(keys, tasks.size());
+        }
+    }
+
+    /**
+     * Adds tasks read from a file. Files written before ids were allocated from a sequence
+     * may contain duplicate ids; later duplicates get a fresh id.
+     */
+    private void appendLoaded(List<Task> loaded) {
+        List<Task> unique = new ArrayList<>(loaded.size());
+        Set<Integer> seen = new HashSet<>();
+        for (Task task : loaded) {
+            boolean duplicate = byId.containsKey(task.getId()) || !seen.add(task.getId());
+            unique.add(duplicate ? null : task);
+            if (!duplicate) {
+                ids.advancePast(task.getId());
+            }
+        }
+        // Fresh ids are allocated once every id in the file is reserved
+        for (int i = 0; i < unique.size(); i++) {
+            if (unique.get(i) == null) {
+                unique.set(i, loaded.get(i).withId(ids.next()));
+            }
+        }
+        appendAll(unique);
+    }
+
+    private void fireReset() {
+        for (Listener listener : listeners) {
+            listener.tasksReset();
+        }
+    }
+
+    /**
+     * Adds a task to the indexes matching its current field values.
+     */
+    private void index(Task task, long key) {
+        byPriority.put(task.getPriority(),
+                byPriority.getOrDefault(task.getPriority(), PersistentSequence.empty()).with(key, task));
+        indexState(task);
+    }
+
+    /**
+     * Adds a task to the completion and date indexes matching its current field values.
+     */
+    private void indexState(Task task) {
+        if (task.isCompleted()) {
+            completed.add(task);
+            if (task.getEndDate() != null) {
+                completedByEndDate.computeIfAbsent(task.getEndDate(), k -> new LinkedHashSet<>()).add(task);
+            }
+        } else if (task.getDueDate() != null) {
+            openByDueDate.computeIfAbsent(task.getDueDate(), k -> new LinkedHashSet<>()).add(task);
+        }
+    }
+
+    /**
+     * Removes a task from the indexes matching its current field values.
+     */
+    private void unindex(Task task, long key) {
+        PersistentSequence<Task> group = byPriority.get(task.getPriority());
+        if (group != null) {
+            group = group.without(key);
+            if (group.isEmpty()) {
+                byPriority.remove(task.getPriority());
+            } else {
+                byPriority.put(task.getPriority(), group);
+            }
+        }
+        if (task.isCompleted()) {
+            completed.remove(task);
+            if (task.getEndDate() != null) {
+                removeFrom(completedByEndDate, task.getEndDate(), task);
+            }
+        } else if (task.getDueDate() != null) {
+            removeFrom(openByDueDate, task.getDueDate(), task);
+        }
+    }
+
+    private static <K> void removeFrom(Map<K, Set<Task>> index, K key, Task task) {
+        Set<Task> bucket = index.get(key);
+        if (bucket != null && bucket.remove(task) && bucket.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    /**
+     * Returns the part of a date index between two dates, either of which may be null for no bound.
+     */
+    private static NavigableMap<LocalDate, Set<Task>> range(NavigableMap<LocalDate, Set<Task>> index,
+                                                            LocalDate from, LocalDate to) {
+        if (from != null && to != null) {
+            return from.isAfter(to) ? new TreeMap<>() : index.subMap(from, true, to, true);
+        }
+        if (from != null) {
+            return index.tailMap(from, true);
+        }
+        return to != null ? index.headMap(to, true) : index;
+    }
+
+    private static int count(Collection<Set<Task>> buckets) {
+        int count = 0;
+        for (Set<Task> bucket : buckets) {
+            count += bucket.size();
+        }
+        return count;
+    }
+
+    private static boolean visit(Collection<Task> bucket, Predicate<Task> action) {
+        for (Task task : bucket) {
+            if (!action.test(task)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean visitAll(Collection<Set<Task>> buckets, Predicate<Task> action) {
+        for (Set<Task> bucket : buckets) {
+            if (!visit(bucket, action)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<Task> flatten(Collection<Set<Task>> buckets) {
+        List<Task> result = new ArrayList<>();
+        for (Set<Task> bucket : buckets) {
+            result.addAll(bucket);
+        }
+        return result;
     }
-}
\ No newline at end of file
+}
@@ -1,56 +1,451 @@
 package com.jobarbosa.gestortarefas;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
+/**
+ * Loads, changes, and saves the tasks of the logged-in user.
+ * <p>
+ * Each user's tasks are kept in a separate shard directory, {@code data/tasks/<user id>/},
+ * holding the snapshot, journal, and id sequence of that user only. Nothing is loaded until a
+ * user logs in, and logging in only reads that user's shard.
+ * <p>
+ * Several instances of the application may use the same shard at once: files are only read and
+ * written under a lock, and changes written by other instances show up in the loaded tasks
+ * within about a second (see {@link ShardSync}).
+ */
 public class TasksManagementController {
     private Tasks tasks = new Tasks();
-    private static final String TASKS_FILE = "data/tasks.dat";
+    private final TaskTextIndex textIndex = new TaskTextIndex(tasks);
+    private final TaskQueryEngine queryEngine = new TaskQueryEngine(tasks, textIndex);
+    private final TaskStatistics statistics = new TaskStatistics(tasks);
+    /** Directory holding one shard directory per user. */
+    private final String shardsDirectory;
+    /**
+     * Task files from before tasks were kept per user. They are left in place, and each user gets a
+     * copy of the tasks they own on their first login (see {@link #migrateLegacyFiles}).
+     */
+    private final String legacyTasksFile;
+    private final String legacyJournalFile;
+    private final String legacyTaskIdsFile;
+    /** Id of the user who took the legacy tasks in nobody's groups, once someone did. */
+    private final String legacyClaimFile;
+    /** Number of journal records after which a new snapshot is written. */
+    private static final int COMPACTION_THRESHOLD = 1000;
+    private final PersistenceWriter writer;
+    /** Files of the logged-in user, or null if no user is logged in. */
+    private volatile Shard shard;
+    /** Runs changes made by other instances on the thread that may change the tasks. */
+    private volatile Executor remoteChangeExecutor = Runnable::run;
+    /** Manages the registered users, whose task groups refer to the tasks; null if not set. */
+    private volatile UserManagementController userController;
+
+    /**
+     * Files holding the tasks of one user.
+     */
+    private static final class Shard {
+        final String directory;
+        final String tasksFile;
+        final String journalFile;
+        final String idsFile;
+        final String remindersFile;
+        final TaskJournal journal;
+        /** The user whose tasks these are. */
+        final User owner;
+        /** Coordinates access with other instances; null if the shard could not be opened. */
+        ShardSync sync;
+
+        Shard(String shardsDirectory, User owner) {
+            this.owner = owner;
+            this.directory = shardsDirectory + "/" + owner.getId();
+            this.tasksFile = directory + "/tasks.dat";
+            this.journalFile = directory + "/tasks.journal";
+            this.idsFile = directory + "/tasks.ids";
+            this.remindersFile = directory + "/reminders.dat";
+            this.journal = new TaskJournal(journalFile);
+        }
+    }
+
+    /**
+     * Constructs a controller with its own persistence writer.
+     */
+    public TasksManagementController() {
+        this(new PersistenceWriter());
+    }
+
+    /**
+     * Constructs a controller that saves through the given persistence writer.
+     *
+     * @param writer the writer used for all file writes
+     */
+    public TasksManagementController(PersistenceWriter writer) {
+        this(writer, "data");
+    }
 
     /**
-     * Loads tasks from the persistent file. Call this on app startup.
-     * If the data directory does not exist, it is created.
+     * Constructs a controller that keeps its files in the given data directory, e.g. in tests.
+     *
+     * @param writer the writer used for all file writes
+     * @param dataDirectory the directory holding the shards and the legacy task files
      */
-    public void loadTasks() {
-        ensureDataDirectory();
+    TasksManagementController(PersistenceWriter writer, String dataDirectory) {
+        this.writer = writer;
+        this.shardsDirectory = dataDirectory + "/tasks";
+        this.legacyTasksFile = dataDirectory + "/tasks.dat";
+        this.legacyJournalFile = dataDirectory + "/tasks.journal";
+        this.legacyTaskIdsFile = dataDirectory + "/tasks.ids";
+        this.legacyClaimFile = shardsDirectory + "/legacy.claimed";
+    }
+
+    /**
+     * Sets the executor that applies changes written by other instances to the tasks, e.g.
+     * {@code Platform::runLater} while the tasks are shown. By default they are applied on the
+     * persistence writer thread. Takes effect on the next {@link #loadTasks(User)}.
+     *
+     * @param executor runs each batch of changes
+     */
+    public void setRemoteChangeExecutor(Executor executor) {
+        this.remoteChangeExecutor = executor;
+    }
+
+    /**
+     * Sets the controller of the registered users. Removed tasks are taken out of the logged-in
+     * user's groups, which are then saved through it, and the users' groups decide which tasks of
+     * the legacy shared task file each user gets. Without it, groups are still updated but not
+     * saved, and users only get the legacy tasks in their own groups.
+     *
+     * @param userController the controller of all registered users
+     */
+    public void setUserController(UserManagementController userController) {
+        this.userController = userController;
+    }
+
+    /**
+     * Loads the tasks of a user, replacing the tasks of any previous user. Call this after login.
+     * The user's snapshot is loaded and the journal is replayed on top of it, and the shard is
+     * watched for changes of other instances. On the first login after upgrading from the single
+     * shared task file, the user's shard starts with the tasks of that file they own, and the first
+     * user to log in also gets the tasks nobody owns. The time it
+     * takes is recorded in the {@code tasks.login} metric, with the number of tasks loaded.
+     * Loading waits for pending writes and for the shard lock, so call this off the JavaFX thread.
+     *
+     * @param user the logged-in user
+     */
+    public void loadTasks(User user) {
+        long start = System.nanoTime();
+        unloadTasks();
+        Shard opened = new Shard(shardsDirectory, user);
         try {
-            tasks.loadFromFile(TASKS_FILE);
+            writer.flush();
+            migrateLegacyFiles(opened, user);
+            ensureDirectory(opened.directory);
+            tasks.clear();
+            boolean legacy = new File(opened.tasksFile).exists() && TaskFile.isLegacy(opened.tasksFile);
+            opened.sync = new ShardSync(opened.directory, opened.tasksFile, opened.idsFile, opened.journal, tasks,
+                    remoteChangeExecutor, prefetch -> writer.submit(opened.idsFile + "#prefetch", prefetch::run));
+            opened.sync.load();
+            opened.sync.prefetchIds();
+            shard = opened;
+            watch(opened);
+            claimUnassignedLegacyTasks(user);
+            if (legacy) {
+                // One-time migration from the Java serialization format
+                saveTasks();
+            }
+            Metrics.histogram("tasks.login").recordSince(start, tasks.size());
         } catch (IOException | ClassNotFoundException e) {
+            shard = opened;
             System.err.println("Could not load tasks: " + e.getMessage());
         }
     }
 
     /**
-     * Saves tasks to the persistent file. Call this on task changes or app exit.
-     * If the data directory does not exist, it is created.
+     * Returns the file in the logged-in user's shard that records which tasks they were reminded of.
+     *
+     * @return the file name, or null if no user is logged in
      */
-    public void saveTasks() {
-        ensureDataDirectory();
-        try {
-            tasks.saveToFile(TASKS_FILE);
-        } catch (IOException e) {
-            System.err.println("Could not save tasks: " + e.getMessage());
+    public String getRemindersFile() {
+        Shard current = shard;
+        return current != null ? current.remindersFile : null;
+    }
+
+    /**
+     * Forgets the tasks of the logged-in user, e.g. on logout. Pending changes are still written.
+     */
+    public void unloadTasks() {
+        Shard closed = shard;
+        if (closed == null) {
+            return;
+        }
+        shard = null;
+        tasks.clear();
+        if (closed.sync != null) {
+            closed.sync.detach();
         }
+        writer.submit(closed.journalFile + "#close", closed.sync != null ? closed.sync::close : closed.journal::close);
+    }
+
+    /**
+     * Queues a full snapshot of the tasks for the persistent file, after which the journal is emptied.
+     * The snapshot reflects the tasks at the time of the call; the file is written in the background.
+     */
+    public void saveTasks() {
+        Shard current = requireShard();
+        List<Task> snapshot = tasks.listAll();
+        long foreignApplied = current.journal.getForeignApplied();
+        current.journal.markSnapshot();
+        writer.submit(current.tasksFile, () -> {
+            ensureDirectory(current.directory);
+            requireSync(current).compact(snapshot, foreignApplied);
+        });
     }
 
     /**
-     * Adds a new task and saves the updated task list.
+     * Adds a new task and records it in the journal.
      *
      * @param task the task to add
      */
     public void addTask(Task task) {
         tasks.add(task);
-        saveTasks();
+        record(TaskJournal.Operation.ADD, task);
+    }
+
+    /**
+     * Adds several new tasks as one batch: the collection is updated once and the whole batch
+     * is recorded with a single journal write.
+     *
+     * @param batch the tasks to add
+     */
+    public void addTasks(List<Task> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Shard current = requireShard();
+        tasks.addAll(batch);
+        for (Task task : batch) {
+            current.journal.append(TaskJournal.Operation.ADD, task);
+        }
+        commit(current);
+    }
+
+    /**
+     * Imports tasks from a CSV ({@code .csv}) or JSON Lines ({@code .jsonl}) file, in batches.
+     *
+     * @param filename the file to import
+     * @return the import report
+     * @throws IOException if the file cannot be read
+     */
+    public TaskImporter.Report importTasks(String filename) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(filename), StandardCharsets.UTF_8)) {
+            return new TaskImporter(this).importFrom(reader, TaskTextFormat.forFile(filename));
+        }
+    }
+
+    /**
+     * Exports all tasks to a CSV ({@code .csv}) or JSON Lines ({@code .jsonl}) file.
+     *
+     * @param filename the file to write
+     * @return the number of tasks exported
+     * @throws IOException if the file cannot be written
+     */
+    public int exportTasks(String filename) throws IOException {
+        TaskTextFormat format = TaskTextFormat.forFile(filename);
+        try (Writer out = Files.newBufferedWriter(Paths.get(filename), StandardCharsets.UTF_8)) {
+            return TaskExporter.export(tasks, out, format);
+        }
     }
 
     /**
-     * Removes a task and saves the updated task list.
+     * Removes a task, records the removal in the journal, and takes the task out of the logged-in
+     * user's groups; see {@link #removeTasks(List)}, which every removal goes through.
      *
      * @param task the task to remove
+     * @return true if the task was in the collection
+     */
+    public boolean removeTask(Task task) {
+        return removeTasks(List.of(task)) > 0;
+    }
+
+    /**
+     * Removes several tasks as one batch, recorded with a single journal write, and takes them out
+     * of the logged-in user's groups. Tasks that are no longer in the collection, e.g. because
+     * another instance removed them meanwhile, are skipped.
+     *
+     * @param batch the tasks to remove
+     * @return the number of tasks removed
+     */
+    public int removeTasks(List<Task> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        Shard current = requireShard();
+        int removed = 0;
+        boolean regrouped = false;
+        for (Task task : batch) {
+            if (tasks.remove(task)) {
+                current.journal.append(TaskJournal.Operation.REMOVE, task);
+                regrouped |= current.owner.getTaskGroups().removeFromAll(task.getId()) > 0;
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            commit(current);
+        }
+        UserManagementController users = userController;
+        if (regrouped && users != null) {
+            users.saveUsers();
+        }
+        return removed;
+    }
+
+    /**
+     * Marks a task as completed and records it in the journal.
+     *
+     * @param task the task to complete
+     */
+    public void completeTask(Task task) {
+        task.markCompleted();
+        record(TaskJournal.Operation.COMPLETE, task);
+    }
+
+    /**
+     * Marks several tasks as completed as one batch, recorded with a single journal write.
+     *
+     * @param batch the tasks to complete
+     */
+    public void completeTasks(List<Task> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Shard current = requireShard();
+        for (Task task : batch) {
+            task.markCompleted();
+            current.journal.append(TaskJournal.Operation.COMPLETE, task);
+        }
+        commit(current);
+    }
+
+    /**
+     * Records the current state of a task after its fields were edited.
+     *
+     * @param task the edited task
+     */
+    public void updateTask(Task task) {
+        record(TaskJournal.Operation.UPDATE, task);
+    }
+
+    /**
+     * Allocates an id for a new task. Ids are reserved in blocks from the user's id file, which is
+     * shared with other instances, and the next block is reserved in the background before the
+     * current one runs out, so this normally neither reads the file nor waits for the shard lock.
+     *
+     * @return the new task id
+     * @throws UncheckedIOException if the id file cannot be read or written
+     */
+    public int newTaskId() {
+        return reserveTaskIds(1);
+    }
+
+    /**
+     * Allocates ids for several new tasks at once, e.g. for a batch of imported tasks, reading and
+     * writing the user's id file at most once.
+     *
+     * @param count the number of ids, at least 1
+     * @return the first id; the following {@code count - 1} ids are allocated too
+     * @throws UncheckedIOException if the id file cannot be read or written
      */
-    public void removeTask(Task task) {
-        tasks.remove(task);
-        saveTasks();
+    public int reserveTaskIds(int count) {
+        Shard current = requireShard();
+        try {
+            return requireSync(current).reserveIds(count);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Finds tasks whose description contains words starting with each word of the query,
+     * ignoring case and accents.
+     *
+     * @param query the search text
+     * @param limit maximum number of tasks to return
+     * @return the matching tasks
+     */
+    public List<Task> searchTasks(String query, int limit) {
+        return textIndex.search(query, limit);
+    }
+
+    /**
+     * Finds the tasks matching a query, starting from the most selective index.
+     *
+     * @param query the query to run
+     * @return the matching tasks
+     */
+    public List<Task> queryTasks(TaskQuery query) {
+        return queryEngine.execute(query);
+    }
+
+    /**
+     * Finds the open tasks in one of a user's groups.
+     *
+     * @param user the user owning the group
+     * @param group the name of the group
+     * @return the open tasks in the group
+     */
+    public List<Task> openTasksInGroup(User user, String group) {
+        return queryTasks(new TaskQuery().inGroup(user, group).open());
+    }
+
+    /**
+     * Finds the open tasks in one of a user's groups that are past their due date.
+     *
+     * @param user the user owning the group
+     * @param group the name of the group
+     * @return the overdue tasks in the group, earliest due date first
+     */
+    public List<Task> overdueTasksInGroup(User user, String group) {
+        return queryTasks(new TaskQuery().inGroup(user, group).open()
+                .dueBetween(null, LocalDate.now().minusDays(1)).sortBy(TaskQuery.Sort.DUE_DATE));
+    }
+
+    /**
+     * Describes how a query would be run, e.g. to check that it uses an index.
+     *
+     * @param query the query to plan
+     * @return the chosen plan, with its estimated cost
+     */
+    public String explainQuery(TaskQuery query) {
+        return queryEngine.explain(query);
+    }
+
+    /**
+     * Builds the search index ahead of the first search. Safe to call from any thread.
+     */
+    public void prepareSearch() {
+        textIndex.prepare();
+    }
+
+    /**
+     * Returns the counters shown on the dashboard, kept up to date as tasks change.
+     */
+    public TaskStatistics getStatistics() {
+        return statistics;
     }
 
     /**
@@ -61,12 +456,191 @@ public class TasksManagementController {
     }
 
     /**
-     * Ensures the data directory exists.
+     * Appends a change to the journal and commits it.
+     */
+    private void record(TaskJournal.Operation operation, Task task) {
+        Shard current = requireShard();
+        current.journal.append(operation, task);
+        commit(current);
+    }
+
+    /**
+     * Queues the journal records appended so far for writing,
+     * taking a new snapshot once the journal grows too long.
+     */
+    private void commit(Shard current) {
+        writer.submit(current.journalFile, () -> {
+            ensureDirectory(current.directory);
+            requireSync(current).flush();
+        });
+        if (current.journal.getEntryCount() >= COMPACTION_THRESHOLD) {
+            saveTasks();
+        }
+    }
+
+    /**
+     * Returns the files of the logged-in user.
+     *
+     * @throws IllegalStateException if no user is logged in
+     */
+    private Shard requireShard() {
+        Shard current = shard;
+        if (current == null) throw new IllegalStateException("no user is logged in");
+        return current;
+    }
+
+    /**
+     * Watches a shard for changes of other instances.
+     */
+    private void watch(Shard opened) {
+        try {
+            opened.sync.watch();
+        } catch (IOException e) {
+            System.err.println("Could not watch tasks for changes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the coordinator of a shard.
+     *
+     * @throws IOException if the shard could not be opened when the user logged in
+     */
+    private static ShardSync requireSync(Shard current) throws IOException {
+        if (current.sync == null) throw new IOException("could not open " + current.directory);
+        return current.sync;
+    }
+
+    /**
+     * Creates a user's shard from the task files from before tasks were kept per user, unless that
+     * shard already exists. The old files held every user's tasks, and a task's only link to a user
+     * is the user's task groups, so the shard gets the tasks in the user's groups. The tasks in no
+     * user's groups go to the first user to log in after the upgrade (see {@link #claimLegacyTasks}).
+     * The old files are only read: each user takes their part on their first login. The shard is
+     * built in a temporary directory and renamed, so an interrupted migration is retried on the next
+     * login.
+     */
+    private void migrateLegacyFiles(Shard target, User user) throws IOException, ClassNotFoundException {
+        if (!legacyFilesExist() || new File(target.directory).exists()) {
+            return;
+        }
+        Tasks legacy = loadLegacyTasks();
+        Set<Integer> owned = groupedTaskIds(List.of(user));
+        List<Task> migrated = new ArrayList<>();
+        for (Task task : legacy.listAll()) {
+            if (owned.contains(task.getId())) {
+                migrated.add(task);
+            }
+        }
+        if (claimLegacyTasks(user) != LegacyClaim.OTHER) {
+            migrated.addAll(unassignedTasks(legacy));
+        }
+        Path directory = Paths.get(target.directory);
+        Path temp = directory.resolveSibling(directory.getFileName() + ".tmp");
+        ensureDirectory(temp.toString());
+        if (new File(legacyTaskIdsFile).exists()) {
+            // Keeps new ids past the old ones, which the user's groups may still refer to
+            Files.copy(Paths.get(legacyTaskIdsFile), temp.resolve("tasks.ids"), StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (!migrated.isEmpty()) {
+            TaskFile.write(temp.resolve("tasks.dat").toString(), migrated);
+        } else {
+            Files.deleteIfExists(temp.resolve("tasks.dat"));
+        }
+        Files.move(temp, directory, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Adds the old tasks in no user's groups to the logged-in user's shard if nobody has claimed
+     * them yet, e.g. because the shard was migrated before the users were known. Tasks whose id is
+     * already taken in the shard get a new one; they are in no group, so nothing refers to the id.
+     */
+    private void claimUnassignedLegacyTasks(User user) throws IOException, ClassNotFoundException {
+        if (!legacyFilesExist() || claimLegacyTasks(user) != LegacyClaim.NEW) {
+            return;
+        }
+        List<Task> claimed = new ArrayList<>();
+        for (Task task : unassignedTasks(loadLegacyTasks())) {
+            claimed.add(tasks.findById(task.getId()).isPresent() ? task.withId(reserveTaskIds(1)) : task);
+        }
+        addTasks(claimed);
+        writer.flush();
+    }
+
+    /**
+     * Claims the old tasks in no user's groups for a user, unless another user already did. The
+     * claim is a file holding the user's id, created only if it does not exist, so of several
+     * instances logging in at once exactly one user gets the tasks. Nobody can claim them while
+     * the users are unknown.
+     */
+    private LegacyClaim claimLegacyTasks(User user) throws IOException {
+        if (userController == null) {
+            return LegacyClaim.OTHER;
+        }
+        ensureDirectory(shardsDirectory);
+        Path claim = Paths.get(legacyClaimFile);
+        String id = Integer.toString(user.getId());
+        try {
+            Files.writeString(claim, id, StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE);
+            return LegacyClaim.NEW;
+        } catch (FileAlreadyExistsException e) {
+            return Files.readString(claim, StandardCharsets.UTF_8).trim().equals(id) ? LegacyClaim.OWN : LegacyClaim.OTHER;
+        }
+    }
+
+    /** Outcome of {@link #claimLegacyTasks}: claimed just now, claimed before, or claimed by another user. */
+    private enum LegacyClaim { NEW, OWN, OTHER }
+
+    private boolean legacyFilesExist() {
+        return new File(legacyTasksFile).exists() || new File(legacyJournalFile).exists();
+    }
+
+    /**
+     * Loads the old shared task file and replays its journal.
+     */
+    private Tasks loadLegacyTasks() throws IOException, ClassNotFoundException {
+        Tasks legacy = new Tasks();
+        if (new File(legacyTasksFile).exists()) {
+            legacy.loadFromFile(legacyTasksFile);
+        }
+        new TaskJournal(legacyJournalFile).replay(legacy);
+        return legacy;
+    }
+
+    /**
+     * Returns the old tasks that are in no registered user's groups.
+     */
+    private List<Task> unassignedTasks(Tasks legacy) {
+        Set<Integer> grouped = groupedTaskIds(userController.getUsers().listAll());
+        List<Task> unassigned = new ArrayList<>();
+        for (Task task : legacy.listAll()) {
+            if (!grouped.contains(task.getId())) {
+                unassigned.add(task);
+            }
+        }
+        return unassigned;
+    }
+
+    /**
+     * Returns the ids of the tasks that are in any group of the given users.
+     */
+    private static Set<Integer> groupedTaskIds(List<User> users) {
+        Set<Integer> ids = new HashSet<>();
+        for (User user : users) {
+            for (String group : user.getTaskGroups().getNames()) {
+                ids.addAll(user.getTaskGroups().getTaskIds(group));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Ensures a directory exists.
      */
-    private void ensureDataDirectory() {
-        File dataDir = new File("data");
-        if (!dataDir.exists()) {
-            dataDir.mkdirs();
+    private static void ensureDirectory(String directory) {
+        File dir = new File(directory);
+        if (!dir.exists()) {
+            dir.mkdirs();
         }
     }
 }
@@ -1,29 +1,38 @@
 package com.jobarbosa.gestortarefas;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.time.LocalDate;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * Represents a user with a unique id, username, password, email, registration date, and role.
  */
 public class User implements Serializable {
+    /** Matches the implicit id of the original class so existing user files keep loading. */
+    private static final long serialVersionUID = -9217218838154447691L;
     /** Unique identifier for the user. */
     private final int id;
     /** Username. */
-    private String username;
+    private volatile String username;
     /** User password (stored in plain text for example purposes, use hashing in production). */
-    private String password;
+    private volatile String password;
     /** User email. */
-    private String email;
+    private volatile String email;
     /** User registration date. */
-    private LocalDate registrationDate;
+    private volatile LocalDate registrationDate;
     /** User role (e.g., ADMIN, USER). */
-    private Role role;
+    private volatile Role role;
+    /** Listener notified when the username changes, usually the owning Users collection. */
+    private transient volatile UsernameListener usernameListener;
 
     /**
      * Enum representing the user's role.
@@ -33,6 +42,21 @@ public class User implements Serializable {
         USER
     }
 
+    /**
+     * Listener notified when a user's username changes, so that collections can re-key their indexes.
+     */
+    public interface UsernameListener {
+        /**
+         * Called to change the username. The listener must run the mutation exactly once,
+         * under whatever lock guards its index; throwing an exception instead vetoes the change.
+         *
+         * @param user the user being renamed, still holding the old username
+         * @param newUsername the new username
+         * @param mutation assigns the new username
+         */
+        void changeUsername(User user, String newUsername, Runnable mutation);
+    }
+
     /**
      * Full constructor for User.
      *
@@ -66,9 +90,14 @@ public class User implements Serializable {
 
     public int getId() { return id; }
     public String getUsername() { return username; }
-    public void setUsername(String username) {
+    public synchronized void setUsername(String username) {
         if (username == null || username.isEmpty()) throw new IllegalArgumentException("username cannot be empty");
-        this.username = username;
+        UsernameListener listener = usernameListener;
+        if (listener != null) {
+            listener.changeUsername(this, username, () -> this.username = username);
+        } else {
+            this.username = username;
+        }
     }
     public String getPassword() { return password; }
     public void setPassword(String password) { this.password = password; }
@@ -81,11 +110,23 @@ public class User implements Serializable {
     public void setRegistrationDate(LocalDate registrationDate) { this.registrationDate = registrationDate; }
     public Role getRole() { return role; }
     public void setRole(Role role) { this.role = role; }
+    void setUsernameListener(UsernameListener usernameListener) { this.usernameListener = usernameListener; }
+
+    /**
+     * Task groups of this user: each group name maps to the ids of the tasks in the group.
+     * Tasks themselves live in the user's task files, so groups only refer to them.
+     * This map is what is saved; it is changed through {@link #groups}, which guards it.
+     */
+    private final Map<String, Set<Integer>> taskGroups = new HashMap<>();
+    /** Task groups with their reverse index, backed by {@link #taskGroups}. */
+    private transient TaskGroups groups = new TaskGroups(taskGroups);
 
     /**
-     * Map of task groups, where each group name maps to a list of tasks.
+     * Returns the task groups of this user.
+     *
+     * @return the groups, kept with the user
      */
-    private final Map<String, List<Task>> taskGroups = new HashMap<>();
+    public TaskGroups getTaskGroups() { return groups; }
 
     /**
      * Adds a task to a group. If the group does not exist, it is created.
@@ -94,17 +135,39 @@ public class User implements Serializable {
      * @param task the task to add
      */
     public void addTaskToGroup(String groupName, Task task) {
-        taskGroups.computeIfAbsent(groupName, k -> new ArrayList<>()).add(task);
+        addTaskToGroup(groupName, task.getId());
+    }
+
+    /**
+     * Adds a task to a group by id. If the group does not exist, it is created.
+     *
+     * @param groupName the name of the group
+     * @param taskId the id of the task to add
+     */
+    public void addTaskToGroup(String groupName, int taskId) {
+        groups.add(groupName, taskId);
     }
 
     /**
-     * Gets the list of tasks in a group.
+     * Gets the ids of the tasks in a group.
      *
      * @param groupName the name of the group
-     * @return the list of tasks in the group, or an empty list if the group does not exist
+     * @return the task ids in the group, or an empty list if the group does not exist
      */
-    public List<Task> getTasksInGroup(String groupName) {
-        return taskGroups.getOrDefault(groupName, new ArrayList<>());
+    public List<Integer> getTaskIdsInGroup(String groupName) {
+        return groups.getTaskIds(groupName);
+    }
+
+    /**
+     * Gets the tasks in a group, looked up in the given collection.
+     * Ids of tasks that are no longer in the collection are skipped.
+     *
+     * @param groupName the name of the group
+     * @param tasks the user's tasks
+     * @return the tasks in the group, or an empty list if the group does not exist
+     */
+    public List<Task> getTasksInGroup(String groupName, Tasks tasks) {
+        return groups.getTasks(groupName, tasks);
     }
 
     /**
@@ -115,11 +178,7 @@ public class User implements Serializable {
      * @return true if the task was removed, false otherwise
      */
     public boolean removeTaskFromGroup(String groupName, Task task) {
-        List<Task> group = taskGroups.get(groupName);
-        if (group != null) {
-            return group.remove(task);
-        }
-        return false;
+        return groups.remove(groupName, task.getId());
     }
 
     /**
@@ -128,7 +187,32 @@ public class User implements Serializable {
      * @return a list of group names
      */
     public List<String> getGroupNames() {
-        return new ArrayList<>(taskGroups.keySet());
+        return groups.getNames();
+    }
+
+    /**
+     * Writes the user while holding the lock of its groups, so groups can be changed during a background save.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        synchronized (groups) {
+            out.defaultWriteObject();
+        }
+    }
+
+    /**
+     * Reads a user written by any version of this class. Older versions stored copies of the
+     * tasks in each group; those are replaced by their ids.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        taskGroups.replaceAll((name, members) -> {
+            Set<Integer> ids = new LinkedHashSet<>();
+            for (Object member : (Collection<?>) members) {
+                ids.add(member instanceof Task task ? task.getId() : (Integer) member);
+            }
+            return ids;
+        });
+        groups = new TaskGroups(taskGroups);
     }
 
     @Override
@@ -2,10 +2,29 @@ package com.jobarbosa.gestortarefas;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
 public class UserManagementController {
     private Users users = new Users();
     private static final String USERS_FILE = "data/users.dat";
+    private static final String USER_IDS_FILE = "data/users.ids";
+    private final PersistenceWriter writer;
+
+    /**
+     * Constructs a controller with its own persistence writer.
+     */
+    public UserManagementController() {
+        this(new PersistenceWriter());
+    }
+
+    /**
+     * Constructs a controller that saves through the given persistence writer.
+     *
+     * @param writer the writer used for all file writes
+     */
+    public UserManagementController(PersistenceWriter writer) {
+        this.writer = writer;
+    }
 
     /**
      * Loads users from the persistent file. Call this on app startup.
@@ -14,6 +33,7 @@ public class UserManagementController {
     public void loadUsers() {
         ensureDataDirectory();
         try {
+            users.getIdSequence().load(USER_IDS_FILE);
             users.loadFromFile(USERS_FILE);
         } catch (IOException | ClassNotFoundException e) {
             // File may not exist on first run, or may be corrupted
@@ -22,16 +42,16 @@ public class UserManagementController {
     }
 
     /**
-     * Saves users to the persistent file. Call this on user changes or app exit.
+     * Queues the users for saving to the persistent file. Call this on user changes.
+     * The saved list reflects the users at the time of the call; the file is written in the background.
      * If the data directory does not exist, it is created.
      */
     public void saveUsers() {
-        ensureDataDirectory();
-        try {
-            users.saveToFile(USERS_FILE);
-        } catch (IOException e) {
-            System.err.println("Could not save users: " + e.getMessage());
-        }
+        List<User> snapshot = users.listAll();
+        writer.submit(USERS_FILE, () -> {
+            ensureDataDirectory();
+            Users.saveToFile(USERS_FILE, snapshot);
+        });
     }
 
     /**
@@ -48,6 +68,21 @@ public class UserManagementController {
         return success;
     }
 
+    /**
+     * Allocates an id for a new user and queues the updated id sequence for saving.
+     *
+     * @return the new user id
+     */
+    public int newUserId() {
+        int id = users.nextId();
+        IdSequence ids = users.getIdSequence();
+        writer.submit(USER_IDS_FILE, () -> {
+            ensureDataDirectory();
+            ids.save(USER_IDS_FILE);
+        });
+        return id;
+    }
+
     /**
      * Returns the Users instance for user management operations.
      */
@@ -1,36 +1,105 @@
 package com.jobarbosa.gestortarefas;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
 
 /**
  * Manages a collection of User objects, providing methods to add, remove, list, and search users.
+ * Users are indexed by id and by username, so lookups and authentication take constant time.
+ * <p>
+ * The collection is thread-safe: lookups share the read lock of a {@link StampedLock}, and
+ * changes, including renames through {@link User#setUsername(String)}, take the write lock.
+ * Users are also kept in insertion order in a {@link PersistentSequence}, so {@link #listAll()}
+ * returns an immutable snapshot in O(1) without locking.
  */
-public class Users implements Serializable {
-    private final List<User> list = new ArrayList<>();
+public class Users implements Serializable, User.UsernameListener {
+    /** Current version of the list of users, in insertion order. Replaced, never modified, under the write lock. */
+    private volatile PersistentSequence<User> all = PersistentSequence.empty();
+    /** Key of each user in the list, by user instance. */
+    private final Map<User, Long> keys = new IdentityHashMap<>();
+    /** Key given to the next user added to the list. */
+    private long nextKey;
+    /** Users by id. */
+    private final Map<Integer, User> byId = new HashMap<>();
+    /** Users by username. */
+    private final Map<String, User> byUsername = new HashMap<>();
+    /** Source of ids for new users. */
+    private final IdSequence ids = new IdSequence();
+    /** Guards both indexes. */
+    private final transient StampedLock lock = new StampedLock();
 
     /**
      * Adds a user to the collection.
      *
      * @param user the user to add
+     * @throws IllegalArgumentException if another user already has the same id or username
      */
-    public void add(User user) { list.add(user); }
+    public void add(User user) {
+        long stamp = lock.writeLock();
+        try {
+            if (!tryAdd(user)) {
+                if (byId.containsKey(user.getId())) throw new IllegalArgumentException("user id already exists");
+                throw new IllegalArgumentException("username already exists");
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
 
     /**
      * Removes a user from the collection.
      *
      * @param user the user to remove
      */
-    public void remove(User user) { list.remove(user); }
+    public void remove(User user) {
+        long stamp = lock.writeLock();
+        try {
+            User existing = byId.get(user.getId());
+            if (user.equals(existing)) {
+                byId.remove(existing.getId());
+                byUsername.remove(existing.getUsername());
+                all = all.without(keys.remove(existing));
+                existing.setUsernameListener(null);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns a new, unused user id.
+     *
+     * @return the new id
+     */
+    public int nextId() { return ids.next(); }
+
+    /**
+     * Returns the sequence used for new user ids, e.g. to persist it.
+     *
+     * @return the id sequence
+     */
+    public IdSequence getIdSequence() { return ids; }
 
     /**
-     * Returns a list of all users.
+     * Returns a snapshot of all users, in the order they were added. The snapshot is immutable,
+     * is not affected by later changes, and costs O(1) to take.
      *
-     * @return a new list containing all users
+     * @return an unmodifiable list containing all users
      */
-    public List<User> listAll() { return new ArrayList<>(list); }
+    public List<User> listAll() {
+        return all;
+    }
 
     /**
      * Finds a user by username.
@@ -39,7 +108,7 @@ public class Users implements Serializable {
      * @return an Optional containing the user if found, or empty if not found
      */
     public Optional<User> findByUsername(String username) {
-        return list.stream().filter(u -> u.getUsername().equals(username)).findFirst();
+        return read(() -> Optional.ofNullable(byUsername.get(username)));
     }
 
     /**
@@ -49,7 +118,7 @@ public class Users implements Serializable {
      * @return an Optional containing the user if found, or empty if not found
      */
     public Optional<User> findById(int id) {
-        return list.stream().filter(u -> u.getId() == id).findFirst();
+        return read(() -> Optional.ofNullable(byId.get(id)));
     }
 
     /**
@@ -60,7 +129,7 @@ public class Users implements Serializable {
      */
     public List<User> getByRole(User.Role role) {
         List<User> result = new ArrayList<>();
-        for (User user : list) {
+        for (User user : all) {
             if (user.getRole() == role) {
                 result.add(user);
             }
@@ -76,9 +145,11 @@ public class Users implements Serializable {
      * @return an Optional containing the authenticated user if credentials are correct, or empty if not
      */
     public Optional<User> authenticate(String username, String password) {
-        return list.stream()
-                .filter(u -> u.getUsername().equals(username) && u.getPassword() != null && u.getPassword().equals(password))
-                .findFirst();
+        MetricsEvents.Authentication event = MetricsEvents.Authentication.start();
+        User user = read(() -> byUsername.get(username));
+        boolean success = user != null && user.getPassword() != null && user.getPassword().equals(password);
+        event.finish(success);
+        return success ? Optional.of(user) : Optional.empty();
     }
 
     /**
@@ -88,7 +159,7 @@ public class Users implements Serializable {
      * @return true if the username exists, false otherwise
      */
     public boolean usernameExists(String username) {
-        return list.stream().anyMatch(u -> u.getUsername().equals(username));
+        return read(() -> byUsername.containsKey(username));
     }
 
     /**
@@ -98,11 +169,32 @@ public class Users implements Serializable {
      * @return true if registration was successful, false if username already exists
      */
     public boolean register(User user) {
-        if (usernameExists(user.getUsername())) {
-            return false;
+        long stamp = lock.writeLock();
+        try {
+            if (byUsername.containsKey(user.getUsername())) {
+                return false;
+            }
+            if (!tryAdd(user)) throw new IllegalArgumentException("user id already exists");
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void changeUsername(User user, String newUsername, Runnable mutation) {
+        long stamp = lock.writeLock();
+        try {
+            String oldUsername = user.getUsername();
+            if (!newUsername.equals(oldUsername) && byId.get(user.getId()) == user) {
+                if (byUsername.containsKey(newUsername)) throw new IllegalArgumentException("username already exists");
+                byUsername.remove(oldUsername);
+                byUsername.put(newUsername, user);
+            }
+            mutation.run();
+        } finally {
+            lock.unlockWrite(stamp);
         }
-        add(user);
-        return true;
     }
 
     /**
@@ -112,13 +204,36 @@ public class Users implements Serializable {
      * @throws IOException if an I/O error occurs
      */
     public void saveToFile(String filename) throws IOException {
-        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(filename))) {
-            out.writeObject(list);
+        saveToFile(filename, listAll());
+    }
+
+    /**
+     * Saves a list of users to a file using Java serialization. The file is replaced atomically:
+     * it holds either the previous or the new list, never a partial one.
+     *
+     * @param filename the file to save to
+     * @param users the users to save
+     * @throws IOException if an I/O error occurs
+     */
+    static void saveToFile(String filename, List<User> users) throws IOException {
+        MetricsEvents.Persistence event = MetricsEvents.Persistence.start("users.save", filename);
+        Path target = Paths.get(filename);
+        // Written next to the file and moved over it, so a crash never leaves a truncated users.dat
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp.toFile());
+             ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(file))) {
+            // Always written as an ArrayList, whatever list the snapshot is, to keep the file format
+            out.writeObject(new ArrayList<>(users));
+            out.flush();
+            file.getFD().sync();
         }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        event.finish(Files.size(target));
     }
 
     /**
      * Loads the user list from a file using Java serialization.
+     * If the file contains several users with the same id or username, only the first one is kept.
      *
      * @param filename the file to load from
      * @throws IOException if an I/O error occurs
@@ -126,9 +241,56 @@ public class Users implements Serializable {
      */
     @SuppressWarnings("unchecked")
     public void loadFromFile(String filename) throws IOException, ClassNotFoundException {
+        MetricsEvents.Persistence event = MetricsEvents.Persistence.start("users.load", filename);
         try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(filename))) {
-            list.clear();
-            list.addAll((List<User>) in.readObject());
+            List<User> loaded = (List<User>) in.readObject();
+            event.finish(new File(filename).length());
+            long stamp = lock.writeLock();
+            try {
+                for (User user : all) {
+                    user.setUsernameListener(null);
+                }
+                all = PersistentSequence.empty();
+                keys.clear();
+                byId.clear();
+                byUsername.clear();
+                for (User user : loaded) {
+                    tryAdd(user);
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Adds a user unless its id or username is taken. Requires the write lock.
+     *
+     * @return true if the user was added
+     */
+    private boolean tryAdd(User user) {
+        if (byId.containsKey(user.getId()) || byUsername.containsKey(user.getUsername())) {
+            return false;
+        }
+        long key = nextKey++;
+        all = all.with(key, user);
+        keys.put(user, key);
+        byId.put(user.getId(), user);
+        byUsername.put(user.getUsername(), user);
+        ids.advancePast(user.getId());
+        user.setUsernameListener(this);
+        return true;
+    }
+
+    /**
+     * Runs a lookup under the read lock.
+     */
+    private <T> T read(Supplier<T> lookup) {
+        long stamp = lock.readLock();
+        try {
+            return lookup.get();
+        } finally {
+            lock.unlockRead(stamp);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,110 @@
+package com.jobarbosa.gestortarefas;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Checks {@link PersistentSequence} against a {@link TreeMap} through random changes, including
+ * leaf splits, merges, and bulk appends, and that old versions are left unchanged.
+ */
+class PersistentSequenceTest {
+    @Test
+    void randomChangesMatchSortedMap() {
+        Random random = new Random(42);
+        TreeMap<Long, Integer> expected = new TreeMap<>();
+        PersistentSequence<Integer> sequence = PersistentSequence.empty();
+        long nextKey = 0;
+        for (int step = 0; step < 20_000; step++) {
+            int choice = random.nextInt(10);
+            if (choice < 4) {
+                long key = nextKey++;
+                sequence = sequence.with(key, step);
+                expected.put(key, step);
+            } else if (choice < 6 && nextKey > 0) {
+                // Inserts and replaces in the middle
+                long key = random.nextLong(nextKey);
+                sequence = sequence.with(key, step);
+                expected.put(key, step);
+            } else if (choice < 9 && nextKey > 0) {
+                long key = random.nextLong(nextKey);
+                sequence = sequence.without(key);
+                expected.remove(key);
+            } else {
+                List<Integer> batch = new ArrayList<>();
+                for (int i = random.nextInt(200); i > 0; i--) {
+                    batch.add(step);
+                }
+                sequence = sequence.withAll(nextKey, batch);
+                for (Integer value : batch) {
+                    expected.put(nextKey++, value);
+                }
+            }
+            if (step % 500 == 0) {
+                assertMatches(expected, sequence);
+            }
+        }
+        assertMatches(expected, sequence);
+    }
+
+    @Test
+    void oldVersionsStayUnchanged() {
+        PersistentSequence<Integer> old = PersistentSequence.<Integer>empty().withAll(0, range(1000));
+        PersistentSequence<Integer> changed = old.without(500).with(2000, -1).withAll(3000, range(100));
+        assertEquals(range(1000), old);
+        assertEquals(1100, changed.size());
+        assertSame(old, old.without(5000));
+    }
+
+    @Test
+    void listIteratorWalksBothWays() {
+        List<Integer> values = range(300);
+        PersistentSequence<Integer> sequence = PersistentSequence.<Integer>empty().withAll(0, values);
+        ListIterator<Integer> iterator = sequence.listIterator(150);
+        for (int i = 149; i >= 0; i--) {
+            assertEquals(i, iterator.previous());
+        }
+        assertFalse(iterator.hasPrevious());
+        assertEquals(values.subList(70, 230), new ArrayList<>(sequence.subList(70, 230)));
+    }
+
+    private static void assertMatches(TreeMap<Long, Integer> expected, PersistentSequence<Integer> sequence) {
+        List<Integer> values = new ArrayList<>(expected.values());
+        assertEquals(values.size(), sequence.size());
+        assertEquals(values, sequence);
+        List<Integer> visited = new ArrayList<>();
+        sequence.forEach(visited::add);
+        assertEquals(values, visited);
+        List<Integer> iterated = new ArrayList<>();
+        for (Integer value : sequence) {
+            iterated.add(value);
+        }
+        assertEquals(values, iterated);
+        assertEquals(values, Arrays.asList(sequence.toArray()));
+        int index = 0;
+        for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), sequence.get(index));
+            assertEquals(index, sequence.indexOfKey(entry.getKey()));
+            index++;
+        }
+        assertEquals(-1, sequence.indexOfKey(-1));
+    }
+
+    private static List<Integer> range(int size) {
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            values.add(i);
+        }
+        return values;
+    }
+}
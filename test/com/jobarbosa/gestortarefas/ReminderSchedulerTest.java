@@ -0,0 +1,97 @@
+package com.jobarbosa.gestortarefas;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that {@link ReminderScheduler} reminds of each task once per due date, across logins,
+ * through its history file.
+ */
+class ReminderSchedulerTest {
+    private static final LocalDate TODAY = LocalDate.of(2026, 10, 18);
+    private static final Clock CLOCK = Clock.fixed(TODAY.atTime(9, 0).toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+    /** Longer than the delay before the schedule is rebuilt. */
+    private static final long WAIT_SECONDS = 10;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void overdueTaskIsRemindedOfOncePerDueDate() throws Exception {
+        Tasks tasks = new Tasks();
+        Task overdue = new Task(1, "overdue", TODAY.minusDays(3));
+        tasks.add(overdue);
+        tasks.add(new Task(2, "later", TODAY.plusDays(10)));
+        tasks.add(new Task(3, "no date"));
+        String history = directory.resolve("reminders").toString();
+
+        BlockingQueue<List<Task>> delivered = new LinkedBlockingQueue<>();
+        try (ReminderScheduler first = login(tasks, history, delivered)) {
+            assertEquals(List.of(1), ids(delivered.poll(WAIT_SECONDS, TimeUnit.SECONDS)));
+        }
+        assertTrue(Files.exists(Path.of(history)));
+
+        // The next login does not remind of the same task again
+        try (ReminderScheduler second = login(tasks, history, delivered)) {
+            waitForScheduled(second, 1);
+            assertNull(delivered.poll(1, TimeUnit.SECONDS));
+        }
+
+        // Until it gets a new due date that is also close
+        overdue.setDueDate(TODAY);
+        try (ReminderScheduler third = login(tasks, history, delivered)) {
+            assertEquals(List.of(1), ids(delivered.poll(WAIT_SECONDS, TimeUnit.SECONDS)));
+        }
+    }
+
+    @Test
+    void completedTaskIsDroppedFromSchedule() throws Exception {
+        Tasks tasks = new Tasks();
+        Task task = new Task(1, "later", TODAY.plusDays(10));
+        tasks.add(task);
+        try (ReminderScheduler scheduler = new ReminderScheduler(tasks, 1, Runnable::run, CLOCK)) {
+            scheduler.setHistoryFile(directory.resolve("reminders").toString());
+            waitForScheduled(scheduler, 1);
+            task.markCompleted();
+            assertEquals(0, scheduler.getScheduledCount());
+        }
+    }
+
+    /**
+     * Starts a scheduler with the history file, as on login, that delivers its reminders to a queue.
+     */
+    private static ReminderScheduler login(Tasks tasks, String history, BlockingQueue<List<Task>> delivered) {
+        ReminderScheduler scheduler = new ReminderScheduler(tasks, 1, Runnable::run, CLOCK);
+        scheduler.setOnDue(delivered::add);
+        scheduler.setHistoryFile(history);
+        return scheduler;
+    }
+
+    private static void waitForScheduled(ReminderScheduler scheduler, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(WAIT_SECONDS);
+        while (scheduler.getScheduledCount() != count && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(count, scheduler.getScheduledCount());
+    }
+
+    private static List<Integer> ids(List<Task> tasks) {
+        assertNotNull(tasks, "no reminder was delivered");
+        return tasks.stream().map(Task::getId).toList();
+    }
+}
@@ -0,0 +1,112 @@
+package com.jobarbosa.gestortarefas;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that two instances sharing a shard see each other's changes, through the journal and
+ * through a snapshot the other one wrote, without losing their own. The instances run in this
+ * thread one after the other, since file locks are held per process.
+ */
+class ShardSyncTest {
+    @TempDir
+    Path directory;
+
+    private Instance first;
+    private Instance second;
+
+    /**
+     * One instance of the application with the shard loaded.
+     */
+    private final class Instance {
+        final Tasks tasks = new Tasks();
+        final TaskJournal journal = new TaskJournal(directory.resolve("tasks.journal").toString());
+        final ShardSync sync;
+
+        Instance() throws Exception {
+            sync = new ShardSync(directory.toString(), directory.resolve("tasks.dat").toString(),
+                    directory.resolve("tasks.ids").toString(), journal, tasks, Runnable::run, Runnable::run);
+            sync.load();
+        }
+
+        void add(int id, String description) throws IOException {
+            Task task = new Task(id, description);
+            tasks.add(task);
+            journal.append(TaskJournal.Operation.ADD, task);
+            sync.flush();
+        }
+
+        void describe(int id, String description) throws IOException {
+            Task task = tasks.findById(id).orElseThrow();
+            task.setDescription(description);
+            journal.append(TaskJournal.Operation.UPDATE, task);
+            sync.flush();
+        }
+
+        String description(int id) {
+            return tasks.findById(id).orElseThrow().getDescription();
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        TaskFile.write(directory.resolve("tasks.dat").toString(), List.of(new Task(1, "shared")));
+        first = new Instance();
+        second = new Instance();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        first.sync.close();
+        second.sync.close();
+    }
+
+    @Test
+    void journalRecordsOfOtherInstanceAreApplied() throws Exception {
+        first.add(2, "from first");
+        second.describe(1, "changed by second");
+        assertEquals("from first", second.description(2));
+
+        first.sync.flush();
+        assertEquals("changed by second", first.description(1));
+        assertEquals(2, first.tasks.size());
+    }
+
+    @Test
+    void snapshotOfOtherInstanceIsMergedKeepingLocalChanges() throws Exception {
+        first.add(2, "from first");
+        second.sync.flush();
+        second.describe(1, "changed by second");
+        second.sync.compact(second.tasks.listAll(), second.journal.getForeignApplied());
+
+        // The first instance changes a task before it has seen the new snapshot
+        first.tasks.findById(2).orElseThrow().setDescription("changed by first");
+        first.journal.append(TaskJournal.Operation.UPDATE, first.tasks.findById(2).orElseThrow());
+        first.sync.flush();
+        assertEquals("changed by second", first.description(1));
+        assertEquals("changed by first", first.description(2));
+
+        second.sync.flush();
+        assertEquals("changed by first", second.description(2));
+    }
+
+    @Test
+    void instancesNeverHandOutTheSameId() throws Exception {
+        Set<Integer> ids = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            assertTrue(ids.add(first.sync.nextId()));
+            assertTrue(ids.add(second.sync.nextId()));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.jobarbosa.gestortarefas;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests authentication, login throttling, and access to other users in {@link TaskApiServer}.
+ */
+class TaskApiServerTest {
+    private TaskApiServer server;
+    private HttpClient client;
+    private String base;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Users users = new Users();
+        User alice = new User(1, "alice", "secret", "alice@example.com", LocalDate.of(2026, 1, 1), User.Role.USER);
+        users.add(alice);
+        users.add(new User(2, "bob", "hunter2", "bob@example.com", LocalDate.of(2026, 1, 1), User.Role.USER));
+        TasksManagementController controller = new TasksManagementController();
+        controller.getTasks().add(new Task(1, "alice's task"));
+        server = new TaskApiServer(controller, users, alice, Runnable::run,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        base = "http://localhost:" + server.getPort() + "/api/";
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+        client.close();
+    }
+
+    @Test
+    void requestsNeedOwnersCredentials() throws Exception {
+        HttpResponse<String> anonymous = get("tasks/1", null);
+        assertEquals(401, anonymous.statusCode());
+        assertTrue(anonymous.headers().firstValue("WWW-Authenticate").isPresent());
+        assertEquals(401, get("tasks/1", "alice:wrong").statusCode());
+        assertEquals(403, get("tasks/1", "bob:hunter2").statusCode());
+
+        HttpResponse<String> owner = get("tasks/1", "alice:secret");
+        assertEquals(200, owner.statusCode());
+        assertTrue(owner.body().contains("alice's task"), owner.body());
+    }
+
+    @Test
+    void repeatedFailuresAreThrottled() throws Exception {
+        for (int i = 0; i <= TaskApiServer.FREE_FAILURES; i++) {
+            assertEquals(401, get("tasks", "alice:wrong").statusCode());
+        }
+        // Refused for a while, even with the right password
+        HttpResponse<String> refused = get("tasks", "alice:secret");
+        assertEquals(429, refused.statusCode());
+        assertTrue(refused.headers().firstValue("Retry-After").isPresent());
+        // Only for that username
+        assertEquals(403, get("tasks", "bob:hunter2").statusCode());
+
+        Thread.sleep(1100);
+        assertEquals(200, get("tasks", "alice:secret").statusCode());
+        // A success starts the count over
+        assertEquals(401, get("tasks", "alice:wrong").statusCode());
+        assertEquals(200, get("tasks", "alice:secret").statusCode());
+    }
+
+    @Test
+    void usersOnlySeeThemselves() throws Exception {
+        HttpResponse<String> list = get("users", "alice:secret");
+        assertEquals(200, list.statusCode());
+        assertTrue(list.body().contains("alice"), list.body());
+        assertFalse(list.body().contains("bob"), list.body());
+        assertFalse(list.body().contains("secret"), list.body());
+        assertEquals(200, get("users/1", "alice:secret").statusCode());
+        assertEquals(404, get("users/2", "alice:secret").statusCode());
+    }
+
+    private HttpResponse<String> get(String path, String credentials) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(base + path));
+        if (credentials != null) {
+            request.header("Authorization",
+                    "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
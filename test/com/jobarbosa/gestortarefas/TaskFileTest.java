@@ -0,0 +1,85 @@
+package com.jobarbosa.gestortarefas;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests reading and mapping task files in the binary format.
+ */
+class TaskFileTest {
+    private static final List<Task> TASKS = List.of(
+            new Task(7, "seven", Task.Priority.values()[0], LocalDate.of(2026, 10, 18)),
+            new Task(42, "forty-two"),
+            new Task(3, null));
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void mappedFileTakesHighestIdFromHeader() throws IOException {
+        Path file = directory.resolve("tasks.dat");
+        TaskFile.write(file.toString(), TASKS);
+        try (MappedTaskFile mapped = MappedTaskFile.open(file.toString())) {
+            assertEquals(3, mapped.size());
+            assertEquals(42, mapped.maxId());
+            assertEquals("forty-two", mapped.read(1).getDescription());
+        }
+    }
+
+    @Test
+    void versionOneFilesAreStillRead() throws IOException {
+        Path file = directory.resolve("tasks.dat");
+        TaskFile.write(file.toString(), TASKS);
+        // Version 1 had no highest id after the string section length
+        byte[] current = Files.readAllBytes(file);
+        ByteBuffer old = ByteBuffer.allocate(current.length - Integer.BYTES);
+        old.put(current, 0, 16).put(current, TaskFile.HEADER_SIZE, current.length - TaskFile.HEADER_SIZE);
+        old.putShort(4, (short) 1);
+        Files.write(file, old.array());
+
+        assertEquals(List.of(7, 42, 3), TaskFile.read(file.toString()).stream().map(Task::getId).toList());
+        try (MappedTaskFile mapped = MappedTaskFile.open(file.toString())) {
+            assertEquals(42, mapped.maxId());
+        }
+    }
+
+    @Test
+    void unknownPriorityIsReportedAsCorruptFile() throws IOException {
+        Path file = directory.resolve("tasks.dat");
+        TaskFile.write(file.toString(), TASKS);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[TaskFile.HEADER_SIZE + 4] = 100;
+        Files.write(file, bytes);
+
+        IOException error = assertThrows(IOException.class, () -> TaskFile.read(file.toString()));
+        assertTrue(error.getMessage().contains("priority"), error.getMessage());
+        try (MappedTaskFile mapped = MappedTaskFile.open(file.toString())) {
+            assertThrows(UncheckedIOException.class, () -> mapped.read(0));
+        }
+    }
+
+    @Test
+    void closedMappingLetsFileBeReplaced() throws Exception {
+        Path file = directory.resolve("tasks.dat");
+        TaskFile.write(file.toString(), TASKS);
+        Tasks tasks = new Tasks();
+        tasks.loadFromFile(file.toString(), new TaskJournal(directory.resolve("tasks.journal").toString()));
+        assertEquals(43, tasks.nextId());
+        // Materializing releases the mapping before the snapshot is rewritten
+        List<Task> all = tasks.listAll();
+        TaskFile.write(file.toString(), all.subList(0, 1));
+        assertEquals(1, TaskFile.read(file.toString()).size());
+    }
+}
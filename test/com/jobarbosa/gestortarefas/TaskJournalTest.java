@@ -0,0 +1,123 @@
+package com.jobarbosa.gestortarefas;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests writing the task journal and recovering from it, including after a crash left a
+ * truncated or corrupted record.
+ */
+class TaskJournalTest {
+    private static final LocalDate DUE = LocalDate.of(2026, 10, 18);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replayRestoresEveryChange() throws IOException {
+        TaskJournal journal = journal();
+        Task kept = new Task(1, "kept", Task.Priority.HIGH, DUE);
+        Task removed = new Task(2, "removed");
+        journal.append(TaskJournal.Operation.ADD, kept);
+        journal.append(TaskJournal.Operation.ADD, removed);
+        kept.setDescription("edited");
+        journal.append(TaskJournal.Operation.UPDATE, kept);
+        kept.markCompleted();
+        journal.append(TaskJournal.Operation.COMPLETE, kept);
+        journal.append(TaskJournal.Operation.REMOVE, removed);
+        journal.flush();
+        journal.close();
+
+        Tasks tasks = new Tasks();
+        TaskJournal reopened = journal();
+        reopened.replay(tasks);
+        assertEquals(5, reopened.getEntryCount());
+        assertEquals(List.of(1), ids(tasks));
+        Task restored = tasks.findById(1).orElseThrow();
+        assertTrue(restored.hasSameState(kept), restored.toString());
+
+        // Records already in the tasks leave them unchanged when replayed again
+        reopened.replay(tasks);
+        assertEquals(List.of(1), ids(tasks));
+        assertTrue(tasks.findById(1).orElseThrow().hasSameState(kept));
+    }
+
+    @Test
+    void truncatedLastRecordIsIgnored() throws IOException {
+        long firstRecord = writeRecords(2);
+        Path file = directory.resolve("tasks.journal");
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+
+        Tasks tasks = new Tasks();
+        journal().replay(tasks);
+        assertEquals(List.of(1), ids(tasks));
+        assertEquals(firstRecord, journal().readFrom(0).end());
+    }
+
+    @Test
+    void replayStopsAtCorruptRecordKeepingEarlierOnes() throws IOException {
+        long firstRecord = writeRecords(3);
+        Path file = directory.resolve("tasks.journal");
+        byte[] bytes = Files.readAllBytes(file);
+        // An unknown operation in the second record; the third one is intact but after it
+        bytes[(int) firstRecord] = 99;
+        Files.write(file, bytes);
+
+        Tasks tasks = new Tasks();
+        TaskJournal journal = journal();
+        journal.replay(tasks);
+        assertEquals(List.of(1), ids(tasks));
+        assertEquals(1, journal.getEntryCount());
+        assertEquals(firstRecord, journal.readFrom(0).end());
+    }
+
+    @Test
+    void corruptDescriptionLengthIsNotAllocated() throws IOException {
+        writeRecords(1);
+        Path file = directory.resolve("tasks.journal");
+        byte[] bytes = Files.readAllBytes(file);
+        // Operation (1 byte) and id (4 bytes) come before the description length
+        bytes[5] = 0x7f;
+        Files.write(file, bytes);
+
+        Tasks tasks = new Tasks();
+        journal().replay(tasks);
+        assertEquals(0, tasks.size());
+    }
+
+    /**
+     * Writes ADD records for tasks 1 to {@code count}, and returns the length of the first record.
+     */
+    private long writeRecords(int count) throws IOException {
+        TaskJournal journal = journal();
+        long firstRecord = 0;
+        for (int id = 1; id <= count; id++) {
+            journal.append(TaskJournal.Operation.ADD, new Task(id, "task " + id, Task.Priority.LOW, DUE));
+            journal.flush();
+            if (id == 1) {
+                firstRecord = journal.length();
+            }
+        }
+        journal.close();
+        return firstRecord;
+    }
+
+    private TaskJournal journal() {
+        return new TaskJournal(directory.resolve("tasks.journal").toString());
+    }
+
+    private static List<Integer> ids(Tasks tasks) {
+        return tasks.listAll().stream().map(Task::getId).toList();
+    }
+}
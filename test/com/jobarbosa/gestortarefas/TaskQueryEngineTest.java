@@ -0,0 +1,75 @@
+package com.jobarbosa.gestortarefas;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that {@link TaskQueryEngine} starts each query from the smallest index, and that the
+ * results do not depend on the index chosen.
+ */
+class TaskQueryEngineTest {
+    private static final LocalDate TODAY = LocalDate.of(2026, 10, 18);
+
+    private Tasks tasks;
+    private TaskTextIndex textIndex;
+    private TaskQueryEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        tasks = new Tasks();
+        // 1000 open low priority tasks, due over 100 days; every tenth high priority task is completed
+        for (int id = 1; id <= 1000; id++) {
+            tasks.add(new Task(id, "low " + id, Task.Priority.LOW, TODAY.plusDays(id % 100)));
+        }
+        for (int id = 1001; id <= 1100; id++) {
+            Task task = new Task(id, "high " + id + (id == 1050 ? " urgent" : ""), Task.Priority.HIGH, TODAY);
+            tasks.add(task);
+            if (id % 10 == 0) {
+                task.markCompleted();
+            }
+        }
+        textIndex = new TaskTextIndex(tasks);
+        engine = new TaskQueryEngine(tasks, textIndex);
+    }
+
+    @Test
+    void choosesSmallestIndex() {
+        assertEquals("priority index", engine.plan(new TaskQuery().priority(Task.Priority.HIGH)).getAccessPath());
+        assertEquals("completed set", engine.plan(new TaskQuery().priority(Task.Priority.HIGH).completed()).getAccessPath());
+        assertEquals("id lookup", engine.plan(new TaskQuery().ids(List.of(5, 6)).completed()).getAccessPath());
+        assertEquals("full scan", engine.plan(new TaskQuery().open()).getAccessPath());
+    }
+
+    @Test
+    void dueDateIndexYieldsOrderAndStopsAtLimit() {
+        TaskQuery query = new TaskQuery().open().dueBetween(TODAY.plusDays(1), TODAY.plusDays(2))
+                .sortBy(TaskQuery.Sort.DUE_DATE).limit(5);
+        TaskQueryEngine.Plan plan = engine.plan(query);
+        assertEquals("open due date index", plan.getAccessPath());
+        assertFalse(plan.needsSort());
+        assertTrue(plan.toString().contains("(stops early)"), plan.toString());
+
+        List<Task> result = engine.execute(query);
+        assertEquals(5, result.size());
+        assertTrue(result.stream().allMatch(task -> task.getDueDate().equals(TODAY.plusDays(1))));
+    }
+
+    @Test
+    void textIndexIsOnlyUsedOnceBuilt() {
+        TaskQuery query = new TaskQuery().text("urgent");
+        assertFalse(engine.plan(query).getAccessPath().equals("text index"));
+        List<Task> scanned = engine.execute(query);
+
+        textIndex.prepare();
+        assertEquals("text index", engine.plan(query).getAccessPath());
+        assertEquals(scanned, engine.execute(query));
+        assertEquals(List.of(1050), scanned.stream().map(Task::getId).toList());
+    }
+}
@@ -0,0 +1,90 @@
+package com.jobarbosa.gestortarefas;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests that the {@link TaskStatistics} counters follow changes to the tasks and move on to the
+ * next day at midnight without any change.
+ */
+class TaskStatisticsTest {
+    /** A Sunday, so the next day starts a new week. */
+    private static final LocalDate SUNDAY = LocalDate.of(2026, 10, 18);
+
+    @Test
+    void dateCountersMoveOnAtMidnight() {
+        SettableClock clock = new SettableClock(SUNDAY.atTime(23, 59).toInstant(ZoneOffset.UTC));
+        Tasks tasks = new Tasks();
+        TaskStatistics statistics = new TaskStatistics(tasks, clock);
+        tasks.add(new Task(1, "yesterday", SUNDAY.minusDays(1)));
+        tasks.add(new Task(2, "today", SUNDAY));
+        tasks.add(new Task(3, "monday", SUNDAY.plusDays(1)));
+        tasks.add(new Task(4, "next sunday", SUNDAY.plusDays(7)));
+        assertEquals(1, statistics.getOverdueCount());
+        assertEquals(1, statistics.getDueTodayCount());
+        assertEquals(1, statistics.getDueThisWeekCount());
+
+        clock.instant = clock.instant.plusSeconds(120);
+        assertEquals(2, statistics.getOverdueCount());
+        assertEquals(1, statistics.getDueTodayCount());
+        assertEquals(2, statistics.getDueThisWeekCount());
+    }
+
+    @Test
+    void countersFollowChanges() {
+        SettableClock clock = new SettableClock(SUNDAY.atTime(12, 0).toInstant(ZoneOffset.UTC));
+        Tasks tasks = new Tasks();
+        TaskStatistics statistics = new TaskStatistics(tasks, clock);
+        Task task = new Task(1, "task", Task.Priority.LOW, SUNDAY);
+        tasks.add(task);
+        tasks.add(new Task(2, "other", Task.Priority.LOW, null));
+        assertEquals(2, statistics.getCount(Task.Priority.LOW));
+        assertEquals(1, statistics.getDueTodayCount());
+
+        task.setPriority(Task.Priority.HIGH);
+        task.markCompleted();
+        assertEquals(1, statistics.getCount(Task.Priority.LOW));
+        assertEquals(1, statistics.getCount(Task.Priority.HIGH));
+        assertEquals(0, statistics.getDueTodayCount());
+        assertEquals(1, statistics.getCompletedCount());
+        assertEquals(1, statistics.getOpenCount());
+        assertEquals(1, statistics.getCompletionsOn(task.getEndDate()));
+
+        tasks.remove(task);
+        assertEquals(0, statistics.getCount(Task.Priority.HIGH));
+        assertEquals(0, statistics.getCompletedCount());
+    }
+
+    /**
+     * Clock whose time is set by the test.
+     */
+    private static final class SettableClock extends Clock {
+        Instant instant;
+
+        SettableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.jobarbosa.gestortarefas;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Stress tests for {@link Tasks} under concurrent readers and writers. Several threads add,
+ * remove, change, and look up tasks at once; afterwards the list and every index must agree.
+ */
+class TasksConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = 20_000;
+    private static final int BATCHES = 100;
+    private static final LocalDate TODAY = LocalDate.of(2026, 10, 18);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void concurrentChangesKeepIndexesConsistent() throws Exception {
+        Tasks tasks = new Tasks();
+        AtomicInteger ids = new AtomicInteger();
+        for (int i = 0; i < 1000; i++) {
+            tasks.add(newTask(ids.incrementAndGet(), ThreadLocalRandom.current()));
+        }
+        runConcurrently(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < OPERATIONS; i++) {
+                Task task = tasks.findById(1 + random.nextInt(ids.get())).orElse(null);
+                switch (random.nextInt(8)) {
+                    case 0 -> tasks.add(newTask(ids.incrementAndGet(), random));
+                    case 1 -> {
+                        if (task != null) tasks.remove(task);
+                    }
+                    case 2 -> {
+                        if (task != null) task.setPriority(priority(random));
+                    }
+                    case 3 -> {
+                        if (task != null) task.setDueDate(TODAY.plusDays(random.nextInt(-30, 30)));
+                    }
+                    case 4 -> {
+                        if (task != null && random.nextInt(4) == 0) task.markCompleted();
+                    }
+                    case 5 -> {
+                        Task.Priority priority = priority(random);
+                        List<Task> found = tasks.getByPriority(priority);
+                        for (Task listed : found.subList(0, Math.min(found.size(), 100))) {
+                            // Removed meanwhile, or still the same instance
+                            assertSame(listed, tasks.findById(listed.getId()).orElse(listed));
+                        }
+                    }
+                    case 6 -> {
+                        int size = tasks.size();
+                        if (size > 0) {
+                            int index = random.nextInt(size);
+                            List<Task> slice = tasks.slice(index, 50);
+                            assertTrue(slice.size() <= 50);
+                        }
+                    }
+                    default -> {
+                        if (task != null) {
+                            Task found = tasks.findById(task.getId()).orElse(null);
+                            assertTrue(found == null || found.getId() == task.getId());
+                        }
+                    }
+                }
+            }
+            return null;
+        });
+        assertConsistent(tasks);
+    }
+
+    @Test
+    void concurrentBatchesAreAddedWhole() throws Exception {
+        Tasks tasks = new Tasks();
+        AtomicInteger ids = new AtomicInteger();
+        runConcurrently(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < BATCHES; i++) {
+                List<Task> batch = new ArrayList<>();
+                for (int j = 0; j < 25; j++) {
+                    batch.add(newTask(ids.incrementAndGet(), random));
+                }
+                tasks.addAll(batch);
+                // A batch is added in one change, so its tasks stay next to each other
+                List<Task> all = tasks.listAll();
+                int first = all.indexOf(batch.get(0));
+                assertEquals(batch, all.subList(first, first + batch.size()));
+            }
+            return null;
+        });
+        assertEquals(THREADS * BATCHES * 25, tasks.size());
+        assertConsistent(tasks);
+    }
+
+    @Test
+    void concurrentReadsOfMappedSnapshotShareTasks() throws Exception {
+        List<Task> saved = new ArrayList<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int id = 1; id <= 5000; id++) {
+            saved.add(newTask(id, random));
+        }
+        String file = directory.resolve("tasks.dat").toString();
+        TaskFile.write(file, saved);
+        Tasks tasks = new Tasks();
+        tasks.loadFromFile(file, new TaskJournal(directory.resolve("tasks.journal").toString()));
+
+        Task[][] seen = new Task[THREADS][saved.size()];
+        AtomicInteger thread = new AtomicInteger();
+        runConcurrently(() -> {
+            Task[] mine = seen[thread.getAndIncrement()];
+            ThreadLocalRandom local = ThreadLocalRandom.current();
+            for (int i = 0; i < OPERATIONS; i++) {
+                int index = local.nextInt(saved.size());
+                if (local.nextBoolean()) {
+                    mine[index] = tasks.get(index);
+                } else {
+                    List<Task> slice = tasks.slice(index, 10);
+                    for (int j = 0; j < slice.size(); j++) {
+                        mine[index + j] = slice.get(j);
+                    }
+                }
+            }
+            return null;
+        });
+
+        // Every reader must have been handed the same instance for each row
+        List<Task> all = tasks.listAll();
+        assertEquals(saved.size(), all.size());
+        for (Task[] mine : seen) {
+            for (int index = 0; index < mine.length; index++) {
+                if (mine[index] != null) {
+                    assertSame(all.get(index), mine[index], "row " + index);
+                }
+            }
+        }
+        assertConsistent(tasks);
+    }
+
+    /**
+     * Runs the same work on several threads at once and rethrows the first failure.
+     */
+    private static void runConcurrently(Callable<Void> work) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Void>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return work.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Checks that the list, the id lookup, and every query index describe the same tasks.
+     */
+    private static void assertConsistent(Tasks tasks) {
+        List<Task> all = tasks.listAll();
+        assertEquals(all.size(), tasks.size());
+        Set<Integer> ids = new HashSet<>();
+        for (int index = 0; index < all.size(); index++) {
+            Task task = all.get(index);
+            assertTrue(ids.add(task.getId()), "duplicate id " + task.getId());
+            assertSame(task, tasks.findById(task.getId()).orElse(null));
+            assertSame(task, tasks.get(index));
+        }
+        for (Task.Priority priority : Task.Priority.values()) {
+            assertEquals(all.stream().filter(task -> task.getPriority() == priority).toList(),
+                    tasks.getByPriority(priority), "tasks with priority " + priority);
+        }
+        assertEquals(all.stream().filter(Task::isCompleted).collect(Collectors.toSet()),
+                new HashSet<>(tasks.getCompleted()));
+        assertEquals(all.stream().filter(task -> !task.isCompleted() && task.getDueDate() != null)
+                        .collect(Collectors.toSet()),
+                new HashSet<>(tasks.getToBeDoneBy(LocalDate.MAX)));
+        assertEquals(all.stream().filter(task -> task.isCompleted() && task.getEndDate() != null)
+                        .collect(Collectors.toSet()),
+                new HashSet<>(tasks.getCompletedBetween(LocalDate.MIN, LocalDate.MAX)));
+    }
+
+    private static Task newTask(int id, ThreadLocalRandom random) {
+        LocalDate dueDate = random.nextInt(5) == 0 ? null : TODAY.plusDays(random.nextInt(-30, 30));
+        return new Task(id, "task " + id, priority(random), dueDate);
+    }
+
+    private static Task.Priority priority(ThreadLocalRandom random) {
+        Task.Priority[] priorities = Task.Priority.values();
+        return priorities[random.nextInt(priorities.length)];
+    }
+}
@@ -0,0 +1,100 @@
+package com.jobarbosa.gestortarefas;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the migration of the shared task file from before tasks were kept per user into the
+ * users' shards.
+ */
+class TasksMigrationTest {
+    @TempDir
+    Path directory;
+
+    private PersistenceWriter writer;
+    private UserManagementController users;
+    private User alice;
+    private User bob;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        writer = new PersistenceWriter(0);
+        users = new UserManagementController(writer);
+        alice = newUser(1, "alice");
+        bob = newUser(2, "bob");
+        alice.addTaskToGroup("work", 2);
+        bob.addTaskToGroup("home", 3);
+        TaskFile.write(directory.resolve("tasks.dat").toString(), List.of(
+                new Task(1, "nobody's"), new Task(2, "alice's"), new Task(3, "bob's"), new Task(4, "nobody's either")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.shutdown();
+    }
+
+    @Test
+    void firstUserToLogInGetsTheUnassignedTasks() {
+        assertEquals(Set.of(1, 2, 4), loadTaskIds(alice));
+        assertEquals(Set.of(3), loadTaskIds(bob));
+        // Logging in again neither duplicates nor loses tasks
+        assertEquals(Set.of(1, 2, 4), loadTaskIds(alice));
+        assertEquals(Set.of(3), loadTaskIds(bob));
+    }
+
+    @Test
+    void unassignedTasksAreAddedToShardMigratedWithoutThem() throws Exception {
+        // The shard was migrated before the users were known, so it got no unassigned tasks
+        TasksManagementController early = new TasksManagementController(writer, directory.toString());
+        early.loadTasks(bob);
+        early.unloadTasks();
+        writer.flush();
+        assertTrue(Files.isDirectory(directory.resolve("tasks/2")));
+
+        assertEquals(Set.of(1, 3, 4), loadTaskIds(bob));
+        assertEquals(Set.of(2), loadTaskIds(alice));
+        assertEquals(Set.of(1, 3, 4), loadTaskIds(bob));
+    }
+
+    @Test
+    void migratedTasksKeepTheirContent() {
+        TasksManagementController controller = controller();
+        controller.loadTasks(alice);
+        assertEquals(Set.of("nobody's", "alice's", "nobody's either"),
+                controller.getTasks().listAll().stream().map(Task::getDescription).collect(Collectors.toSet()));
+        controller.unloadTasks();
+    }
+
+    private Set<Integer> loadTaskIds(User user) {
+        TasksManagementController controller = controller();
+        controller.loadTasks(user);
+        Set<Integer> ids = controller.getTasks().listAll().stream().map(Task::getId).collect(Collectors.toSet());
+        controller.unloadTasks();
+        writer.flush();
+        return ids;
+    }
+
+    private TasksManagementController controller() {
+        TasksManagementController controller = new TasksManagementController(writer, directory.toString());
+        controller.setUserController(users);
+        return controller;
+    }
+
+    private User newUser(int id, String username) {
+        User user = new User(id, username, "secret", username + "@example.com", LocalDate.of(2026, 1, 1), User.Role.USER);
+        users.getUsers().add(user);
+        return user;
+    }
+}